@@ -3,56 +3,521 @@ package animations;
 import biuoop.DrawSurface;
 import biuoop.GUI;
 import biuoop.Sleeper;
+import utils.FrameProfiler;
 
 /**
  * The AnimationRunner class is responsible for running animations in a GUI.
- * 
+ * A runner can also be headless, in which case the animations are drawn on a
+ * given DrawSurface instead of a window, read a scripted keyboard, and run as
+ * fast as the CPU allows.
+ * The keyboard is sampled once at the beginning of every frame into an
+ * InputSnapshot, the bitmask of the actions taken in the frame, which is what
+ * the animations read.
+ * A SteppedAnimation is simulated in fixed steps of its own rate, which may be
+ * higher than the rate it is drawn in (e.g. 240 steps on a 60 frames per
+ * second display), and is drawn in between the last two steps. A slow frame is
+ * then caught up by running more steps, instead of slowing the game down.
+ * The runner owns a FrameProfiler, which is disabled by default. It measures
+ * how long showing every frame takes, and the animations measure their own
+ * phases into it.
+ * The runner can also ask the animations to draw only the regions of the
+ * screen that changed since the last frame (see isDirtyRendering).
+ * A session can be recorded or played back with an InputRecording. While
+ * playing back, the actions are read from the recording instead of the
+ * keyboard, SteppedAnimations run the recorded number of steps in every
+ * frame, and a runner with a GUI shows the frames in the recorded rate times
+ * a time scale.
+ * The frames can also be shown by a render thread of their own (see
+ * setThreadedRendering), so a slow show doesn't stall the simulation.
+ *
  * @author Eitan Maimoni
  * @version 19.0.2
  * @since 2023-06-01
  */
 public class AnimationRunner {
     private final GUI gui;
+    private final DrawSurface headlessSurface;
+    private final ScriptedKeyboardSensor script;
+    private final InputSnapshot input;
     private final Sleeper sleeper;
     private final int framesPerSecond;
+    private final int stepsPerSecond;
+    private final FrameProfiler profiler;
+    private boolean dirtyRendering;
+    private RenderThread renderThread;
+    private InputRecording recording;
+    private double timeScale;
+    private long frameCount;
+    private long skippedFrames;
+    private long frameLimit;
+    // the number of runs that ended, to notice an animation ran inside a step
+    private long finishedRuns;
     private static final int WINDOW_HEIGHT = 600;
     private static final int WINDOW_WIDTH = 800;
+    private static final int DEFAULT_FRAMES_PER_SECOND = 60;
+    // the speeds of the sprites are given in units per 1/60 of a second
+    private static final int BASE_STEPS_PER_SECOND = 60;
+    // the percentiles of the profiler are computed over the last 4 seconds
+    private static final int PROFILER_WINDOW = 240;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final long NANOS_PER_MILLISECOND = 1_000_000L;
+    // at most a quarter of a second is caught up after a slow frame
+    private static final long MAX_FRAME_NANOS = NANOS_PER_SECOND / 4;
 
     /**
-     * Constructs a new AnimationRunner instance.
+     * Constructs a new AnimationRunner instance, that draws and simulates 60
+     * frames per second.
      */
     public AnimationRunner() {
+        this(DEFAULT_FRAMES_PER_SECOND, DEFAULT_FRAMES_PER_SECOND);
+    }
+
+    /**
+     * Constructs a new AnimationRunner instance with the given rates.
+     *
+     * @param framesPerSecond the number of frames drawn per second
+     * @param stepsPerSecond  the number of steps per second SteppedAnimations
+     *                        are simulated in
+     */
+    public AnimationRunner(int framesPerSecond, int stepsPerSecond) {
         this.gui = new GUI("Game", WINDOW_WIDTH, WINDOW_HEIGHT);
+        this.headlessSurface = null;
+        this.script = null;
+        this.input = new InputSnapshot(this.gui.getKeyboardSensor());
         this.sleeper = new Sleeper();
-        this.framesPerSecond = 60;
+        this.framesPerSecond = framesPerSecond;
+        this.stepsPerSecond = stepsPerSecond;
+        this.profiler = new FrameProfiler(PROFILER_WINDOW);
+        this.timeScale = 1;
+        this.frameCount = 0;
+        this.skippedFrames = 0;
+        this.frameLimit = Long.MAX_VALUE;
+    }
+
+    /**
+     * Constructs a new headless AnimationRunner instance, that draws the
+     * animations on the given surface and doesn't wait between frames.
+     *
+     * @param surface  the surface to draw the animations on
+     * @param keyboard the scripted keyboard, moved to its next frame after
+     *                 every frame
+     */
+    public AnimationRunner(DrawSurface surface, ScriptedKeyboardSensor keyboard) {
+        this(surface, keyboard, DEFAULT_FRAMES_PER_SECOND, DEFAULT_FRAMES_PER_SECOND);
+    }
+
+    /**
+     * Constructs a new headless AnimationRunner instance with the given
+     * rates. The frames are not waited for, but SteppedAnimations are still
+     * simulated in as many steps per frame as the rates give.
+     *
+     * @param surface         the surface to draw the animations on
+     * @param keyboard        the scripted keyboard, moved to its next frame
+     *                        after every frame
+     * @param framesPerSecond the number of frames drawn per second
+     * @param stepsPerSecond  the number of steps per second SteppedAnimations
+     *                        are simulated in
+     */
+    public AnimationRunner(DrawSurface surface, ScriptedKeyboardSensor keyboard, int framesPerSecond,
+                           int stepsPerSecond) {
+        this.gui = null;
+        this.headlessSurface = surface;
+        this.script = keyboard;
+        this.input = new InputSnapshot(keyboard);
+        this.sleeper = null;
+        this.framesPerSecond = framesPerSecond;
+        this.stepsPerSecond = stepsPerSecond;
+        this.profiler = new FrameProfiler(PROFILER_WINDOW);
+        this.timeScale = 1;
+        this.frameCount = 0;
+        this.skippedFrames = 0;
+        this.frameLimit = Long.MAX_VALUE;
     }
 
     /**
      * Gets the GUI associated with the animation runner.
      *
-     * @return The GUI instance.
+     * @return The GUI instance, or null if the runner is headless.
      */
     public GUI getGui() {
         return gui;
     }
 
+    /**
+     * Gets the input the animations should read: the actions taken in the
+     * current frame, and the keys they are bound to.
+     *
+     * @return the input snapshot
+     */
+    public InputSnapshot getInput() {
+        return this.input;
+    }
+
+    /**
+     * Sets the recording the session is recorded to or played back from.
+     *
+     * @param inputRecording the recording, or null to read the keyboard
+     */
+    public void setInputRecording(InputRecording inputRecording) {
+        this.recording = inputRecording;
+    }
+
+    /**
+     * Gets the recording the session is recorded to or played back from.
+     *
+     * @return the recording, or null if there is none
+     */
+    public InputRecording getInputRecording() {
+        return this.recording;
+    }
+
+    /**
+     * Sets how much faster than the given rate a runner with a GUI shows the
+     * frames of a recording it plays back (e.g. 0.5 for half the speed).
+     *
+     * @param scale the time scale, larger than 0
+     */
+    public void setTimeScale(double scale) {
+        this.timeScale = scale;
+    }
+
+    /**
+     * Checks if the runner is headless.
+     *
+     * @return true if the runner has no GUI, false otherwise
+     */
+    public boolean isHeadless() {
+        return this.gui == null;
+    }
+
+    /**
+     * Gets the number of frames the animations are meant to run per second.
+     *
+     * @return the frames per second
+     */
+    public int getFramesPerSecond() {
+        return this.framesPerSecond;
+    }
+
+    /**
+     * Gets the number of steps per second SteppedAnimations are simulated in.
+     *
+     * @return the steps per second
+     */
+    public int getStepsPerSecond() {
+        return this.stepsPerSecond;
+    }
+
+    /**
+     * Gets the profiler that measures the phases of every frame.
+     *
+     * @return the frame profiler
+     */
+    public FrameProfiler getProfiler() {
+        return this.profiler;
+    }
+
+    /**
+     * Sets whether the animations should keep their last frame and draw again
+     * only the regions of the screen that changed since.
+     *
+     * @param on true to draw only the dirty regions, false to draw every
+     *           frame from scratch
+     */
+    public void setDirtyRendering(boolean on) {
+        this.dirtyRendering = on;
+    }
+
+    /**
+     * Checks if the animations should draw only the regions of the screen
+     * that changed since the last frame. Whole frames are drawn while the
+     * rendering is threaded.
+     *
+     * @return true to draw only the dirty regions, false otherwise
+     */
+    public boolean isDirtyRendering() {
+        return this.dirtyRendering && this.renderThread == null;
+    }
+
+    /**
+     * Sets whether the frames are shown by a render thread of their own.
+     * The animations then draw every frame into a FrameSnapshot (the drawing
+     * operations of the frame, with the positions, colors and texts of the
+     * sprites), which is handed over to the render thread without locks. The
+     * render thread shows the latest snapshot, and skips the frames it had no
+     * time for, so the simulation keeps its rate while showing is slow.
+     * The frames are drawn whole, not only the regions that changed.
+     *
+     * @param on true to show the frames on a render thread, false to show
+     *           them on the thread that runs the animations
+     */
+    public void setThreadedRendering(boolean on) {
+        if (on && this.renderThread == null) {
+            this.renderThread = this.gui != null ? new RenderThread(this.gui, WINDOW_WIDTH, WINDOW_HEIGHT)
+                    : new RenderThread(this.headlessSurface);
+        } else if (!on && this.renderThread != null) {
+            this.renderThread.stop();
+            this.skippedFrames += this.renderThread.getSkippedCount();
+            this.renderThread = null;
+        }
+    }
+
+    /**
+     * Checks if the frames are shown by a render thread of their own.
+     *
+     * @return true if the rendering is threaded, false otherwise
+     */
+    public boolean isThreadedRendering() {
+        return this.renderThread != null;
+    }
+
+    /**
+     * Gets the number of frames shown so far. While the rendering is
+     * threaded, the frames the render thread had no time for are not shown.
+     *
+     * @return the number of shown frames
+     */
+    public long getShownFrameCount() {
+        if (this.renderThread != null) {
+            return this.frameCount - this.skippedFrames - this.renderThread.getSkippedCount();
+        }
+        return this.frameCount - this.skippedFrames;
+    }
+
+    /**
+     * Gets the number of frames run so far.
+     *
+     * @return the number of frames
+     */
+    public long getFrameCount() {
+        return this.frameCount;
+    }
+
+    /**
+     * Sets the total number of frames the runner may run. Once it is reached,
+     * every animation is stopped after its current frame.
+     *
+     * @param limit the maximal number of frames
+     */
+    public void setFrameLimit(long limit) {
+        this.frameLimit = limit;
+    }
+
+    /**
+     * Checks if the frame limit was reached, or every frame of the recording
+     * played back was run.
+     *
+     * @return true if no more frames may be run, false otherwise
+     */
+    public boolean isFrameLimitReached() {
+        return this.frameCount >= this.frameLimit || (this.recording != null && this.recording.isFinished());
+    }
+
+    /**
+     * Stops the render thread and closes the GUI, if there are.
+     */
+    public void close() {
+        setThreadedRendering(false);
+        if (this.gui != null) {
+            this.gui.close();
+        }
+    }
+
     /**
      * Runs the given animation.
      *
      * @param animation The animation to run.
      */
     public void run(Animation animation) {
-        int millisecondsPerFrame = 1000 / this.framesPerSecond;
-        while (!animation.shouldStop()) {
-            long startTime = System.currentTimeMillis(); // timing
-            DrawSurface d = gui.getDrawSurface();
+        if (animation instanceof SteppedAnimation) {
+            SteppedAnimation stepped = (SteppedAnimation) animation;
+            if (this.gui == null) {
+                runSteppedHeadless(stepped);
+            } else {
+                runStepped(stepped);
+            }
+        } else if (this.gui == null) {
+            runHeadless(animation);
+        } else {
+            runFrames(animation);
+        }
+        this.finishedRuns++;
+    }
+
+    private void runFrames(Animation animation) {
+        long nanosPerFrame = nanosPerFrame();
+        long nextFrame = System.nanoTime();
+        while (!animation.shouldStop() && !isFrameLimitReached()) {
+            int frame = beginFrame();
+            DrawSurface d = frameSurface();
             animation.doOneFrame(d);
-            gui.show(d);
-            long usedTime = System.currentTimeMillis() - startTime;
-            long milliSecondLeftToSleep = millisecondsPerFrame - usedTime;
-            if (milliSecondLeftToSleep > 0) {
-                this.sleeper.sleepFor(milliSecondLeftToSleep);
+            show(d);
+            endFrame(frame, 0, 0);
+            nextFrame = sleepUntil(nextFrame + nanosPerFrame);
+        }
+    }
+
+    // the surface the next frame is drawn on: a snapshot for the render
+    // thread, the surface of the GUI, or the headless surface
+    private DrawSurface frameSurface() {
+        if (this.renderThread != null) {
+            return this.renderThread.beginFrame();
+        }
+        if (this.gui != null) {
+            return this.gui.getDrawSurface();
+        }
+        return this.headlessSurface;
+    }
+
+    // shows the frame drawn on the surface, or hands it over to the render
+    // thread (which is then what the SHOW phase measures)
+    private void show(DrawSurface d) {
+        if (this.renderThread == null && this.gui == null) {
+            return;
+        }
+        long start = this.profiler.start();
+        if (this.renderThread != null) {
+            this.renderThread.publish();
+        } else {
+            this.gui.show(d);
+        }
+        this.profiler.stop(FrameProfiler.SHOW, start);
+    }
+
+    // the time a frame is shown for, scaled while playing back
+    private long nanosPerFrame() {
+        if (isPlayingBack()) {
+            return (long) (NANOS_PER_SECOND / this.framesPerSecond / this.timeScale);
+        }
+        return NANOS_PER_SECOND / this.framesPerSecond;
+    }
+
+    private boolean isPlayingBack() {
+        return this.recording != null && this.recording.isPlayingBack();
+    }
+
+    // samples the input of the frame, and returns the number of the frame
+    // in the recording, or -1 if there is no recording
+    private int beginFrame() {
+        if (isPlayingBack()) {
+            int frame = this.recording.beginFrame(InputAction.NONE);
+            this.input.set(this.recording.getActions(frame));
+            return frame;
+        }
+        int action = this.input.sample();
+        if (this.recording != null) {
+            return this.recording.beginFrame(action);
+        }
+        return -1;
+    }
+
+    private void endFrame(int frame, int steps, double alpha) {
+        if (this.recording != null) {
+            this.recording.endFrame(frame, steps, alpha);
+        }
+        this.profiler.endFrame();
+        this.frameCount++;
+    }
+
+    // checks if another step should run in the frame: while the accumulated
+    // time lasts, or while playing back, as many steps as were recorded
+    private boolean hasStep(int frame, long accumulator, long nanosPerStep, int steps) {
+        if (isPlayingBack()) {
+            return steps < this.recording.getSteps(frame);
+        }
+        return accumulator >= nanosPerStep;
+    }
+
+    private double alpha(int frame, long accumulator, long nanosPerStep) {
+        if (isPlayingBack()) {
+            return this.recording.getAlpha(frame);
+        }
+        return (double) accumulator / nanosPerStep;
+    }
+
+    private void runStepped(SteppedAnimation animation) {
+        long nanosPerFrame = nanosPerFrame();
+        long nanosPerStep = NANOS_PER_SECOND / this.stepsPerSecond;
+        double dt = (double) BASE_STEPS_PER_SECOND / this.stepsPerSecond;
+        long previousTime = System.nanoTime();
+        long nextFrame = previousTime;
+        long accumulator = 0;
+        while (!animation.shouldStop() && !isFrameLimitReached()) {
+            int frame = beginFrame();
+            long now = System.nanoTime();
+            accumulator += Math.min(now - previousTime, MAX_FRAME_NANOS);
+            previousTime = now;
+            int steps = 0;
+            while (hasStep(frame, accumulator, nanosPerStep, steps) && !animation.shouldStop()) {
+                long runs = this.finishedRuns;
+                animation.step(dt);
+                accumulator -= nanosPerStep;
+                steps++;
+                if (this.finishedRuns != runs) {
+                    // another animation (the pause screen) ran inside the
+                    // step, the time it took is not simulated
+                    accumulator = 0;
+                    previousTime = System.nanoTime();
+                    nextFrame = previousTime;
+                    break;
+                }
+            }
+            double alpha = alpha(frame, accumulator, nanosPerStep);
+            DrawSurface d = frameSurface();
+            animation.render(d, alpha);
+            show(d);
+            endFrame(frame, steps, alpha);
+            nextFrame = sleepUntil(nextFrame + nanosPerFrame);
+        }
+    }
+
+    // sleeps until the given time, and returns the time the next frame is
+    // counted from (the given time, or now if the frame is already late)
+    private long sleepUntil(long time) {
+        long nanosLeft = time - System.nanoTime();
+        if (nanosLeft <= 0) {
+            return Math.max(time, System.nanoTime() - NANOS_PER_SECOND / this.framesPerSecond);
+        }
+        long millisecondsLeft = nanosLeft / NANOS_PER_MILLISECOND;
+        if (millisecondsLeft > 0) {
+            this.sleeper.sleepFor(millisecondsLeft);
+        }
+        return time;
+    }
+
+    private void runHeadless(Animation animation) {
+        while (!animation.shouldStop() && !isFrameLimitReached()) {
+            int frame = beginFrame();
+            DrawSurface d = frameSurface();
+            animation.doOneFrame(d);
+            show(d);
+            endFrame(frame, 0, 0);
+            this.script.nextFrame();
+        }
+    }
+
+    // the time passes a whole frame every frame, regardless of how long the
+    // frame really took
+    private void runSteppedHeadless(SteppedAnimation animation) {
+        long nanosPerFrame = NANOS_PER_SECOND / this.framesPerSecond;
+        long nanosPerStep = NANOS_PER_SECOND / this.stepsPerSecond;
+        double dt = (double) BASE_STEPS_PER_SECOND / this.stepsPerSecond;
+        long accumulator = 0;
+        while (!animation.shouldStop() && !isFrameLimitReached()) {
+            int frame = beginFrame();
+            accumulator += nanosPerFrame;
+            int steps = 0;
+            while (hasStep(frame, accumulator, nanosPerStep, steps) && !animation.shouldStop()) {
+                animation.step(dt);
+                accumulator -= nanosPerStep;
+                steps++;
             }
+            double alpha = alpha(frame, accumulator, nanosPerStep);
+            DrawSurface d = frameSurface();
+            animation.render(d, alpha);
+            show(d);
+            endFrame(frame, steps, alpha);
+            this.script.nextFrame();
         }
     }
-}
\ No newline at end of file
+}
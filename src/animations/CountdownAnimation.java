@@ -9,15 +9,17 @@ import java.awt.Color;
 /**
  * The CountdownAnimation class represents an animation that displays a
  * countdown on the screen.
+ * The countdown is measured in frames rather than wall-clock time, so it takes
+ * the same number of frames when the animation runs headless.
  *
  * @author Eitan Maimoni
  * @version 19.0.2
  * @since 2023-06-01
  */
 public class CountdownAnimation implements Animation {
-    private final double numOfSecondsPerPrint;
+    private final long framesPerPrint;
     private int countFrom;
-    private double startTime;
+    private long frames;
     private final Sprite backGround;
     private final SpriteCollection gameScreen;
     private boolean stop;
@@ -31,13 +33,15 @@ public class CountdownAnimation implements Animation {
      * @param countFrom    The starting count value.
      * @param gameScreen   The SpriteCollection representing the game screen.
      * @param backGround   The background Sprite of the countdown animation.
+     * @param framesPerSecond The number of frames the animation runs per second.
      */
-    public CountdownAnimation(double numOfSeconds, int countFrom, SpriteCollection gameScreen, Sprite backGround) {
+    public CountdownAnimation(double numOfSeconds, int countFrom, SpriteCollection gameScreen, Sprite backGround,
+            int framesPerSecond) {
         this.backGround = backGround;
         this.gameScreen = gameScreen;
         this.countFrom = countFrom;
-        this.numOfSecondsPerPrint = numOfSeconds / countFrom;
-        this.startTime = System.currentTimeMillis();
+        this.framesPerPrint = Math.max(1, Math.round(numOfSeconds / countFrom * framesPerSecond));
+        this.frames = 0;
         this.stop = false;
     }
 
@@ -45,11 +49,11 @@ public class CountdownAnimation implements Animation {
     public void doOneFrame(DrawSurface d) {
         this.backGround.drawOn(d);
         this.gameScreen.drawAllOn(d);
-        // Calculate elapsed time
-        double elapsedTime = (System.currentTimeMillis() - startTime);
-        if (elapsedTime / 1000 >= numOfSecondsPerPrint) {
+        // Count the elapsed frames
+        this.frames++;
+        if (this.frames >= this.framesPerPrint) {
             countFrom--;
-            this.startTime = System.currentTimeMillis();
+            this.frames = 0;
         }
         // Draw the countdown number
         d.setColor(Color.white);
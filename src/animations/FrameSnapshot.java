@@ -0,0 +1,239 @@
+package animations;
+
+import biuoop.DrawSurface;
+
+import java.awt.Color;
+import java.awt.Image;
+import java.awt.Polygon;
+import java.util.Arrays;
+
+/**
+ * The FrameSnapshot class is a DrawSurface that records the drawing
+ * operations of a frame instead of drawing them, so the frame can be drawn
+ * later, on another thread, by replaying them on a real surface.
+ * The operations are kept in primitive arrays (their coordinates, and the
+ * colors, texts and images they use), which are reused from frame to frame.
+ * Colors and texts can't change, and polygons are copied, so a snapshot holds
+ * the state of the frame when it was drawn. Images are kept as they are, so an
+ * image drawn into a snapshot must not change after (like the cached image of
+ * a background, which is replaced and not drawn over when it changes).
+ *
+ * @author Eitan Maimoni
+ * @version 19.0.2
+ * @since 2023-06-01
+ */
+public class FrameSnapshot implements DrawSurface {
+    private static final int SET_COLOR = 0;
+    private static final int DRAW_LINE = 1;
+    private static final int DRAW_OVAL = 2;
+    private static final int FILL_OVAL = 3;
+    private static final int DRAW_RECTANGLE = 4;
+    private static final int FILL_RECTANGLE = 5;
+    private static final int DRAW_IMAGE = 6;
+    private static final int DRAW_CIRCLE = 7;
+    private static final int FILL_CIRCLE = 8;
+    private static final int DRAW_TEXT = 9;
+    private static final int DRAW_POLYGON = 10;
+    private static final int FILL_POLYGON = 11;
+    // the number of coordinates kept for every operation
+    private static final int ARGUMENTS = 4;
+    private static final int INITIAL_CAPACITY = 256;
+    private final int width;
+    private final int height;
+    private int[] operations;
+    private int[] arguments;
+    private Object[] objects;
+    private int size;
+    private volatile long frame;
+
+    /**
+     * Constructs a new empty FrameSnapshot of the given size.
+     *
+     * @param width  the width of the surface
+     * @param height the height of the surface
+     */
+    public FrameSnapshot(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.operations = new int[INITIAL_CAPACITY];
+        this.arguments = new int[INITIAL_CAPACITY * ARGUMENTS];
+        this.objects = new Object[INITIAL_CAPACITY];
+        this.size = 0;
+        this.frame = 0;
+    }
+
+    /**
+     * Removes every recorded operation, to record a new frame.
+     */
+    public void clear() {
+        Arrays.fill(this.objects, 0, this.size, null);
+        this.size = 0;
+    }
+
+    /**
+     * Returns the number of recorded operations.
+     *
+     * @return the number of operations
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the number of the frame the snapshot holds.
+     *
+     * @return the frame number, 0 if the snapshot was never published
+     */
+    long getFrame() {
+        return this.frame;
+    }
+
+    /**
+     * Sets the number of the frame the snapshot holds.
+     *
+     * @param number the frame number
+     */
+    void setFrame(long number) {
+        this.frame = number;
+    }
+
+    /**
+     * Draws the recorded operations on the given surface, in the order they
+     * were recorded.
+     *
+     * @param d the surface to draw on
+     */
+    public void replay(DrawSurface d) {
+        for (int i = 0; i < this.size; i++) {
+            int a = i * ARGUMENTS;
+            int x = this.arguments[a];
+            int y = this.arguments[a + 1];
+            int w = this.arguments[a + 2];
+            int h = this.arguments[a + 3];
+            switch (this.operations[i]) {
+                case SET_COLOR:
+                    d.setColor((Color) this.objects[i]);
+                    break;
+                case DRAW_LINE:
+                    d.drawLine(x, y, w, h);
+                    break;
+                case DRAW_OVAL:
+                    d.drawOval(x, y, w, h);
+                    break;
+                case FILL_OVAL:
+                    d.fillOval(x, y, w, h);
+                    break;
+                case DRAW_RECTANGLE:
+                    d.drawRectangle(x, y, w, h);
+                    break;
+                case FILL_RECTANGLE:
+                    d.fillRectangle(x, y, w, h);
+                    break;
+                case DRAW_IMAGE:
+                    d.drawImage(x, y, (Image) this.objects[i]);
+                    break;
+                case DRAW_CIRCLE:
+                    d.drawCircle(x, y, w);
+                    break;
+                case FILL_CIRCLE:
+                    d.fillCircle(x, y, w);
+                    break;
+                case DRAW_TEXT:
+                    d.drawText(x, y, (String) this.objects[i], w);
+                    break;
+                case DRAW_POLYGON:
+                    d.drawPolygon((Polygon) this.objects[i]);
+                    break;
+                default:
+                    d.fillPolygon((Polygon) this.objects[i]);
+                    break;
+            }
+        }
+    }
+
+    private void record(int operation, int x, int y, int w, int h, Object object) {
+        if (this.size == this.operations.length) {
+            this.operations = Arrays.copyOf(this.operations, this.size * 2);
+            this.arguments = Arrays.copyOf(this.arguments, this.size * 2 * ARGUMENTS);
+            this.objects = Arrays.copyOf(this.objects, this.size * 2);
+        }
+        int a = this.size * ARGUMENTS;
+        this.operations[this.size] = operation;
+        this.arguments[a] = x;
+        this.arguments[a + 1] = y;
+        this.arguments[a + 2] = w;
+        this.arguments[a + 3] = h;
+        this.objects[this.size] = object;
+        this.size++;
+    }
+
+    @Override
+    public int getWidth() {
+        return this.width;
+    }
+
+    @Override
+    public int getHeight() {
+        return this.height;
+    }
+
+    @Override
+    public void setColor(Color color) {
+        record(SET_COLOR, 0, 0, 0, 0, color);
+    }
+
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        record(DRAW_LINE, x1, y1, x2, y2, null);
+    }
+
+    @Override
+    public void drawOval(int x, int y, int w, int h) {
+        record(DRAW_OVAL, x, y, w, h, null);
+    }
+
+    @Override
+    public void fillOval(int x, int y, int w, int h) {
+        record(FILL_OVAL, x, y, w, h, null);
+    }
+
+    @Override
+    public void drawRectangle(int x, int y, int w, int h) {
+        record(DRAW_RECTANGLE, x, y, w, h, null);
+    }
+
+    @Override
+    public void fillRectangle(int x, int y, int w, int h) {
+        record(FILL_RECTANGLE, x, y, w, h, null);
+    }
+
+    @Override
+    public void drawImage(int x, int y, Image image) {
+        record(DRAW_IMAGE, x, y, 0, 0, image);
+    }
+
+    @Override
+    public void drawCircle(int x, int y, int r) {
+        record(DRAW_CIRCLE, x, y, r, 0, null);
+    }
+
+    @Override
+    public void fillCircle(int x, int y, int r) {
+        record(FILL_CIRCLE, x, y, r, 0, null);
+    }
+
+    @Override
+    public void drawText(int x, int y, String text, int fontSize) {
+        record(DRAW_TEXT, x, y, fontSize, 0, text);
+    }
+
+    @Override
+    public void drawPolygon(Polygon polygon) {
+        record(DRAW_POLYGON, 0, 0, 0, 0, new Polygon(polygon.xpoints, polygon.ypoints, polygon.npoints));
+    }
+
+    @Override
+    public void fillPolygon(Polygon polygon) {
+        record(FILL_POLYGON, 0, 0, 0, 0, new Polygon(polygon.xpoints, polygon.ypoints, polygon.npoints));
+    }
+}
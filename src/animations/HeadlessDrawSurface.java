@@ -0,0 +1,113 @@
+package animations;
+
+import biuoop.DrawSurface;
+
+import java.awt.Color;
+import java.awt.Image;
+import java.awt.Polygon;
+
+/**
+ * The HeadlessDrawSurface class is a DrawSurface that draws nothing.
+ * It is used to run animations on machines with no display, and only records
+ * how many drawing operations were made on it.
+ *
+ * @author Eitan Maimoni
+ * @version 19.0.2
+ * @since 2023-06-01
+ */
+public class HeadlessDrawSurface implements DrawSurface {
+    private final int width;
+    private final int height;
+    private long operations;
+
+    /**
+     * Constructs a new HeadlessDrawSurface with the given size.
+     *
+     * @param width  the width of the surface
+     * @param height the height of the surface
+     */
+    public HeadlessDrawSurface(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.operations = 0;
+    }
+
+    /**
+     * Returns the number of drawing operations made on the surface so far.
+     *
+     * @return the number of drawing operations
+     */
+    public long getOperationCount() {
+        return this.operations;
+    }
+
+    @Override
+    public int getWidth() {
+        return this.width;
+    }
+
+    @Override
+    public int getHeight() {
+        return this.height;
+    }
+
+    @Override
+    public void setColor(Color color) {
+        this.operations++;
+    }
+
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        this.operations++;
+    }
+
+    @Override
+    public void drawOval(int x, int y, int width, int height) {
+        this.operations++;
+    }
+
+    @Override
+    public void fillOval(int x, int y, int width, int height) {
+        this.operations++;
+    }
+
+    @Override
+    public void drawRectangle(int x, int y, int width, int height) {
+        this.operations++;
+    }
+
+    @Override
+    public void fillRectangle(int x, int y, int width, int height) {
+        this.operations++;
+    }
+
+    @Override
+    public void drawImage(int x, int y, Image image) {
+        this.operations++;
+    }
+
+    @Override
+    public void drawCircle(int x, int y, int r) {
+        this.operations++;
+    }
+
+    @Override
+    public void fillCircle(int x, int y, int r) {
+        this.operations++;
+    }
+
+    @Override
+    public void drawText(int x, int y, String text, int fontSize) {
+        this.operations++;
+    }
+
+    @Override
+    public void drawPolygon(Polygon polygon) {
+        this.operations++;
+    }
+
+    @Override
+    public void fillPolygon(Polygon polygon) {
+        this.operations++;
+    }
+}
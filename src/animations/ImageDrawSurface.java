@@ -0,0 +1,134 @@
+package animations;
+
+import biuoop.DrawSurface;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Polygon;
+import java.awt.Shape;
+import java.awt.image.BufferedImage;
+
+/**
+ * The ImageDrawSurface class is a DrawSurface that draws on an offscreen
+ * image, the same way the GUI draws on the screen.
+ * It is used to draw something once, and then draw the image instead.
+ *
+ * @author Eitan Maimoni
+ * @version 19.0.2
+ * @since 2023-06-01
+ */
+public class ImageDrawSurface implements DrawSurface {
+    private final BufferedImage image;
+    private final Graphics2D graphics;
+
+    /**
+     * Constructs a new ImageDrawSurface that draws on the given image.
+     * The surface must be disposed when the drawing is done.
+     *
+     * @param image the image to draw on
+     */
+    public ImageDrawSurface(BufferedImage image) {
+        this.image = image;
+        this.graphics = image.createGraphics();
+    }
+
+    /**
+     * Returns the image the surface draws on.
+     *
+     * @return the image
+     */
+    public BufferedImage getImage() {
+        return this.image;
+    }
+
+    /**
+     * Releases the graphics resources of the surface. The surface can't be
+     * drawn on after it is disposed.
+     */
+    public void dispose() {
+        this.graphics.dispose();
+    }
+
+    /**
+     * Limits the drawing to the given shape.
+     *
+     * @param clip the shape to draw in, or null to draw on the whole image
+     */
+    public void setClip(Shape clip) {
+        this.graphics.setClip(clip);
+    }
+
+    @Override
+    public int getWidth() {
+        return this.image.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return this.image.getHeight();
+    }
+
+    @Override
+    public void setColor(Color color) {
+        this.graphics.setColor(color);
+    }
+
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        this.graphics.drawLine(x1, y1, x2, y2);
+    }
+
+    @Override
+    public void drawOval(int x, int y, int width, int height) {
+        this.graphics.drawOval(x, y, width, height);
+    }
+
+    @Override
+    public void fillOval(int x, int y, int width, int height) {
+        this.graphics.fillOval(x, y, width, height);
+    }
+
+    @Override
+    public void drawRectangle(int x, int y, int width, int height) {
+        this.graphics.drawRect(x, y, width, height);
+    }
+
+    @Override
+    public void fillRectangle(int x, int y, int width, int height) {
+        this.graphics.fillRect(x, y, width, height);
+    }
+
+    @Override
+    public void drawImage(int x, int y, Image img) {
+        this.graphics.drawImage(img, x, y, null);
+    }
+
+    @Override
+    public void drawCircle(int x, int y, int r) {
+        this.graphics.drawOval(x - r, y - r, r * 2, r * 2);
+    }
+
+    @Override
+    public void fillCircle(int x, int y, int r) {
+        this.graphics.fillOval(x - r, y - r, r * 2, r * 2);
+    }
+
+    @Override
+    public void drawText(int x, int y, String text, int fontSize) {
+        Font font = this.graphics.getFont();
+        this.graphics.setFont(new Font(font.getFontName(), font.getStyle(), fontSize));
+        this.graphics.drawString(text, x, y);
+    }
+
+    @Override
+    public void drawPolygon(Polygon polygon) {
+        this.graphics.drawPolygon(polygon);
+    }
+
+    @Override
+    public void fillPolygon(Polygon polygon) {
+        this.graphics.fillPolygon(polygon);
+    }
+}
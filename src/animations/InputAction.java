@@ -0,0 +1,43 @@
+package animations;
+
+/**
+ * The InputAction class holds the actions of the game the keys are mapped to
+ * (see InputSnapshot).
+ * Every action is a single bit, so the actions taken in a frame are kept in a
+ * single int, and several actions can be checked at once with a mask (e.g.
+ * LEFT | RIGHT).
+ *
+ * @author Eitan Maimoni
+ * @version 19.0.2
+ * @since 2023-06-01
+ */
+public final class InputAction {
+    /**
+     * No action.
+     */
+    public static final int NONE = 0;
+    /**
+     * Moves the paddle to the left.
+     */
+    public static final int LEFT = 1;
+    /**
+     * Moves the paddle to the right.
+     */
+    public static final int RIGHT = 1 << 1;
+    /**
+     * Closes the screen that waits for a key (the pause screen, and the end
+     * screens).
+     */
+    public static final int CONFIRM = 1 << 2;
+    /**
+     * Pauses the game.
+     */
+    public static final int PAUSE = 1 << 3;
+    /**
+     * Every action.
+     */
+    public static final int ALL = LEFT | RIGHT | CONFIRM | PAUSE;
+
+    private InputAction() {
+    }
+}
@@ -0,0 +1,288 @@
+package animations;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The InputRecording class records a game session, or plays a recorded
+ * session back.
+ * While recording, every frame is kept as the bitmask of the actions taken in
+ * it (the InputSnapshot the AnimationRunner samples at the beginning of the
+ * frame), the number of steps run in the frame, and how far between the last
+ * two steps it was drawn. The classes of the levels that were run are kept as
+ * well. Since the actions are recorded and not the keys, a session is played
+ * back the same whatever keys are bound to the actions.
+ * While playing back, the actions of every frame are read from the recording,
+ * and the AnimationRunner runs the recorded number of steps in every frame
+ * instead of measuring the time, so the session is simulated exactly as it
+ * was recorded, however fast the frames are run.
+ * A recording is saved as a compact binary file: a header with the rates and
+ * the levels, followed by three bytes per frame. Recordings of the first
+ * format, which kept the pressed keys, are still loaded.
+ *
+ * @author Eitan Maimoni
+ * @version 19.0.2
+ * @since 2023-06-01
+ */
+public class InputRecording {
+    private static final int MAGIC = 0x41524B52;
+    private static final int FORMAT_VERSION = 2;
+    // the first format kept the keys left, right, space, and "p" in three
+    // ways, the first three of them in the bits of their actions
+    private static final int KEYS_FORMAT_VERSION = 1;
+    private static final int KEYS_ACTIONS_MASK = 0x7;
+    private static final int KEYS_PAUSE_SHIFT = 3;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_STEPS = 255;
+    private static final double ALPHA_SCALE = 255;
+    private final boolean playingBack;
+    private final int framesPerSecond;
+    private final int stepsPerSecond;
+    private final List<String> levels;
+    // the actions, steps and alpha of every frame, by frame
+    private byte[] actions;
+    private byte[] steps;
+    private byte[] alphas;
+    private int frameCount;
+    private int frame;
+
+    private InputRecording(boolean playingBack, int framesPerSecond, int stepsPerSecond, List<String> levels,
+                           int capacity) {
+        this.playingBack = playingBack;
+        this.framesPerSecond = framesPerSecond;
+        this.stepsPerSecond = stepsPerSecond;
+        this.levels = levels;
+        this.actions = new byte[capacity];
+        this.steps = new byte[capacity];
+        this.alphas = new byte[capacity];
+        this.frameCount = 0;
+        this.frame = 0;
+    }
+
+    /**
+     * Starts recording a session.
+     *
+     * @param framesPerSecond the number of frames drawn per second
+     * @param stepsPerSecond  the number of steps per second SteppedAnimations
+     *                        are simulated in
+     * @return the recording
+     */
+    public static InputRecording record(int framesPerSecond, int stepsPerSecond) {
+        return new InputRecording(false, framesPerSecond, stepsPerSecond, new ArrayList<>(), INITIAL_CAPACITY);
+    }
+
+    /**
+     * Loads a saved recording to play it back.
+     *
+     * @param file the file the recording was saved to
+     * @return the recording
+     * @throws IOException if the file can't be read, or is not a recording
+     */
+    public static InputRecording load(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            int version = in.readInt() == MAGIC ? in.readUnsignedByte() : -1;
+            if (version != FORMAT_VERSION && version != KEYS_FORMAT_VERSION) {
+                throw new IOException(file + " is not a recording of a game session");
+            }
+            int framesPerSecond = in.readInt();
+            int stepsPerSecond = in.readInt();
+            int levelCount = in.readInt();
+            List<String> levels = new ArrayList<>();
+            for (int i = 0; i < levelCount; i++) {
+                levels.add(in.readUTF());
+            }
+            int frameCount = in.readInt();
+            if (framesPerSecond <= 0 || stepsPerSecond <= 0 || frameCount < 0) {
+                throw new IOException(file + " is a corrupted recording");
+            }
+            InputRecording recording = new InputRecording(true, framesPerSecond, stepsPerSecond, levels,
+                    frameCount);
+            in.readFully(recording.actions);
+            if (version == KEYS_FORMAT_VERSION) {
+                for (int i = 0; i < frameCount; i++) {
+                    int keys = recording.actions[i] & 0xFF;
+                    int action = keys & KEYS_ACTIONS_MASK;
+                    if ((keys >> KEYS_PAUSE_SHIFT) != 0) {
+                        action |= InputAction.PAUSE;
+                    }
+                    recording.actions[i] = (byte) action;
+                }
+            }
+            in.readFully(recording.steps);
+            in.readFully(recording.alphas);
+            recording.frameCount = frameCount;
+            return recording;
+        }
+    }
+
+    /**
+     * Saves the recording to the given file.
+     *
+     * @param file the file to save to
+     * @throws IOException if the file can't be written
+     */
+    public void save(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(FORMAT_VERSION);
+            out.writeInt(this.framesPerSecond);
+            out.writeInt(this.stepsPerSecond);
+            out.writeInt(this.levels.size());
+            for (String level : this.levels) {
+                out.writeUTF(level);
+            }
+            out.writeInt(this.frameCount);
+            out.write(this.actions, 0, this.frameCount);
+            out.write(this.steps, 0, this.frameCount);
+            out.write(this.alphas, 0, this.frameCount);
+        }
+    }
+
+    /**
+     * Checks if the recording is played back.
+     *
+     * @return true if the recording was loaded, false if it is recorded
+     */
+    public boolean isPlayingBack() {
+        return this.playingBack;
+    }
+
+    /**
+     * Checks if every recorded frame was played back.
+     *
+     * @return true if no more frames may be run, false otherwise
+     */
+    public boolean isFinished() {
+        return isPlayingBack() && this.frame >= this.frameCount;
+    }
+
+    /**
+     * Gets the number of frames drawn per second in the session.
+     *
+     * @return the frames per second
+     */
+    public int getFramesPerSecond() {
+        return this.framesPerSecond;
+    }
+
+    /**
+     * Gets the number of steps per second the session was simulated in.
+     *
+     * @return the steps per second
+     */
+    public int getStepsPerSecond() {
+        return this.stepsPerSecond;
+    }
+
+    /**
+     * Gets the number of frames recorded.
+     *
+     * @return the number of frames
+     */
+    public int getFrameCount() {
+        return this.frameCount;
+    }
+
+    /**
+     * Records that a level is run. Ignored while playing back.
+     *
+     * @param levelClass the name of the class of the level
+     */
+    public void addLevel(String levelClass) {
+        if (!isPlayingBack()) {
+            this.levels.add(levelClass);
+        }
+    }
+
+    /**
+     * Gets the names of the classes of the levels run in the session, in
+     * order.
+     *
+     * @return an unmodifiable list of the class names
+     */
+    public List<String> getLevels() {
+        return Collections.unmodifiableList(this.levels);
+    }
+
+    /**
+     * Begins a frame, recording the actions taken in it. The actions are
+     * ignored while playing back (see getActions).
+     * The frames are numbered in the order they begin, so the frames of an
+     * animation run inside a step of another frame (like the pause screen)
+     * come after it.
+     *
+     * @param action the actions taken in the frame, as InputAction bits
+     * @return the number of the frame
+     */
+    public int beginFrame(int action) {
+        int index = this.frame++;
+        if (isPlayingBack()) {
+            return index;
+        }
+        if (this.frameCount == this.actions.length) {
+            this.actions = Arrays.copyOf(this.actions, this.frameCount * 2);
+            this.steps = Arrays.copyOf(this.steps, this.frameCount * 2);
+            this.alphas = Arrays.copyOf(this.alphas, this.frameCount * 2);
+        }
+        this.actions[index] = (byte) action;
+        this.frameCount++;
+        return index;
+    }
+
+    /**
+     * Gets the actions taken in the given frame when it was recorded.
+     *
+     * @param index the number of the frame
+     * @return the actions, as InputAction bits, NONE after the last frame
+     */
+    public int getActions(int index) {
+        return index < this.frameCount ? this.actions[index] & 0xFF : InputAction.NONE;
+    }
+
+    /**
+     * Gets the number of steps run in the given frame when it was recorded.
+     *
+     * @param index the number of the frame
+     * @return the number of steps
+     */
+    public int getSteps(int index) {
+        return this.steps[index] & 0xFF;
+    }
+
+    /**
+     * Gets how far between the last two steps the given frame was drawn when
+     * it was recorded.
+     *
+     * @param index the number of the frame
+     * @return the alpha, between 0 and 1
+     */
+    public double getAlpha(int index) {
+        return (this.alphas[index] & 0xFF) / ALPHA_SCALE;
+    }
+
+    /**
+     * Ends the given frame, recording the steps run in it and how it was
+     * drawn. Ignored while playing back.
+     *
+     * @param index     the number of the frame
+     * @param stepCount the number of steps run in the frame
+     * @param alpha     how far between the last two steps the frame was
+     *                  drawn, between 0 and 1
+     */
+    public void endFrame(int index, int stepCount, double alpha) {
+        if (isPlayingBack()) {
+            return;
+        }
+        this.steps[index] = (byte) Math.min(MAX_STEPS, stepCount);
+        this.alphas[index] = (byte) Math.round(Math.max(0, Math.min(1, alpha)) * ALPHA_SCALE);
+    }
+}
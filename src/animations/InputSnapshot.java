@@ -0,0 +1,163 @@
+package animations;
+
+import biuoop.KeyboardSensor;
+
+import java.util.Arrays;
+
+/**
+ * The InputSnapshot class holds the actions of the game (see InputAction)
+ * taken in the current frame, as a bitmask.
+ * The AnimationRunner samples the keyboard once at the beginning of every
+ * frame, reading every key bound to an action, so every step of the frame sees
+ * the same input and reading an action is a single bitwise and. While a
+ * recording is played back, the actions are read from the recording instead.
+ * The keys are bound to the actions by a configurable mapping, which by default
+ * binds the arrows to LEFT and RIGHT, the space key to CONFIRM, and "p" (in
+ * both cases, and in Hebrew) to PAUSE.
+ *
+ * @author Eitan Maimoni
+ * @version 19.0.2
+ * @since 2023-06-01
+ */
+public class InputSnapshot implements KeyboardSensor {
+    private static final int INITIAL_CAPACITY = 8;
+    private final KeyboardSensor source;
+    // the bound keys and their actions, by binding
+    private String[] keys;
+    private int[] actions;
+    private int bindingCount;
+    private int taken;
+
+    /**
+     * Constructs a new InputSnapshot that samples the given sensor, with the
+     * default bindings.
+     *
+     * @param source the sensor of the keyboard
+     */
+    public InputSnapshot(KeyboardSensor source) {
+        this.source = source;
+        this.keys = new String[INITIAL_CAPACITY];
+        this.actions = new int[INITIAL_CAPACITY];
+        this.bindingCount = 0;
+        this.taken = InputAction.NONE;
+        bind(LEFT_KEY, InputAction.LEFT);
+        bind(RIGHT_KEY, InputAction.RIGHT);
+        bind(SPACE_KEY, InputAction.CONFIRM);
+        bind("p", InputAction.PAUSE);
+        bind("P", InputAction.PAUSE);
+        bind("פ", InputAction.PAUSE);
+    }
+
+    /**
+     * Binds the given key to the given actions, replacing its former binding.
+     * Several keys may be bound to the same action.
+     *
+     * @param key    the key
+     * @param action the actions the key takes, one or more InputAction bits
+     */
+    public void bind(String key, int action) {
+        for (int i = 0; i < this.bindingCount; i++) {
+            if (this.keys[i].equals(key)) {
+                this.actions[i] = action;
+                return;
+            }
+        }
+        if (this.bindingCount == this.keys.length) {
+            this.keys = Arrays.copyOf(this.keys, this.bindingCount * 2);
+            this.actions = Arrays.copyOf(this.actions, this.bindingCount * 2);
+        }
+        this.keys[this.bindingCount] = key;
+        this.actions[this.bindingCount] = action;
+        this.bindingCount++;
+    }
+
+    /**
+     * Removes the binding of the given key, so it is no longer sampled.
+     *
+     * @param key the key
+     */
+    public void unbind(String key) {
+        for (int i = 0; i < this.bindingCount; i++) {
+            if (this.keys[i].equals(key)) {
+                this.bindingCount--;
+                this.keys[i] = this.keys[this.bindingCount];
+                this.actions[i] = this.actions[this.bindingCount];
+                this.keys[this.bindingCount] = null;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the actions the given key is bound to.
+     *
+     * @param key the key
+     * @return the actions of the key, NONE if it isn't bound
+     */
+    public int getBinding(String key) {
+        for (int i = 0; i < this.bindingCount; i++) {
+            if (this.keys[i].equals(key)) {
+                return this.actions[i];
+            }
+        }
+        return InputAction.NONE;
+    }
+
+    /**
+     * Reads every bound key from the keyboard, and keeps the actions taken by
+     * the pressed keys for the frame.
+     *
+     * @return the actions taken in the frame
+     */
+    int sample() {
+        int sampled = InputAction.NONE;
+        for (int i = 0; i < this.bindingCount; i++) {
+            if (this.source.isPressed(this.keys[i])) {
+                sampled |= this.actions[i];
+            }
+        }
+        this.taken = sampled;
+        return sampled;
+    }
+
+    /**
+     * Sets the actions taken in the frame, instead of sampling the keyboard.
+     *
+     * @param action the actions taken, as InputAction bits
+     */
+    void set(int action) {
+        this.taken = action;
+    }
+
+    /**
+     * Returns the actions taken in the frame.
+     *
+     * @return the actions, as InputAction bits
+     */
+    public int getActions() {
+        return this.taken;
+    }
+
+    /**
+     * Checks if any of the given actions was taken in the frame.
+     *
+     * @param action one or more InputAction bits
+     * @return true if one of the actions was taken, false otherwise
+     */
+    public boolean isDown(int action) {
+        return (this.taken & action) != 0;
+    }
+
+    /**
+     * Checks if the action the given key is bound to was taken in the frame,
+     * by that key or by another key bound to it. A key that isn't bound is
+     * never sampled, and is never pressed.
+     *
+     * @param key the key
+     * @return true if the action of the key was taken, false otherwise
+     */
+    @Override
+    public boolean isPressed(String key) {
+        return isDown(getBinding(key));
+    }
+}
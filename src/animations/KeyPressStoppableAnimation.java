@@ -1,47 +1,48 @@
 package animations;
 
 import biuoop.DrawSurface;
-import biuoop.KeyboardSensor;
 
 /**
  * The KeyPressStoppableAnimation class represents an animation that can be
- * stopped by a key press.
+ * stopped by a key press (an action of the input, pressed again after the
+ * animation started).
  * 
  * @author Eitan Maimoni
  * @version 19.0.2
  * @since 2023-06-01
  */
 public class KeyPressStoppableAnimation implements Animation {
-    private final KeyboardSensor keyboard;
+    private final InputSnapshot input;
     private boolean stop;
     private final Animation animation;
     private boolean isAlreadyPressed;
-    private final String key;
+    private final int action;
 
     /**
      * Constructs a new KeyPressStoppableAnimation.
      *
-     * @param sensor    The KeyboardSensor used for input handling.
-     * @param key       The key that can stop the animation.
+     * @param input     The input snapshot used for input handling.
+     * @param action    The action that can stop the animation (an
+     *                  InputAction).
      * @param animation The underlying animation to be played.
      */
-    public KeyPressStoppableAnimation(KeyboardSensor sensor, String key, Animation animation) {
-        this.keyboard = sensor;
+    public KeyPressStoppableAnimation(InputSnapshot input, int action, Animation animation) {
+        this.input = input;
         this.stop = false;
         this.animation = animation;
         this.isAlreadyPressed = true;
-        this.key = key;
+        this.action = action;
     }
 
     /**
      * Checks if the stop key is pressed.
      */
     public void isKeyPressed() {
-        if (this.keyboard.isPressed(key) && this.isAlreadyPressed) {
+        if (this.input.isDown(this.action) && this.isAlreadyPressed) {
             this.isAlreadyPressed = false;
             return;
         }
-        if (this.keyboard.isPressed(key)) {
+        if (this.input.isDown(this.action)) {
             this.stop = true;
         }
     }
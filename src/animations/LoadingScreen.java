@@ -0,0 +1,37 @@
+package animations;
+
+import biuoop.DrawSurface;
+
+import java.util.concurrent.Future;
+
+/**
+ * The LoadingScreen class represents a screen displayed while a task (like
+ * building the next level) runs on another thread. It stops once the task is
+ * done, so the frames keep being shown while waiting for it.
+ *
+ * @author Eitan Maimoni
+ * @version 19.0.2
+ * @since 2023-06-01
+ */
+public class LoadingScreen implements Animation {
+    private final Future<?> task;
+
+    /**
+     * Constructs a new LoadingScreen animation.
+     *
+     * @param task the task to wait for
+     */
+    public LoadingScreen(Future<?> task) {
+        this.task = task;
+    }
+
+    @Override
+    public void doOneFrame(DrawSurface d) {
+        d.drawText(310, d.getHeight() / 2, "loading...", 32);
+    }
+
+    @Override
+    public boolean shouldStop() {
+        return this.task.isDone();
+    }
+}
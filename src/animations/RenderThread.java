@@ -0,0 +1,150 @@
+package animations;
+
+import biuoop.DrawSurface;
+import biuoop.GUI;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The RenderThread class shows the frames of an AnimationRunner on a thread
+ * of its own, so a slow show doesn't hold the simulation back.
+ * The simulation thread draws every frame into a FrameSnapshot and publishes
+ * it, and the render thread draws the latest published snapshot on the GUI (or
+ * on a headless surface) and shows it. The two threads hand the snapshots over
+ * without locks, through three snapshots: the one the simulation thread draws
+ * into, the one the render thread draws from, and the latest published one in
+ * between, which each thread swaps with its own. A frame published while the
+ * render thread was still busy replaces the one before it, which is never
+ * shown.
+ *
+ * @author Eitan Maimoni
+ * @version 19.0.2
+ * @since 2023-06-01
+ */
+class RenderThread implements Runnable {
+    private final GUI gui;
+    private final DrawSurface surface;
+    private final Thread thread;
+    private final AtomicReference<FrameSnapshot> latest;
+    // owned by the simulation thread
+    private FrameSnapshot back;
+    private long published;
+    // owned by the render thread
+    private FrameSnapshot front;
+    private volatile long shown;
+    private volatile long shownCount;
+    private volatile boolean running;
+
+    /**
+     * Constructs a new RenderThread that shows the frames on the given GUI.
+     *
+     * @param gui    the GUI to show the frames on
+     * @param width  the width of the frames
+     * @param height the height of the frames
+     */
+    RenderThread(GUI gui, int width, int height) {
+        this(gui, null, width, height);
+    }
+
+    /**
+     * Constructs a new RenderThread that draws the frames on the given surface.
+     *
+     * @param surface the surface to draw the frames on
+     */
+    RenderThread(DrawSurface surface) {
+        this(null, surface, surface.getWidth(), surface.getHeight());
+    }
+
+    private RenderThread(GUI gui, DrawSurface surface, int width, int height) {
+        this.gui = gui;
+        this.surface = surface;
+        this.back = new FrameSnapshot(width, height);
+        this.front = new FrameSnapshot(width, height);
+        this.latest = new AtomicReference<>(new FrameSnapshot(width, height));
+        this.published = 0;
+        this.shown = 0;
+        this.shownCount = 0;
+        this.running = true;
+        this.thread = new Thread(this, "render");
+        // a game that ends without closing the runner still exits
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Returns the snapshot the next frame is drawn into, cleared. Called by
+     * the simulation thread.
+     *
+     * @return the snapshot to draw the frame into
+     */
+    DrawSurface beginFrame() {
+        this.back.clear();
+        return this.back;
+    }
+
+    /**
+     * Publishes the frame drawn into the snapshot returned by beginFrame, so
+     * the render thread shows it next. Called by the simulation thread.
+     */
+    void publish() {
+        this.published++;
+        this.back.setFrame(this.published);
+        this.back = this.latest.getAndSet(this.back);
+        LockSupport.unpark(this.thread);
+    }
+
+    /**
+     * Returns the number of published frames that were not shown, because a
+     * later frame was published before the render thread got to them. Called
+     * by the simulation thread.
+     *
+     * @return the number of skipped frames
+     */
+    long getSkippedCount() {
+        return this.published - this.shownCount;
+    }
+
+    /**
+     * Stops the render thread once it showed the last published frame, and
+     * waits for it.
+     */
+    void stop() {
+        this.running = false;
+        LockSupport.unpark(this.thread);
+        try {
+            this.thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            boolean stopping = !this.running;
+            // the latest snapshot is new if it wasn't shown yet, otherwise
+            // it is the one the render thread gave back last time
+            if (this.latest.get().getFrame() <= this.shown) {
+                if (stopping) {
+                    return;
+                }
+                LockSupport.park(this);
+                continue;
+            }
+            this.front = this.latest.getAndSet(this.front);
+            if (this.front.getFrame() <= this.shown) {
+                continue;
+            }
+            if (this.gui != null) {
+                DrawSurface d = this.gui.getDrawSurface();
+                this.front.replay(d);
+                this.gui.show(d);
+            } else {
+                this.front.replay(this.surface);
+            }
+            this.shown = this.front.getFrame();
+            this.shownCount++;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package animations;
+
+import biuoop.KeyboardSensor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The ScriptedKeyboardSensor class is a KeyboardSensor whose keys are pressed
+ * by a script instead of a user.
+ * Every key press lasts a range of frames, and the AnimationRunner moves the
+ * sensor to the next frame after each frame it runs.
+ *
+ * @author Eitan Maimoni
+ * @version 19.0.2
+ * @since 2023-06-01
+ */
+public class ScriptedKeyboardSensor implements KeyboardSensor {
+    private final List<String> keys;
+    private final List<long[]> frames;
+    private long frame;
+
+    /**
+     * Constructs a new ScriptedKeyboardSensor with an empty script.
+     */
+    public ScriptedKeyboardSensor() {
+        this.keys = new ArrayList<>();
+        this.frames = new ArrayList<>();
+        this.frame = 0;
+    }
+
+    /**
+     * Adds a key press to the script.
+     *
+     * @param key       the key to press
+     * @param fromFrame the first frame the key is pressed in
+     * @param toFrame   the last frame the key is pressed in
+     */
+    public void hold(String key, long fromFrame, long toFrame) {
+        this.keys.add(key);
+        this.frames.add(new long[] {fromFrame, toFrame});
+    }
+
+    /**
+     * Returns the current frame of the script.
+     *
+     * @return the current frame
+     */
+    public long getFrame() {
+        return this.frame;
+    }
+
+    /**
+     * Moves the script to the next frame.
+     */
+    public void nextFrame() {
+        this.frame++;
+    }
+
+    @Override
+    public boolean isPressed(String key) {
+        for (int i = 0; i < this.keys.size(); i++) {
+            long[] range = this.frames.get(i);
+            if (range[0] <= this.frame && this.frame <= range[1] && this.keys.get(i).equals(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
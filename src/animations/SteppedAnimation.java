@@ -0,0 +1,32 @@
+package animations;
+
+import biuoop.DrawSurface;
+
+/**
+ * The SteppedAnimation interface represents an animation whose simulation
+ * runs in fixed time steps, independent of the rate it is drawn in.
+ * The AnimationRunner advances the simulation at a fixed rate, and draws the
+ * animation in between two steps by interpolating the positions of the two
+ * last steps.
+ *
+ * @author Eitan Maimoni
+ * @version 19.0.2
+ * @since 2023-06-01
+ */
+public interface SteppedAnimation extends Animation {
+    /**
+     * Advances the simulation of the animation by one time step.
+     *
+     * @param dt the length of the step, in frames of 1/60 of a second
+     */
+    void step(double dt);
+
+    /**
+     * Draws the animation in between the two last steps.
+     *
+     * @param d     the DrawSurface to draw on
+     * @param alpha how far between the previous step (0) and the last step (1)
+     *              to draw the animation
+     */
+    void render(DrawSurface d, double alpha);
+}
@@ -0,0 +1,99 @@
+package backgrounds;
+
+import animations.ImageDrawSurface;
+import biuoop.DrawSurface;
+import sprites.DirtyRegions;
+import sprites.RegionSprite;
+import sprites.Sprite;
+import sprites.StaticSprite;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/**
+ * The CachedBackground class draws a background once into an offscreen
+ * image, and then draws the image every frame instead of the background.
+ * The image is drawn again only when the background reports a change (a new
+ * version), or the surface changes its size. It can also be drawn ahead of
+ * time, on another thread, before the background is shown (see prepare).
+ * The image is opaque (which is much faster to draw than a translucent
+ * image), so the background should cover the whole surface.
+ * A background that is not a StaticSprite can't report changes, so it is
+ * drawn directly every frame, and changes the whole screen every frame when
+ * rendering dirty regions.
+ *
+ * @author Eitan Maimoni
+ * @version 19.0.2
+ * @since 2023-06-01
+ */
+public class CachedBackground implements RegionSprite {
+    private final Sprite background;
+    private BufferedImage image;
+    private long version;
+
+    /**
+     * Constructs a new CachedBackground for the given background.
+     *
+     * @param background the background to cache
+     */
+    public CachedBackground(Sprite background) {
+        this.background = background;
+    }
+
+    /**
+     * Draws the background into the image, if it changed since it was last
+     * drawn or the image is not of the given size. A background that can't
+     * be cached is not drawn.
+     *
+     * @param width  the width of the surface the background is shown on
+     * @param height the height of the surface the background is shown on
+     */
+    public void prepare(int width, int height) {
+        if (!(this.background instanceof StaticSprite)) {
+            return;
+        }
+        long currentVersion = ((StaticSprite) this.background).getVersion();
+        if (this.image == null || this.version != currentVersion
+                || this.image.getWidth() != width || this.image.getHeight() != height) {
+            ImageDrawSurface surface = new ImageDrawSurface(
+                    new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB));
+            this.background.drawOn(surface);
+            surface.dispose();
+            this.image = surface.getImage();
+            this.version = currentVersion;
+        }
+    }
+
+    @Override
+    public void drawOn(DrawSurface d) {
+        if (!(this.background instanceof StaticSprite)) {
+            this.background.drawOn(d);
+            return;
+        }
+        prepare(d.getWidth(), d.getHeight());
+        d.drawImage(0, 0, this.image);
+    }
+
+    @Override
+    public void addDirtyRegions(DirtyRegions regions, double alpha) {
+        if (!(this.background instanceof StaticSprite) || this.image == null
+                || this.version != ((StaticSprite) this.background).getVersion()) {
+            regions.addAll();
+        }
+    }
+
+    @Override
+    public void addRegion(DirtyRegions regions) {
+        regions.addAll();
+    }
+
+    @Override
+    public boolean intersects(Rectangle area) {
+        return true;
+    }
+
+    @Override
+    public void timePassed() {
+        this.background.timePassed();
+    }
+}
@@ -1,7 +1,7 @@
 package backgrounds;
 
 import biuoop.DrawSurface;
-import sprites.Sprite;
+import sprites.StaticSprite;
 
 import java.awt.Color;
 
@@ -12,20 +12,24 @@ import java.awt.Color;
  * @version 19.0.2
  * @since 2023-06-01
  */
-public class CityBackground implements Sprite {
+public class CityBackground implements StaticSprite {
     private static final double WINDOW_WIDTH = 800;
     private static final double WINDOW_HEIGHT = 600;
+    private static final Color SKY = new Color(200, 127, 80);
+    private static final Color SUN = new Color(255, 215, 0);
+    private static final Color WINDOW = new Color(245, 222, 179);
+    private static final Color CLOUD = new Color(190, 190, 190);
 
     @Override
     public void drawOn(DrawSurface d) {
         // Draw the sky
-        d.setColor(new Color(200, 127, 80));
+        d.setColor(SKY);
         d.fillRectangle(0, 0, (int) WINDOW_WIDTH, (int) WINDOW_HEIGHT);
         // Draw the sun (partially hidden behind the big building)
         int sunX = 370;
         int sunY = 300;
         int sunRadius = 70;
-        d.setColor(new Color(255, 215, 0));
+        d.setColor(SUN);
         d.fillCircle(sunX, sunY, sunRadius);
         // Draw the big building
         int bigBuildingX = 75;
@@ -57,11 +61,11 @@ public class CityBackground implements Sprite {
         d.setColor(Color.white);
         d.fillCircle(circleX, circleY, circleRadius - 15);
         // Draw the windows for both buildings
-        d.setColor(new Color(245, 222, 179));
+        d.setColor(WINDOW);
         drawWindows(d, bigBuildingX, bigBuildingY, bigBuildingWidth, bigBuildingHeight);
         drawWindows(d, smallBuildingX, smallBuildingY, smallBuildingWidth, smallBuildingHeight);
         // Draw the clouds
-        d.setColor(new Color(190, 190, 190));
+        d.setColor(CLOUD);
         drawCloud(d, 100, 100);
         drawCloud(d, 300, 150);
         drawCloud(d, 600, 100);
@@ -93,4 +97,10 @@ public class CityBackground implements Sprite {
     @Override
     public void timePassed() {
     }
+
+    @Override
+    public long getVersion() {
+        // the background never changes
+        return 0;
+    }
 }
\ No newline at end of file
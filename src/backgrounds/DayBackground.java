@@ -1,7 +1,7 @@
 package backgrounds;
 
 import biuoop.DrawSurface;
-import sprites.Sprite;
+import sprites.StaticSprite;
 
 import java.awt.Color;
 
@@ -12,32 +12,38 @@ import java.awt.Color;
  * @version 19.0.2
  * @since 2023-06-01
  */
-public class DayBackground implements Sprite {
+public class DayBackground implements StaticSprite {
     private static final double WINDOW_WIDTH = 800;
     private static final double WINDOW_HEIGHT = 600;
+    private static final Color SKY = new Color(135, 206, 250); // Light blue
+    private static final Color WATER = new Color(0, 119, 190); // Deep blue
+    private static final Color SAND = new Color(244, 164, 96); // Sandy brown
+    private static final Color SUN_RAYS = new Color(255, 255, 153); // Pale yellow
+    private static final Color TREE_TRUNK = new Color(139, 69, 19); // Brown
+    private static final Color TREE_TOP = new Color(34, 139, 34); // Green
 
     @Override
     public void drawOn(DrawSurface d) {
         // Draw the sky
-        d.setColor(new Color(135, 206, 250)); // Light blue
+        d.setColor(SKY);
         d.fillRectangle(0, 0, (int) WINDOW_WIDTH, (int) WINDOW_HEIGHT);
         // Draw the water
-        d.setColor(new Color(0, 119, 190)); // Deep blue
+        d.setColor(WATER);
         d.fillRectangle(0, (int) (WINDOW_HEIGHT * 0.5), (int) WINDOW_WIDTH, (int) (WINDOW_HEIGHT * 0.3));
         // Draw the sand
-        d.setColor(new Color(244, 164, 96)); // Sandy brown
+        d.setColor(SAND);
         d.fillRectangle(0, (int) (WINDOW_HEIGHT * 0.7), (int) WINDOW_WIDTH, (int) (WINDOW_HEIGHT * 0.3));
         // Draw the sun
         d.setColor(Color.YELLOW);
         d.fillCircle((int) (WINDOW_WIDTH * 0.8), (int) (WINDOW_HEIGHT * 0.2), 50);
         // Draw the sun rays
-        d.setColor(new Color(255, 255, 153)); // Pale yellow
+        d.setColor(SUN_RAYS);
         drawSunRays(d, (int) (WINDOW_WIDTH * 0.8), (int) (WINDOW_HEIGHT * 0.2), 50, 60);
         // Draw the tree trunk
-        d.setColor(new Color(139, 69, 19)); // Brown
+        d.setColor(TREE_TRUNK);
         d.fillRectangle((int) (WINDOW_WIDTH * 0.2), (int) (WINDOW_HEIGHT * 0.5), 20, (int) (WINDOW_HEIGHT * 0.3));
         // Draw the tree top
-        d.setColor(new Color(34, 139, 34)); // Green
+        d.setColor(TREE_TOP);
         int treeTopCenterX = (int) (WINDOW_WIDTH * 0.2) + 10;
         int treeTopCenterY = (int) (WINDOW_HEIGHT * 0.5);
         d.fillCircle(treeTopCenterX, treeTopCenterY, 60);
@@ -61,4 +67,10 @@ public class DayBackground implements Sprite {
     @Override
     public void timePassed() {
     }
+
+    @Override
+    public long getVersion() {
+        // the background never changes
+        return 0;
+    }
 }
@@ -1,7 +1,7 @@
 package backgrounds;
 
 import biuoop.DrawSurface;
-import sprites.Sprite;
+import sprites.StaticSprite;
 
 import java.awt.Color;
 
@@ -12,41 +12,46 @@ import java.awt.Color;
  * @version 19.0.2
  * @since 2023-06-01
  */
-public class NightBackground implements Sprite {
+public class NightBackground implements StaticSprite {
     private static final double WINDOW_WIDTH = 800;
     private static final double WINDOW_HEIGHT = 600;
+    private static final Color SKY = new Color(0, 0, 139); // Dark blue
+    private static final Color WATER = new Color(25, 25, 95); // Midnight blue
+    private static final Color SAND = new Color(139, 69, 19); // Sandy brown
+    private static final Color HALATION_1 = new Color(200, 200, 200); // Whiter shade
+    private static final Color HALATION_2 = new Color(215, 220, 215); // Whiter shade
+    private static final Color HALATION_3 = new Color(230, 230, 230); // Whiter shade
+    private static final Color TREE_TRUNK = new Color(100, 69, 19); // Brown
+    private static final Color TREE_TOP = new Color(0, 100, 0); // Dark green
 
     @Override
     public void drawOn(DrawSurface d) {
         // Draw the sky
-        d.setColor(new Color(0, 0, 139)); // Dark blue
+        d.setColor(SKY);
         d.fillRectangle(0, 0, (int) WINDOW_WIDTH, (int) WINDOW_HEIGHT);
         // Draw the water
-        d.setColor(new Color(25, 25, 95)); // Midnight blue
+        d.setColor(WATER);
         d.fillRectangle(0, (int) (WINDOW_HEIGHT * 0.5), (int) WINDOW_WIDTH, (int) (WINDOW_HEIGHT * 0.3));
         // Draw the sand
-        d.setColor(new Color(139, 69, 19)); // Sandy brown
+        d.setColor(SAND);
         d.fillRectangle(0, (int) (WINDOW_HEIGHT * 0.7), (int) WINDOW_WIDTH, (int) (WINDOW_HEIGHT * 0.3));
         // Draw the moon
         int moonCenterX = (int) (WINDOW_WIDTH * 0.2);
         int moonCenterY = (int) (WINDOW_HEIGHT * 0.2);
         int moonRadius = 50;
-        Color halationColor1 = new Color(200, 200, 200); // Whiter shade
-        Color halationColor2 = new Color(215, 220, 215); // Whiter shade
-        Color halationColor3 = new Color(230, 230, 230); // Whiter shade
-        d.setColor(halationColor1);
+        d.setColor(HALATION_1);
         d.fillCircle(moonCenterX, moonCenterY, moonRadius + 15);
-        d.setColor(halationColor2);
+        d.setColor(HALATION_2);
         d.fillCircle(moonCenterX, moonCenterY, moonRadius + 10);
-        d.setColor(halationColor3);
+        d.setColor(HALATION_3);
         d.fillCircle(moonCenterX, moonCenterY, moonRadius + 5);
         d.setColor(Color.WHITE);
         d.fillCircle(moonCenterX, moonCenterY, moonRadius);
         // Draw the tree trunk
-        d.setColor(new Color(100, 69, 19)); // Brown
+        d.setColor(TREE_TRUNK);
         d.fillRectangle((int) (WINDOW_WIDTH * 0.2), (int) (WINDOW_HEIGHT * 0.5), 20, (int) (WINDOW_HEIGHT * 0.3));
         // Draw the tree top
-        d.setColor(new Color(0, 100, 0)); // Dark green
+        d.setColor(TREE_TOP);
         int treeTopCenterX = (int) (WINDOW_WIDTH * 0.2) + 10;
         int treeTopCenterY = (int) (WINDOW_HEIGHT * 0.5);
         d.fillCircle(treeTopCenterX, treeTopCenterY, 60);
@@ -59,4 +64,10 @@ public class NightBackground implements Sprite {
     @Override
     public void timePassed() {
     }
+
+    @Override
+    public long getVersion() {
+        // the background never changes
+        return 0;
+    }
 }
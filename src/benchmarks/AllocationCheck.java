@@ -0,0 +1,169 @@
+package benchmarks;
+
+import java.awt.Color;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import geometry.Point;
+import geometry.Rectangle;
+import objects.Ball;
+import objects.BallSystem;
+import objects.Block;
+import physics.GameEnvironment;
+import physics.Velocity;
+
+/**
+ * The AllocationCheck class checks that stepping balls allocates no memory.
+ * For every mode of the environment (with and without the spatial grid, and
+ * with the rectangles in a box batch) and of the ball system (querying on
+ * every step, only when a ball may hit something, and resolving several
+ * collisions per step), it warms up a BallSystem bouncing between the walls
+ * and the blocks of a level, and then measures the bytes the thread allocates
+ * while it steps. It exits with status 1 if any mode allocated.
+ * A mode that allocated is measured again (up to a few rounds), because the
+ * JIT may allocate a few bytes once while it compiles a method again, while
+ * a step that allocates allocates in every round.
+ * The arguments are (all optional): "blocks=N", "balls=N", "warmup=N" (the
+ * steps run before measuring) and "steps=N" (the steps measured).
+ *
+ * @author Eitan Maimoni
+ * @version 19.0.2
+ * @since 2023-06-01
+ */
+public class AllocationCheck {
+    private static final double BALL_SPEED = 5;
+    private static final int ROUNDS = 3;
+    private final com.sun.management.ThreadMXBean threads;
+    private final int blockNum;
+    private final int ballsNum;
+    private final int warmupSteps;
+    private final int measuredSteps;
+
+    /**
+     * Constructs a new AllocationCheck.
+     *
+     * @param blockNum      the number of blocks
+     * @param ballsNum      the number of balls
+     * @param warmupSteps   the number of steps run before measuring
+     * @param measuredSteps the number of steps measured
+     */
+    public AllocationCheck(int blockNum, int ballsNum, int warmupSteps, int measuredSteps) {
+        this.threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        this.threads.setThreadAllocatedMemoryEnabled(true);
+        this.blockNum = blockNum;
+        this.ballsNum = ballsNum;
+        this.warmupSteps = warmupSteps;
+        this.measuredSteps = measuredSteps;
+    }
+
+    /**
+     * Steps the balls in the given mode, and prints the bytes allocated by the
+     * measured steps, in the first round that allocated nothing or in the
+     * last round.
+     *
+     * @param name        the name of the mode
+     * @param environment the environment the balls bounce in
+     * @param system      the empty system the balls are stepped in
+     * @return the bytes allocated by the measured steps
+     */
+    public long check(String name, GameEnvironment environment, BallSystem system) {
+        Random random = new Random(1);
+        for (int i = 0; i < this.ballsNum; i++) {
+            Ball ball = new Ball(100 + random.nextInt(600), 50 + random.nextInt(100), 6, Color.white);
+            ball.setVelocity(Velocity.fromAngleAndSpeed(random.nextInt(360), BALL_SPEED));
+            ball.setEnvironment(environment);
+            system.add(ball);
+        }
+        for (int s = 0; s < this.warmupSteps; s++) {
+            system.timePassed();
+        }
+        long threadId = Thread.currentThread().getId();
+        long bytes = 0;
+        for (int round = 0; round < ROUNDS && (round == 0 || bytes != 0); round++) {
+            long startBytes = this.threads.getThreadAllocatedBytes(threadId);
+            for (int s = 0; s < this.measuredSteps; s++) {
+                system.timePassed();
+            }
+            bytes = this.threads.getThreadAllocatedBytes(threadId) - startBytes;
+        }
+        System.out.println(name + ": " + bytes + " bytes in " + this.measuredSteps + " steps of "
+                + system.size() + " balls");
+        return bytes;
+    }
+
+    /**
+     * Checks every mode of the environment and of the ball system.
+     *
+     * @return true if no mode allocated, false otherwise
+     */
+    public boolean checkAll() {
+        boolean clean = true;
+        for (int mode = 0; mode < 3; mode++) {
+            String environmentName = mode == 0 ? "linear" : mode == 1 ? "grid" : "linear, batch";
+            for (int system = 0; system < 3; system++) {
+                GameEnvironment environment = environment(mode == 1);
+                if (mode == 2) {
+                    environment.useBoxBatch(false);
+                }
+                BallSystem balls = new BallSystem();
+                String systemName = "every step";
+                if (system == 1) {
+                    balls.setEventDriven(true);
+                    systemName = "event-driven";
+                } else if (system == 2) {
+                    balls.setMaxCollisionsPerStep(4);
+                    systemName = "4 collisions per step";
+                }
+                if (check("BallSystem.timePassed (" + environmentName + ", " + systemName + ")",
+                        environment, balls) != 0) {
+                    clean = false;
+                }
+            }
+        }
+        return clean;
+    }
+
+    private GameEnvironment environment(boolean grid) {
+        GameEnvironment environment = new GameEnvironment(grid);
+        Block[] borderBlocks = new Block[] {
+                new Block(new Rectangle(new Point(25, 0), 750, 25), Color.gray),
+                new Block(new Rectangle(new Point(0, 575), 25, 600), Color.gray),
+                new Block(new Rectangle(new Point(25, 575), 750, 25), Color.gray),
+                new Block(new Rectangle(new Point(775, 575), 25, 600), Color.gray)
+        };
+        for (Block block : borderBlocks) {
+            environment.addCollidable(block);
+        }
+        for (Block block : new BenchmarkLevel(this.blockNum, this.ballsNum).blocks()) {
+            environment.addCollidable(block);
+        }
+        return environment;
+    }
+
+    /**
+     * Runs the check, and exits with status 1 if stepping the balls allocated.
+     *
+     * @param args the input arguments
+     */
+    public static void main(String[] args) {
+        int blocks = 100;
+        int balls = 100;
+        int warmup = 10000;
+        int steps = 2000;
+        for (String arg : args) {
+            if (arg.startsWith("blocks=")) {
+                blocks = Integer.parseInt(arg.substring("blocks=".length()));
+            } else if (arg.startsWith("balls=")) {
+                balls = Integer.parseInt(arg.substring("balls=".length()));
+            } else if (arg.startsWith("warmup=")) {
+                warmup = Integer.parseInt(arg.substring("warmup=".length()));
+            } else if (arg.startsWith("steps=")) {
+                steps = Integer.parseInt(arg.substring("steps=".length()));
+            }
+        }
+        if (!new AllocationCheck(blocks, balls, warmup, steps).checkAll()) {
+            System.out.println("stepping the balls allocated");
+            System.exit(1);
+        }
+    }
+}
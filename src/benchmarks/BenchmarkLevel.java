@@ -0,0 +1,101 @@
+package benchmarks;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+
+import backgrounds.DayBackground;
+import geometry.Point;
+import geometry.Rectangle;
+import levels.LevelInformation;
+import objects.Block;
+import physics.Velocity;
+import sprites.Sprite;
+
+/**
+ * The BenchmarkLevel class represents a level with a given number of blocks
+ * and balls, for benchmarking.
+ * The blocks are laid out in a grid of equal blocks between the side borders,
+ * and the balls are launched in a fan of angles.
+ *
+ * @author Eitan Maimoni
+ * @version 19.0.2
+ * @since 2023-06-01
+ */
+public class BenchmarkLevel implements LevelInformation {
+    private static final double LEFT = 25;
+    private static final double TOP = 500;
+    private static final double WALL_WIDTH = 750;
+    private static final double WALL_HEIGHT = 300;
+    private static final double MAX_BLOCK_HEIGHT = 25;
+    private static final double BALL_SPEED = 5;
+    private final int blockNum;
+    private final int ballsNum;
+
+    /**
+     * Constructs a new BenchmarkLevel.
+     *
+     * @param blockNum the number of blocks
+     * @param ballsNum the number of balls
+     */
+    public BenchmarkLevel(int blockNum, int ballsNum) {
+        this.blockNum = blockNum;
+        this.ballsNum = ballsNum;
+    }
+
+    @Override
+    public int numberOfBalls() {
+        return this.ballsNum;
+    }
+
+    @Override
+    public List<Velocity> initialBallVelocities() {
+        List<Velocity> velocities = new ArrayList<>();
+        for (int i = 0; i < this.ballsNum; i++) {
+            velocities.add(Velocity.fromAngleAndSpeed(30 + (120.0 * i) / Math.max(1, this.ballsNum), BALL_SPEED));
+        }
+        return velocities;
+    }
+
+    @Override
+    public int paddleSpeed() {
+        return 5;
+    }
+
+    @Override
+    public int paddleWidth() {
+        return 100;
+    }
+
+    @Override
+    public String levelName() {
+        return "Benchmark";
+    }
+
+    @Override
+    public Sprite getBackground() {
+        return new DayBackground();
+    }
+
+    @Override
+    public List<Block> blocks() {
+        List<Block> blocks = new ArrayList<>();
+        if (this.blockNum == 0) {
+            return blocks;
+        }
+        int columns = (int) Math.ceil(Math.sqrt(this.blockNum * 2.0));
+        int rows = (int) Math.ceil((double) this.blockNum / columns);
+        double width = WALL_WIDTH / columns;
+        double height = Math.min(MAX_BLOCK_HEIGHT, WALL_HEIGHT / rows);
+        for (int i = 0; i < this.blockNum; i++) {
+            Point p = new Point(LEFT + width * (i % columns), TOP - height * (i / columns));
+            blocks.add(new Block(new Rectangle(p, width, height), Color.blue));
+        }
+        return blocks;
+    }
+
+    @Override
+    public int numberOfBlocksToRemove() {
+        return this.blockNum;
+    }
+}
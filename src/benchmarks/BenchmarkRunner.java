@@ -0,0 +1,125 @@
+package benchmarks;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * The BenchmarkRunner class measures the time and the memory allocated by
+ * an operation.
+ * Every benchmark runs a number of warmup iterations, whose results are
+ * thrown away, followed by measurement iterations. For each benchmark it
+ * reports the average time per operation, the bytes allocated per operation,
+ * the allocation rate, and the garbage collections that happened while
+ * measuring.
+ *
+ * @author Eitan Maimoni
+ * @version 19.0.2
+ * @since 2023-06-01
+ */
+public class BenchmarkRunner {
+    private static final double NANOS_PER_SECOND = 1e9;
+    private static final double BYTES_PER_MEGABYTE = 1024 * 1024;
+    // results are written here, so the JIT can't remove the measured code
+    private static volatile long sink;
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final com.sun.management.ThreadMXBean threads;
+
+    /**
+     * Constructs a new BenchmarkRunner.
+     *
+     * @param warmupIterations      the number of iterations run before measuring
+     * @param measurementIterations the number of iterations measured
+     */
+    public BenchmarkRunner(int warmupIterations, int measurementIterations) {
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        this.threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    /**
+     * Consumes a result of a measured operation, so it is not optimized away.
+     *
+     * @param value the result
+     */
+    public static void consume(long value) {
+        sink = sink + value;
+    }
+
+    /**
+     * Consumes a result of a measured operation, so it is not optimized away.
+     *
+     * @param value the result
+     */
+    public static void consume(double value) {
+        consume(Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * Consumes a result of a measured operation, so it is not optimized away.
+     *
+     * @param value the result
+     */
+    public static void consume(Object value) {
+        consume(value == null ? 0 : System.identityHashCode(value));
+    }
+
+    /**
+     * Measures the given operation, and prints the result.
+     * Before every iteration a new iteration is taken from the supplier,
+     * which is not measured, so it can set up a fresh state (like a new
+     * level) for the iteration.
+     *
+     * @param name       the name of the benchmark
+     * @param operations the number of operations every iteration runs
+     * @param iterations supplies the iterations
+     * @return the average nanoseconds per operation
+     */
+    public double measure(String name, int operations, Supplier<Runnable> iterations) {
+        for (int i = 0; i < this.warmupIterations; i++) {
+            iterations.get().run();
+        }
+        long threadId = Thread.currentThread().getId();
+        long nanos = 0;
+        long bytes = 0;
+        long gcCount = -gcCount();
+        long gcMillis = -gcMillis();
+        for (int i = 0; i < this.measurementIterations; i++) {
+            Runnable iteration = iterations.get();
+            long startBytes = this.threads.getThreadAllocatedBytes(threadId);
+            long startTime = System.nanoTime();
+            iteration.run();
+            nanos += System.nanoTime() - startTime;
+            bytes += this.threads.getThreadAllocatedBytes(threadId) - startBytes;
+        }
+        gcCount += gcCount();
+        gcMillis += gcMillis();
+        double totalOperations = (double) operations * this.measurementIterations;
+        double nanosPerOperation = nanos / totalOperations;
+        double bytesPerOperation = bytes / totalOperations;
+        double megabytesPerSecond = nanos == 0 ? 0 : bytes / BYTES_PER_MEGABYTE / (nanos / NANOS_PER_SECOND);
+        System.out.println(String.format(Locale.ROOT,
+                "%-64s %12.1f ns/op %12.1f B/op %10.1f MB/s %6d gc %6d ms",
+                name, nanosPerOperation, bytesPerOperation, megabytesPerSecond, gcCount, gcMillis));
+        return nanosPerOperation;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return millis;
+    }
+}
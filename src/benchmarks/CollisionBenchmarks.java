@@ -0,0 +1,293 @@
+package benchmarks;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import animations.AnimationRunner;
+import animations.HeadlessDrawSurface;
+import animations.ScriptedKeyboardSensor;
+import game.GameLevel;
+import geometry.Line;
+import geometry.Point;
+import geometry.Rectangle;
+import objects.Ball;
+import objects.BallSystem;
+import objects.Block;
+import physics.ContactManifold;
+import physics.GameEnvironment;
+import physics.Velocity;
+import utils.Counter;
+
+/**
+ * The CollisionBenchmarks class benchmarks the geometry and collision hot
+ * paths of the game: line and rectangle intersections, closest collision
+ * queries (with and without the spatial grid, and with the rectangles in a
+ * box batch tested one by one or with the Vector API), ball steps (querying
+ * on every step or only when a ball may hit something) and whole level
+ * frames. Run with "--add-modules jdk.incubator.vector" to benchmark the
+ * Vector API.
+ * The benchmarks run for every combination of the given block and ball
+ * counts. The arguments are (all optional):
+ * "blocks=100,1000,10000", "balls=1,10,100", "warmup=5" and "iterations=10".
+ *
+ * @author Eitan Maimoni
+ * @version 19.0.2
+ * @since 2023-06-01
+ */
+public class CollisionBenchmarks {
+    private static final int WINDOW_HEIGHT = 600;
+    private static final int WINDOW_WIDTH = 800;
+    private static final int SEGMENTS = 1024;
+    private static final int STEPS = 100;
+    private static final int FRAMES = 300;
+    private static final double BALL_SPEED = 5;
+    private final BenchmarkRunner runner;
+    private final int blockNum;
+    private final int ballsNum;
+    private final Random random;
+
+    /**
+     * Constructs a new CollisionBenchmarks for the given block and ball counts.
+     *
+     * @param runner   the runner that measures the benchmarks
+     * @param blockNum the number of blocks
+     * @param ballsNum the number of balls
+     */
+    public CollisionBenchmarks(BenchmarkRunner runner, int blockNum, int ballsNum) {
+        this.runner = runner;
+        this.blockNum = blockNum;
+        this.ballsNum = ballsNum;
+        this.random = new Random(1);
+    }
+
+    /**
+     * Runs all the benchmarks.
+     */
+    public void runAll() {
+        String params = "[blocks=" + this.blockNum + ", balls=" + this.ballsNum + "]";
+        List<Block> blocks = new BenchmarkLevel(this.blockNum, this.ballsNum).blocks();
+        Line[] segments = randomSegments(SEGMENTS, BALL_SPEED);
+        Line[] lines = randomSegments(SEGMENTS, 200);
+        Line[] others = randomSegments(SEGMENTS, 200);
+        Rectangle[] rects = new Rectangle[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            rects[i] = blocks.isEmpty() ? new Rectangle(new Point(300, 400), 200, 100)
+                    : blocks.get(i % blocks.size()).getCollisionRectangle();
+        }
+        this.runner.measure("Line.intersectionWith", SEGMENTS, () -> () -> {
+            for (int i = 0; i < SEGMENTS; i++) {
+                BenchmarkRunner.consume(lines[i].intersectionWith(others[i]));
+            }
+        });
+        double[] intersection = new double[2];
+        this.runner.measure("Line.intersectionWith (raw)", SEGMENTS, () -> () -> {
+            for (int i = 0; i < SEGMENTS; i++) {
+                Line other = others[i];
+                if (lines[i].intersectionWith(other.start().getX(), other.start().getY(),
+                        other.end().getX(), other.end().getY(), intersection)) {
+                    BenchmarkRunner.consume(intersection[0]);
+                }
+            }
+        });
+        this.runner.measure("Line.closestIntersectionToStartOfLine " + params, SEGMENTS, () -> () -> {
+            for (int i = 0; i < SEGMENTS; i++) {
+                BenchmarkRunner.consume(lines[i].closestIntersectionToStartOfLine(rects[i]));
+            }
+        });
+        this.runner.measure("Rectangle.intersectionPoints " + params, SEGMENTS, () -> () -> {
+            for (int i = 0; i < SEGMENTS; i++) {
+                BenchmarkRunner.consume(rects[i].intersectionPoints(lines[i]));
+            }
+        });
+        this.runner.measure("Rectangle.closestIntersection " + params, SEGMENTS, () -> () -> {
+            for (int i = 0; i < SEGMENTS; i++) {
+                Line line = lines[i];
+                if (rects[i].closestIntersection(line.start().getX(), line.start().getY(), line.end().getX(),
+                        line.end().getY(), intersection)) {
+                    BenchmarkRunner.consume(intersection[0]);
+                }
+            }
+        });
+        double[] hit = new double[3];
+        this.runner.measure("Rectangle.slabIntersection " + params, SEGMENTS, () -> () -> {
+            for (int i = 0; i < SEGMENTS; i++) {
+                Line line = lines[i];
+                BenchmarkRunner.consume(rects[i].slabIntersection(line.start().getX(), line.start().getY(),
+                        line.end().getX(), line.end().getY(), hit));
+            }
+        });
+        for (boolean grid : new boolean[] {false, true}) {
+            String mode = grid ? " (grid) " : " (linear) ";
+            GameEnvironment environment = environment(blocks, grid);
+            this.runner.measure("GameEnvironment.getClosestCollision" + mode + params, SEGMENTS, () -> () -> {
+                for (int i = 0; i < SEGMENTS; i++) {
+                    BenchmarkRunner.consume(environment.getClosestCollision(segments[i]));
+                }
+            });
+            // replaces getCollidablesOnPoint, the contact manifold holds
+            // every collidable on the closest collision point
+            ContactManifold manifold = new ContactManifold();
+            this.runner.measure("GameEnvironment.findClosestContact" + mode + params, SEGMENTS, () -> () -> {
+                for (int i = 0; i < SEGMENTS; i++) {
+                    Point start = segments[i].start();
+                    Point end = segments[i].end();
+                    if (environment.findClosestContact(start.getX(), start.getY(), end.getX(), end.getY(),
+                            manifold)) {
+                        BenchmarkRunner.consume(manifold.size());
+                    }
+                }
+            });
+            if (!grid) {
+                // the same queries over the rectangles kept in a box batch,
+                // tested one by one and several per instruction (the vector
+                // kernel falls back to the scalar one without the Vector API)
+                for (boolean vectorized : new boolean[] {false, true}) {
+                    GameEnvironment batched = environment(blocks, false);
+                    batched.useBoxBatch(vectorized);
+                    String kernel = batched.usesVectorizedBatch() ? " (linear, batch vector) "
+                            : " (linear, batch scalar) ";
+                    this.runner.measure("GameEnvironment.findClosestContact" + kernel + params, SEGMENTS, () -> () -> {
+                        for (int i = 0; i < SEGMENTS; i++) {
+                            Point start = segments[i].start();
+                            Point end = segments[i].end();
+                            if (batched.findClosestContact(start.getX(), start.getY(), end.getX(), end.getY(),
+                                    manifold)) {
+                                BenchmarkRunner.consume(manifold.size());
+                            }
+                        }
+                    });
+                }
+            }
+            this.runner.measure("Ball.moveOneStep" + mode + params, STEPS * Math.max(1, this.ballsNum), () -> {
+                List<Ball> balls = balls(environment);
+                return () -> {
+                    for (int s = 0; s < STEPS; s++) {
+                        for (Ball ball : balls) {
+                            ball.moveOneStep();
+                        }
+                    }
+                };
+            });
+            this.runner.measure("BallSystem.timePassed" + mode + params, STEPS * Math.max(1, this.ballsNum), () -> {
+                BallSystem system = new BallSystem();
+                for (Ball ball : balls(environment)) {
+                    system.add(ball);
+                }
+                return () -> {
+                    for (int s = 0; s < STEPS; s++) {
+                        system.timePassed();
+                    }
+                };
+            });
+            this.runner.measure("BallSystem.timePassed (event-driven)" + mode + params,
+                    STEPS * Math.max(1, this.ballsNum), () -> {
+                BallSystem system = new BallSystem();
+                system.setEventDriven(true);
+                for (Ball ball : balls(environment)) {
+                    system.add(ball);
+                }
+                return () -> {
+                    for (int s = 0; s < STEPS; s++) {
+                        system.timePassed();
+                    }
+                };
+            });
+        }
+        this.runner.measure("GameLevel frame " + params, FRAMES, () -> {
+            HeadlessDrawSurface surface = new HeadlessDrawSurface(WINDOW_WIDTH, WINDOW_HEIGHT);
+            ScriptedKeyboardSensor keyboard = new ScriptedKeyboardSensor();
+            AnimationRunner animationRunner = new AnimationRunner(surface, keyboard);
+            GameLevel level = new GameLevel(new BenchmarkLevel(this.blockNum, this.ballsNum), animationRunner,
+                    animationRunner.getInput(), new Counter());
+            level.initialize();
+            level.createBallsOnTopOfPaddle();
+            return () -> {
+                for (int f = 0; f < FRAMES; f++) {
+                    level.doOneFrame(surface);
+                }
+                BenchmarkRunner.consume(surface.getOperationCount());
+            };
+        });
+    }
+
+    private Line[] randomSegments(int count, double length) {
+        Line[] segments = new Line[count];
+        for (int i = 0; i < count; i++) {
+            double x = 25 + this.random.nextDouble() * 750;
+            double y = 25 + this.random.nextDouble() * 550;
+            Velocity v = Velocity.fromAngleAndSpeed(this.random.nextDouble() * 360, length);
+            segments[i] = new Line(x, y, x + v.getDX(), y + v.getDY());
+        }
+        return segments;
+    }
+
+    private static GameEnvironment environment(List<Block> blocks, boolean grid) {
+        GameEnvironment environment = new GameEnvironment(grid);
+        Block[] borderBlocks = new Block[] {
+                new Block(new Rectangle(new Point(25, 0), 750, 25), Color.gray),
+                new Block(new Rectangle(new Point(0, 575), 25, 600), Color.gray),
+                new Block(new Rectangle(new Point(25, 575), 750, 25), Color.gray),
+                new Block(new Rectangle(new Point(775, 575), 25, 600), Color.gray)
+        };
+        for (Block block : borderBlocks) {
+            environment.addCollidable(block);
+        }
+        for (Block block : blocks) {
+            environment.addCollidable(block);
+        }
+        return environment;
+    }
+
+    private List<Ball> balls(GameEnvironment environment) {
+        List<Ball> balls = new ArrayList<>();
+        Random ballRandom = new Random(this.ballsNum);
+        for (int i = 0; i < Math.max(1, this.ballsNum); i++) {
+            Ball ball = new Ball(100 + ballRandom.nextInt(600), 50 + ballRandom.nextInt(100), 6, Color.white);
+            ball.setVelocity(Velocity.fromAngleAndSpeed(ballRandom.nextInt(360), BALL_SPEED));
+            ball.setEnvironment(environment);
+            balls.add(ball);
+        }
+        return balls;
+    }
+
+    private static int[] parseCounts(String list) {
+        String[] parts = list.split(",");
+        int[] counts = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            counts[i] = Integer.parseInt(parts[i].trim());
+        }
+        return counts;
+    }
+
+    /**
+     * Runs the benchmarks for every combination of the block and ball counts
+     * given in the arguments.
+     *
+     * @param args the input arguments
+     */
+    public static void main(String[] args) {
+        int[] blockCounts = {100, 1000, 10000};
+        int[] ballCounts = {1, 10, 100};
+        int warmup = 5;
+        int iterations = 10;
+        for (String arg : args) {
+            if (arg.startsWith("blocks=")) {
+                blockCounts = parseCounts(arg.substring("blocks=".length()));
+            } else if (arg.startsWith("balls=")) {
+                ballCounts = parseCounts(arg.substring("balls=".length()));
+            } else if (arg.startsWith("warmup=")) {
+                warmup = Integer.parseInt(arg.substring("warmup=".length()));
+            } else if (arg.startsWith("iterations=")) {
+                iterations = Integer.parseInt(arg.substring("iterations=".length()));
+            }
+        }
+        BenchmarkRunner runner = new BenchmarkRunner(warmup, iterations);
+        for (int blocks : blockCounts) {
+            for (int balls : ballCounts) {
+                new CollisionBenchmarks(runner, blocks, balls).runAll();
+            }
+        }
+    }
+}
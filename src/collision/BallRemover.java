@@ -8,6 +8,10 @@ import utils.Counter;
 /**
  * The BallRemover class is responsible for removing balls from the game and
  * updating the ball counter.
+ * In a game it is subscribed to the hits of the death border (see
+ * CollisionLayer.DEATH), and removes every ball that hits it. It is called at
+ * once, so a lost ball stops in the step it hits the border, and doesn't go on
+ * hitting blocks for the rest of the step.
  * It implements the HitListener interface to listen for hit events and perform
  * the necessary actions.
  *
@@ -32,9 +36,7 @@ public class BallRemover implements HitListener {
 
     @Override
     public void hitEvent(Block beingHit, Ball hitter) {
-        if (beingHit.getRectangle().getUpperLeftPoint().getY() == 0) {
-            hitter.removeFromGame(gameLevel);
-            remainingBalls.decrease(1);
-        }
+        hitter.removeFromGame(gameLevel);
+        remainingBalls.decrease(1);
     }
 }
\ No newline at end of file
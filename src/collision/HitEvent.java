@@ -0,0 +1,61 @@
+package collision;
+
+import objects.Ball;
+import objects.Block;
+
+/**
+ * The HitEvent class represents a hit of a block by a ball, recorded by a
+ * HitEventBus. The type of the event is the collision layers of the block
+ * (see CollisionLayer), like a hit of a brick or of the death border.
+ * The events are preallocated by the bus and reused, so an event must not be
+ * kept after it was delivered.
+ *
+ * @author Eitan Maimoni
+ * @version 19.0.2
+ * @since 2023-06-01
+ */
+public class HitEvent {
+    private Block beingHit;
+    private Ball hitter;
+    private int type;
+
+    /**
+     * Sets the block, the ball and the type of the event.
+     *
+     * @param block     the block that was hit
+     * @param ball      the ball that hit the block
+     * @param eventType the collision layers of the block
+     */
+    void set(Block block, Ball ball, int eventType) {
+        this.beingHit = block;
+        this.hitter = ball;
+        this.type = eventType;
+    }
+
+    /**
+     * Returns the block that was hit.
+     *
+     * @return the block
+     */
+    public Block getBeingHit() {
+        return this.beingHit;
+    }
+
+    /**
+     * Returns the ball that hit the block.
+     *
+     * @return the ball
+     */
+    public Ball getHitter() {
+        return this.hitter;
+    }
+
+    /**
+     * Returns the type of the event: the collision layers of the block.
+     *
+     * @return one or more CollisionLayer bits
+     */
+    public int getType() {
+        return this.type;
+    }
+}
@@ -0,0 +1,196 @@
+package collision;
+
+import objects.Ball;
+import objects.Block;
+import physics.CollisionLayer;
+import utils.DeferredList;
+
+/**
+ * The HitEventBus class separates the game rules that react to hits (like the
+ * score) from the physics step that makes the hits.
+ * Blocks post their hits to the bus. Listeners that opt into batch delivery
+ * (see HitListener.isBatched) are not called while the balls move: the hits
+ * are recorded in a preallocated ring buffer, and delivered in one batch, in
+ * the order they happened, when the step ends. Other listeners are called at
+ * once, like a block remover, whose removal has to affect the rest of the
+ * step.
+ * Listeners subscribe either to the hits of a single block (with
+ * Block.addHitListener) or, with subscribe, to the hits of a type posted to
+ * the bus. The type of a hit is the collision layers of the block (see
+ * CollisionLayer), so a listener can subscribe to the hits of the bricks of a
+ * level, of the death border, or of any block.
+ *
+ * @author Eitan Maimoni
+ * @version 19.0.2
+ * @since 2023-06-01
+ */
+public class HitEventBus {
+    private static final int DEFAULT_CAPACITY = 256;
+    private HitEvent[] events;
+    private int head;
+    private int count;
+    private final DeferredList<Subscription> subscribers;
+    private int batchedSubscribers;
+
+    /**
+     * Constructs a new HitEventBus with room for 256 hits per step.
+     */
+    public HitEventBus() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a new HitEventBus with room for the given number of hits per
+     * step. The buffer grows if more hits happen in a step.
+     *
+     * @param capacity the number of preallocated events
+     */
+    public HitEventBus(int capacity) {
+        this.events = new HitEvent[Math.max(1, capacity)];
+        for (int i = 0; i < this.events.length; i++) {
+            this.events[i] = new HitEvent();
+        }
+        this.head = 0;
+        this.count = 0;
+        this.subscribers = new DeferredList<>();
+        this.batchedSubscribers = 0;
+    }
+
+    /**
+     * Subscribes the given listener to the hits of every block posted to the
+     * bus.
+     *
+     * @param listener the listener to subscribe
+     */
+    public void subscribe(HitListener listener) {
+        subscribe(listener, CollisionLayer.ALL);
+    }
+
+    /**
+     * Subscribes the given listener to the hits of the given types: the hits
+     * of the blocks in one of the given collision layers. A listener that is
+     * already subscribed is subscribed to the given types instead.
+     *
+     * @param listener the listener to subscribe
+     * @param types    the types of hits, one or more CollisionLayer bits
+     */
+    public void subscribe(HitListener listener, int types) {
+        unsubscribe(listener);
+        this.subscribers.add(new Subscription(listener, types));
+        if (listener.isBatched()) {
+            this.batchedSubscribers++;
+        }
+    }
+
+    /**
+     * Unsubscribes the given listener from the hits of every type.
+     *
+     * @param listener the listener to unsubscribe
+     */
+    public void unsubscribe(HitListener listener) {
+        for (int i = 0; i < this.subscribers.size(); i++) {
+            Subscription subscription = this.subscribers.get(i);
+            if (subscription != null && subscription.listener == listener) {
+                if (this.subscribers.remove(subscription) && listener.isBatched()) {
+                    this.batchedSubscribers--;
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Posts a hit of the given block: calls the subscribers to its type that
+     * are not batched, and records the hit for the batched listeners.
+     *
+     * @param beingHit        the block that was hit
+     * @param hitter          the ball that hit the block
+     * @param blockHasBatched true if the block has listeners that opted into
+     *                        batch delivery
+     */
+    public void post(Block beingHit, Ball hitter, boolean blockHasBatched) {
+        int type = beingHit.collisionLayer();
+        if (this.subscribers.count() > this.batchedSubscribers) {
+            notify(beingHit, hitter, type, false);
+        }
+        if (!blockHasBatched && this.batchedSubscribers == 0) {
+            return;
+        }
+        if (this.count == this.events.length) {
+            grow();
+        }
+        this.events[(this.head + this.count) % this.events.length].set(beingHit, hitter, type);
+        this.count++;
+    }
+
+    /**
+     * Delivers the recorded hits, in the order they happened, to the batched
+     * listeners of their blocks and to the batched subscribers to their
+     * types. Hits posted
+     * while delivering are delivered too.
+     */
+    public void dispatch() {
+        while (this.count > 0) {
+            HitEvent event = this.events[this.head];
+            Block beingHit = event.getBeingHit();
+            Ball hitter = event.getHitter();
+            int type = event.getType();
+            event.set(null, null, CollisionLayer.NONE);
+            this.head = (this.head + 1) % this.events.length;
+            this.count--;
+            beingHit.notifyBatchedHit(hitter);
+            if (this.batchedSubscribers > 0) {
+                notify(beingHit, hitter, type, true);
+            }
+        }
+        this.head = 0;
+    }
+
+    private void notify(Block beingHit, Ball hitter, int type, boolean batched) {
+        this.subscribers.beginIteration();
+        try {
+            for (int i = 0; i < this.subscribers.size(); i++) {
+                Subscription subscription = this.subscribers.get(i);
+                if (subscription != null && (subscription.types & type) != 0
+                        && subscription.listener.isBatched() == batched) {
+                    subscription.listener.hitEvent(beingHit, hitter);
+                }
+            }
+        } finally {
+            this.subscribers.endIteration();
+        }
+    }
+
+    // doubles the buffer, moving the recorded hits to its start
+    private void grow() {
+        HitEvent[] grown = new HitEvent[this.events.length * 2];
+        for (int i = 0; i < this.count; i++) {
+            grown[i] = this.events[(this.head + i) % this.events.length];
+        }
+        for (int i = this.count; i < grown.length; i++) {
+            grown[i] = new HitEvent();
+        }
+        this.events = grown;
+        this.head = 0;
+    }
+
+    /**
+     * A listener subscribed to the bus, and the types of hits it is
+     * subscribed to.
+     */
+    private static final class Subscription {
+        private final HitListener listener;
+        private final int types;
+
+        /**
+         * Constructs a new Subscription.
+         *
+         * @param listener the subscribed listener
+         * @param types    the types of hits, one or more CollisionLayer bits
+         */
+        Subscription(HitListener listener, int types) {
+            this.listener = listener;
+            this.types = types;
+        }
+    }
+}
@@ -8,6 +8,9 @@ import objects.Block;
  * Classes that implement this interface should define the behavior when a hit
  * event occurs.
  * The hitEvent method is called whenever an object is hit.
+ * A listener may opt into batch delivery, in which case, in a game, it is
+ * called after the physics step in which the hit happened instead of in the
+ * middle of it (see HitEventBus).
  *
  * @author Eitan Maimoni
  * @version 19.0.2
@@ -22,4 +25,16 @@ public interface HitListener {
      * @param hitter   the Ball object that caused the hit
      */
     void hitEvent(Block beingHit, Ball hitter);
+
+    /**
+     * Checks if the listener opts into batch delivery: being called after the
+     * physics step instead of at the moment of the hit. A listener whose
+     * reaction changes the physics of the rest of the step (like removing the
+     * block) must not be batched.
+     *
+     * @return true to be called after the step, false to be called at once
+     */
+    default boolean isBatched() {
+        return false;
+    }
 }
\ No newline at end of file
@@ -30,4 +30,10 @@ public class ScoreTrackingListener implements HitListener {
     public void hitEvent(Block beingHit, Ball hitter) {
         this.currentScore.increase(5);
     }
+
+    @Override
+    public boolean isBatched() {
+        // the score doesn't affect the physics
+        return true;
+    }
 }
\ No newline at end of file
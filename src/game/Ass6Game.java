@@ -1,9 +1,14 @@
 package game;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 
+import animations.AnimationRunner;
+import animations.InputRecording;
 import levels.DirectHit;
+import levels.FileLevel;
 import levels.Green3;
 import levels.LevelInformation;
 import levels.WideEasy;
@@ -20,13 +25,43 @@ public class Ass6Game {
     /**
      * The main method is the starting point of the program,
      * and creates a new Game object, initializes it, and runs it.
+     * The argument "profile" shows the times of the phases of every frame on
+     * the screen, and writes them to the "profiles" directory when every
+     * level ends, the argument "dirty" draws only the regions of the
+     * screen that changed every frame, the argument "threaded" shows the
+     * frames on a render thread of their own, the argument "record=FILE" records
+     * the session to the file FILE (see ReplaySession), and the argument
+     * "level=FILE" runs the level in the level file FILE (see FileLevel).
      *
      * @param args the input arguments
      */
     public static void main(String[] args) {
-        GameFlow gameFlow = new GameFlow();
+        AnimationRunner runner = new AnimationRunner();
         List<LevelInformation> levels = new ArrayList<>();
+        String recordFile = null;
         for (String string : args) {
+            if (string.startsWith("record=")) {
+                recordFile = string.substring("record=".length());
+            }
+            if (string.startsWith("level=")) {
+                try {
+                    levels.add(FileLevel.load(Paths.get(string.substring("level=".length()))));
+                } catch (IOException e) {
+                    System.err.println("Could not load the level: " + e.getMessage());
+                    runner.close();
+                    return;
+                }
+            }
+            if (string.equals("profile")) {
+                runner.getProfiler().setEnabled(true);
+                runner.getProfiler().setDumpDirectory(Paths.get("profiles"));
+            }
+            if (string.equals("dirty")) {
+                runner.setDirtyRendering(true);
+            }
+            if (string.equals("threaded")) {
+                runner.setThreadedRendering(true);
+            }
             if (string.equals("1")) {
                 levels.add(new DirectHit());
             }
@@ -42,6 +77,19 @@ public class Ass6Game {
             levels.add(new WideEasy());
             levels.add(new Green3());
         }
+        InputRecording recording = null;
+        if (recordFile != null) {
+            recording = InputRecording.record(runner.getFramesPerSecond(), runner.getStepsPerSecond());
+            runner.setInputRecording(recording);
+        }
+        GameFlow gameFlow = new GameFlow(runner);
         gameFlow.runLevels(levels);
+        if (recording != null) {
+            try {
+                recording.save(Paths.get(recordFile));
+            } catch (IOException e) {
+                System.err.println("Could not save the recording: " + e.getMessage());
+            }
+        }
     }
 }
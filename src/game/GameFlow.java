@@ -1,20 +1,27 @@
 package game;
 
-import biuoop.KeyboardSensor;
 import levels.LevelInformation;
 import utils.Counter;
 
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import animations.Animation;
 import animations.AnimationRunner;
 import animations.GameOver;
+import animations.InputAction;
+import animations.InputSnapshot;
 import animations.KeyPressStoppableAnimation;
+import animations.LoadingScreen;
 import animations.YouWin;
 
 /**
  * The GameFlow class handles the flow of the game, including running multiple
  * levels and handling the final outcome.
+ * Every level is built in the background (see LevelLoader) while the level
+ * before it runs, so the game doesn't stall between levels. If a level is not
+ * built yet when it should run, a loading screen is shown until it is.
  *
  * @author Eitan Maimoni
  * @version 19.0.2
@@ -22,16 +29,35 @@ import animations.YouWin;
  */
 public class GameFlow {
     private final AnimationRunner runner;
-    private final KeyboardSensor keyboard;
+    private final InputSnapshot input;
     private final Counter score;
 
     /**
      * Constructs a new Game flow.
      */
     public GameFlow() {
+        this(new AnimationRunner());
+    }
+
+    /**
+     * Constructs a new Game flow that runs the levels with the given runner
+     * (which may be headless).
+     *
+     * @param runner the animation runner
+     */
+    public GameFlow(AnimationRunner runner) {
         this.score = new Counter();
-        this.runner = new AnimationRunner();
-        this.keyboard = runner.getGui().getKeyboardSensor();
+        this.runner = runner;
+        this.input = runner.getInput();
+    }
+
+    /**
+     * Returns the score counter of the game.
+     *
+     * @return the score counter
+     */
+    public Counter getScore() {
+        return this.score;
     }
 
     /**
@@ -41,26 +67,53 @@ public class GameFlow {
      */
     public void runLevels(List<LevelInformation> levels) {
         boolean playerWin = true;
-        for (LevelInformation levelInfo : levels) {
-            GameLevel gameLevel = new GameLevel(levelInfo, this.runner, this.keyboard, score);
-            gameLevel.initialize();
+        LevelLoader loader = new LevelLoader(this.runner, this.score);
+        Future<GameLevel> next = levels.isEmpty() ? null : loader.load(levels.get(0));
+        for (int i = 0; i < levels.size(); i++) {
+            GameLevel gameLevel = waitFor(next);
+            // the next level is built while this one runs
+            next = i + 1 < levels.size() ? loader.load(levels.get(i + 1)) : null;
+            if (gameLevel == null) {
+                continue;
+            }
             gameLevel.run();
             if (gameLevel.getBallsCounter().getValue() <= 0) {
+                loader.close();
                 Animation gameOver = new GameOver(this.score);
-                Animation a2k = new KeyPressStoppableAnimation(this.keyboard, KeyboardSensor.SPACE_KEY, gameOver);
+                Animation a2k = new KeyPressStoppableAnimation(this.input, InputAction.CONFIRM, gameOver);
                 this.runner.run(a2k);
-                runner.getGui().close();
+                runner.close();
                 playerWin = false;
                 break;
             }
         }
         if (playerWin) {
+            loader.close();
             // runs only if the gui is not already closed, (the player end the game and
             // didn't lose)
             Animation youWin = new YouWin(score);
-            Animation a1k = new KeyPressStoppableAnimation(this.keyboard, KeyboardSensor.SPACE_KEY, youWin);
+            Animation a1k = new KeyPressStoppableAnimation(this.input, InputAction.CONFIRM, youWin);
             this.runner.run(a1k);
-            runner.getGui().close();
+            runner.close();
+        }
+    }
+
+    // waits for the level to be built, showing a loading screen meanwhile, and
+    // returns it, or null if it can't be played. A headless, recorded or
+    // played back session waits without showing frames, so its frames don't
+    // depend on how long building took
+    private GameLevel waitFor(Future<GameLevel> level) {
+        if (!level.isDone() && this.runner.getGui() != null && this.runner.getInputRecording() == null) {
+            this.runner.run(new LoadingScreen(level));
+        }
+        try {
+            return level.get();
+        } catch (ExecutionException e) {
+            System.err.println("Could not load the level: " + e.getCause().getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
         }
     }
 }
@@ -1,33 +1,45 @@
 package game;
 
+import backgrounds.CachedBackground;
 import biuoop.DrawSurface;
-import biuoop.KeyboardSensor;
+import collision.HitEventBus;
 import collision.ScoreTrackingListener;
 import geometry.Point;
 import geometry.Rectangle;
+import levels.FileLevel;
 import levels.LevelInformation;
 import objects.Ball;
+import objects.BallSystem;
 import collision.BallRemover;
 import objects.Block;
 import collision.BlockRemover;
 import objects.Paddle;
+import objects.PerformanceIndicator;
 import objects.ScoreIndicator;
 import physics.Collidable;
+import physics.CollisionLayer;
 import physics.GameEnvironment;
+import physics.TileMap;
 import physics.Velocity;
 import sprites.Sprite;
 import sprites.SpriteCollection;
 import utils.Counter;
+import utils.FrameProfiler;
 
 import java.awt.Color;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import animations.Animation;
 import animations.AnimationRunner;
 import animations.CountdownAnimation;
+import animations.InputAction;
+import animations.InputSnapshot;
 import animations.KeyPressStoppableAnimation;
 import animations.PauseScreen;
+import animations.SteppedAnimation;
 
 /**
  * The GameLevel class represents a level in a simple game. It contains sprites
@@ -39,35 +51,55 @@ import animations.PauseScreen;
  * @version 19.0.2
  * @since 2023 -06-01
  */
-public class GameLevel implements Animation {
+public class GameLevel implements SteppedAnimation {
+    // how many collisions a ball resolves in a single step (a ball bouncing
+    // between blocks in a corner hits them all in the same step)
+    private static final int MAX_COLLISIONS_PER_STEP = 4;
+    private static final int WINDOW_WIDTH = 800;
+    private static final int WINDOW_HEIGHT = 600;
     private final SpriteCollection sprites;
+    private final BallSystem balls;
     private final GameEnvironment environment;
     private final Counter remainingBlocks;
     private final Counter remainingBalls;
     private final AnimationRunner runner;
-    private final KeyboardSensor keyboard;
+    private final InputSnapshot input;
     private final Counter score;
     private final LevelInformation levelInfo;
+    private final CachedBackground background;
+    private final FrameProfiler profiler;
+    private final HitEventBus hitEvents;
     private boolean running;
+    private int blockCount;
 
     /**
      * Constructs a new GameLevel with the specified level information, animation
-     * runner, keyboard sensor, and score.
+     * runner, input, and score.
      *
      * @param levelInfo the level information
      * @param runner    the animation runner
-     * @param keyboard  the keyboard sensor
+     * @param input     the input snapshot the level reads
      * @param score     the score counter
      */
-    public GameLevel(LevelInformation levelInfo, AnimationRunner runner, KeyboardSensor keyboard, Counter score) {
+    public GameLevel(LevelInformation levelInfo, AnimationRunner runner, InputSnapshot input, Counter score) {
         this.sprites = new SpriteCollection();
+        // many balls find their collisions in parallel
+        this.balls = new BallSystem(ForkJoinPool.commonPool());
         this.environment = new GameEnvironment();
         this.remainingBlocks = new Counter();
         this.remainingBalls = new Counter();
         this.runner = runner;
         this.levelInfo = levelInfo;
-        this.keyboard = keyboard;
+        this.background = new CachedBackground(levelInfo.getBackground());
+        this.input = input;
         this.score = score;
+        this.hitEvents = new HitEventBus();
+        this.profiler = runner.getProfiler();
+        this.balls.setProfiler(this.profiler);
+        this.sprites.setProfiler(this.profiler);
+        // balls flying through empty space don't query the environment
+        this.balls.setEventDriven(true);
+        this.balls.setMaxCollisionsPerStep(MAX_COLLISIONS_PER_STEP);
     }
 
     /**
@@ -97,6 +129,15 @@ public class GameLevel implements Animation {
         return this.score;
     }
 
+    /**
+     * Returns the bus the hits of the blocks of the game are posted to.
+     *
+     * @return the hit event bus
+     */
+    public HitEventBus getHitEventBus() {
+        return this.hitEvents;
+    }
+
     /**
      * Adds a new collidable to the game environment.
      *
@@ -106,6 +147,16 @@ public class GameLevel implements Animation {
         this.environment.addCollidable(c);
     }
 
+    /**
+     * Adds a new collidable, whose collision rectangle may change over time,
+     * to the game environment.
+     *
+     * @param c the moving collidable object to add to the game environment.
+     */
+    public void addMovingCollidable(Collidable c) {
+        this.environment.addMovingCollidable(c);
+    }
+
     /**
      * removes a new collidable to the game environment.
      *
@@ -133,6 +184,25 @@ public class GameLevel implements Animation {
         this.sprites.removeSprite(s);
     }
 
+    /**
+     * Adds a ball to the game, moving its state into the ball system of the
+     * game, which steps and draws all the balls together.
+     *
+     * @param ball the ball to add to the game.
+     */
+    public void addBall(Ball ball) {
+        this.balls.add(ball);
+    }
+
+    /**
+     * Removes a ball from the game.
+     *
+     * @param ball the ball to remove from the game.
+     */
+    public void removeBall(Ball ball) {
+        this.balls.remove(ball);
+    }
+
     /**
      * Initializes the game by creating and adding all the necessary game elements
      * according to level info given (borders, blocks, balls, and paddle).
@@ -140,8 +210,8 @@ public class GameLevel implements Animation {
     public void initialize() {
         // death border
         Block death = new Block(new Rectangle(new Point(25, 0), 750, 25), Color.gray);
-        BallRemover z = new BallRemover(this, getBallsCounter());
-        death.addHitListener(z);
+        death.setCollisionLayer(CollisionLayer.BLOCK | CollisionLayer.DEATH);
+        this.hitEvents.subscribe(new BallRemover(this, getBallsCounter()), CollisionLayer.DEATH);
         death.addToGame(this);
         // borders
         Block[] borderBlocks = new Block[] {
@@ -153,21 +223,51 @@ public class GameLevel implements Animation {
             block.addToGame(this);
         }
         // blocks
-        BlockRemover y = new BlockRemover(this, getBlocksCounter());
-        ScoreTrackingListener w = new ScoreTrackingListener(getScoreCounter());
+        this.hitEvents.subscribe(new BlockRemover(this, getBlocksCounter()), CollisionLayer.BRICK);
+        this.hitEvents.subscribe(new ScoreTrackingListener(getScoreCounter()), CollisionLayer.BRICK);
         List<Block> levelBlocks = levelInfo.blocks();
+        this.blockCount = levelBlocks.size();
+        // the blocks on a lattice are kept in the cells of a tile map, so the
+        // cost of a collision query doesn't grow with the number of blocks
+        TileMap wall = TileMap.forBricks(levelBlocks);
+        if (wall != null) {
+            addCollidable(wall);
+        }
         for (Block block : levelBlocks) {
-            block.addHitListener(y);
-            block.addHitListener(w);
+            block.setCollisionLayer(CollisionLayer.BLOCK | CollisionLayer.BRICK);
             block.addToGame(this);
         }
         getBlocksCounter().increase(levelInfo.numberOfBlocksToRemove());
         // paddle
-        Paddle paddle = new Paddle(keyboard, levelInfo.paddleSpeed(), levelInfo.paddleWidth());
+        Paddle paddle = new Paddle(this.input, levelInfo.paddleSpeed(), levelInfo.paddleWidth());
         paddle.addToGame(this);
         // score indicator
         ScoreIndicator scoreIndicator = new ScoreIndicator(score, 350, 600, levelInfo.levelName());
         sprites.addSprite(scoreIndicator);
+        // the overlay is not shown headless, and its texts are not counted in
+        // the allocations of the frames
+        if (this.profiler.isEnabled() && !this.runner.isHeadless() && !this.profiler.isTrackingAllocations()) {
+            sprites.addSprite(new PerformanceIndicator(this.profiler, 30, 570));
+        }
+        // balls, which are added later on, are stepped and drawn last
+        sprites.addSprite(this.balls);
+    }
+
+    /**
+     * Prepares the initialized level to be run, which may be done on another
+     * thread while another level runs: draws the background into its cache,
+     * and checks the level can be played.
+     *
+     * @throws IOException if the level can't be played
+     */
+    public void prepare() throws IOException {
+        if (this.blockCount < this.levelInfo.numberOfBlocksToRemove()) {
+            throw new IOException(this.levelInfo.levelName() + ": the level has fewer blocks than blocks to remove");
+        }
+        if (this.levelInfo.initialBallVelocities().size() < this.levelInfo.numberOfBalls()) {
+            throw new IOException(this.levelInfo.levelName() + ": the level has fewer velocities than balls");
+        }
+        this.background.prepare(WINDOW_WIDTH, WINDOW_HEIGHT);
     }
 
     /**
@@ -186,13 +286,30 @@ public class GameLevel implements Animation {
     }
 
     /**
-     * Runs the game - starts the animation loop.
+     * Runs the game - starts the animation loop. If the session is recorded,
+     * the class of the level is recorded.
      */
     public void run() {
+        if (this.runner.getInputRecording() != null) {
+            // a played back session creates the same levels again
+            String level = this.levelInfo.getClass().getName();
+            if (this.levelInfo instanceof FileLevel) {
+                level = ReplaySession.LEVEL_FILE_PREFIX + ((FileLevel) this.levelInfo).getSource();
+            }
+            this.runner.getInputRecording().addLevel(level);
+        }
         this.createBallsOnTopOfPaddle();
-        this.runner.run(new CountdownAnimation(1.5, 3, this.sprites, levelInfo.getBackground()));
+        this.runner.run(new CountdownAnimation(1.5, 3, this.sprites, this.background,
+                this.runner.getFramesPerSecond()));
         this.running = true;
+        // the profile of the level doesn't include the countdown
+        this.profiler.reset();
         this.runner.run(this);
+        try {
+            this.profiler.endLevel(this.levelInfo.levelName());
+        } catch (IOException e) {
+            System.err.println("Could not write the profile of the level: " + e.getMessage());
+        }
     }
 
     @Override
@@ -202,13 +319,47 @@ public class GameLevel implements Animation {
 
     @Override
     public void doOneFrame(DrawSurface d) {
-        levelInfo.getBackground().drawOn(d);
+        long start = this.profiler.start();
+        this.background.drawOn(d);
+        this.profiler.stop(FrameProfiler.BACKGROUND, start);
+        start = this.profiler.start();
         this.sprites.drawAllOn(d);
-        this.sprites.notifyAllTimePassed();
-        Animation pauseScreen = new PauseScreen();
-        Animation a1k = new KeyPressStoppableAnimation(this.keyboard, KeyboardSensor.SPACE_KEY, pauseScreen);
-        if (this.keyboard.isPressed("p") || this.keyboard.isPressed("P") || this.keyboard.isPressed("פ")) {
-            this.runner.run(a1k);
+        this.profiler.stop(FrameProfiler.SPRITES, start);
+        step(1.0);
+    }
+
+    @Override
+    public void render(DrawSurface d, double alpha) {
+        if (this.runner.isDirtyRendering()) {
+            // the background is drawn only under the dirty regions too
+            long start = this.profiler.start();
+            this.sprites.drawDirtyOn(d, alpha, this.background);
+            this.profiler.stop(FrameProfiler.SPRITES, start);
+            return;
+        }
+        long start = this.profiler.start();
+        this.background.drawOn(d);
+        this.profiler.stop(FrameProfiler.BACKGROUND, start);
+        start = this.profiler.start();
+        this.sprites.drawAllOn(d, alpha);
+        this.profiler.stop(FrameProfiler.SPRITES, start);
+    }
+
+    @Override
+    public void step(double dt) {
+        long start = this.profiler.start();
+        this.sprites.notifyAllTimePassed(dt);
+        // the game rules that opted into batch delivery react to the hits of
+        // the step
+        long hitsStart = this.profiler.start();
+        this.hitEvents.dispatch();
+        this.profiler.stop(FrameProfiler.HITS, hitsStart);
+        // the collidables removed in the step are compacted in one batch
+        this.environment.compact();
+        this.profiler.stop(FrameProfiler.PHYSICS, start);
+        if (this.input.isDown(InputAction.PAUSE)) {
+            Animation pauseScreen = new PauseScreen();
+            this.runner.run(new KeyPressStoppableAnimation(this.input, InputAction.CONFIRM, pauseScreen));
         }
         if (remainingBlocks.getValue() == 0) {
             getScoreCounter().increase(100);
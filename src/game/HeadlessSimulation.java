@@ -0,0 +1,270 @@
+package game;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import animations.AnimationRunner;
+import animations.HeadlessDrawSurface;
+import animations.InputRecording;
+import animations.ScriptedKeyboardSensor;
+import biuoop.KeyboardSensor;
+import levels.DirectHit;
+import levels.FileLevel;
+import levels.Green3;
+import levels.LevelInformation;
+import levels.WideEasy;
+import utils.Counter;
+
+/**
+ * The HeadlessSimulation class runs game levels without a display, as fast as
+ * the CPU allows.
+ * It is the basis for load testing, automated balancing and regression runs
+ * on machines with no display.
+ *
+ * @author Eitan Maimoni
+ * @version 19.0.2
+ * @since 2023-06-01
+ */
+public class HeadlessSimulation {
+    private static final int WINDOW_HEIGHT = 600;
+    private static final int WINDOW_WIDTH = 800;
+    private static final int FRAMES_PER_SECOND = 60;
+    private static final int DEFAULT_STEPS_PER_SECOND = 60;
+    // the frames the paddle moves to one side for, when it is moved
+    private static final int SWEEP_FRAMES = 45;
+    private final AnimationRunner runner;
+    private final HeadlessDrawSurface surface;
+    private final Counter score;
+
+    /**
+     * Constructs a new HeadlessSimulation.
+     *
+     * @param keyboard   the scripted keyboard the levels read
+     * @param frameLimit the maximal number of frames to run
+     */
+    public HeadlessSimulation(ScriptedKeyboardSensor keyboard, long frameLimit) {
+        this(keyboard, frameLimit, DEFAULT_STEPS_PER_SECOND);
+    }
+
+    /**
+     * Constructs a new HeadlessSimulation, that simulates the levels in the
+     * given number of steps per (60 frames) second.
+     *
+     * @param keyboard       the scripted keyboard the levels read
+     * @param frameLimit     the maximal number of frames to run
+     * @param stepsPerSecond the number of simulation steps per second
+     */
+    public HeadlessSimulation(ScriptedKeyboardSensor keyboard, long frameLimit, int stepsPerSecond) {
+        this.surface = new HeadlessDrawSurface(WINDOW_WIDTH, WINDOW_HEIGHT);
+        this.runner = new AnimationRunner(this.surface, keyboard, FRAMES_PER_SECOND, stepsPerSecond);
+        this.runner.setFrameLimit(frameLimit);
+        this.score = new Counter();
+    }
+
+    /**
+     * Returns the headless animation runner.
+     *
+     * @return the runner
+     */
+    public AnimationRunner getRunner() {
+        return this.runner;
+    }
+
+    /**
+     * Returns the surface the levels are drawn on.
+     *
+     * @return the surface
+     */
+    public HeadlessDrawSurface getSurface() {
+        return this.surface;
+    }
+
+    /**
+     * Returns the score counter shared by the levels.
+     *
+     * @return the score counter
+     */
+    public Counter getScore() {
+        return this.score;
+    }
+
+    /**
+     * Runs a single level, until it ends or the frame limit is reached.
+     *
+     * @param levelInfo the level to run
+     * @return the level that was run
+     */
+    public GameLevel runLevel(LevelInformation levelInfo) {
+        GameLevel gameLevel = new GameLevel(levelInfo, this.runner, this.runner.getInput(), this.score);
+        gameLevel.initialize();
+        gameLevel.run();
+        return gameLevel;
+    }
+
+    /**
+     * Runs the given levels one after the other, until they end, the player
+     * loses or the frame limit is reached.
+     *
+     * @param levels the levels to run
+     */
+    public void runLevels(List<LevelInformation> levels) {
+        for (LevelInformation levelInfo : levels) {
+            if (this.runner.isFrameLimitReached()) {
+                break;
+            }
+            GameLevel gameLevel = runLevel(levelInfo);
+            if (gameLevel.getBallsCounter().getValue() <= 0) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Scripts the paddle to sweep left and right, for SWEEP_FRAMES frames to
+     * each side, until the given frame.
+     *
+     * @param keyboard the scripted keyboard the levels read
+     * @param toFrame  the last frame the paddle moves in
+     */
+    public static void sweepPaddle(ScriptedKeyboardSensor keyboard, long toFrame) {
+        for (long from = 0; from <= toFrame; from += SWEEP_FRAMES) {
+            String key = (from / SWEEP_FRAMES) % 2 == 0 ? KeyboardSensor.LEFT_KEY : KeyboardSensor.RIGHT_KEY;
+            keyboard.hold(key, from, from + SWEEP_FRAMES - 1);
+        }
+    }
+
+    /**
+     * Runs the given levels one after the other headless, with the paddle
+     * standing still (or sweeping left and right), until they end or the
+     * player loses, and prints how fast they ran.
+     * The arguments are the maximal number of frames, followed by the levels
+     * to run (like in Ass6Game), optionally "steps=N" to simulate N steps
+     * per second instead of 60, and optionally "profile=DIR" to write the
+     * phase times of every frame of every level to the directory DIR,
+     * optionally "dirty" to draw only the regions that changed every frame,
+     * optionally "threaded" to draw the frames on a render thread of their own,
+     * optionally "alloc=N" to track the bytes every frame allocates and fail
+     * (exit with status 1) if a level allocates more than N bytes per frame
+     * after it warmed up (the levels are run once untracked before, to warm
+     * up the JIT),
+     * optionally "move" to move the paddle left and right all along (for
+     * example, to check the allocation budget of a moving paddle),
+     * optionally "level=FILE" to run the level in the level file FILE, and
+     * optionally "record=FILE" to record the session to the file FILE
+     * (see ReplaySession).
+     *
+     * @param args the input arguments
+     */
+    public static void main(String[] args) {
+        long frameLimit = 100000;
+        int stepsPerSecond = DEFAULT_STEPS_PER_SECOND;
+        String profileDirectory = null;
+        boolean dirtyRendering = false;
+        boolean threadedRendering = false;
+        boolean movePaddle = false;
+        long allocationBudget = -1;
+        String recordFile = null;
+        List<LevelInformation> levels = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (i == 0) {
+                frameLimit = Long.parseLong(args[i]);
+            } else if (args[i].startsWith("steps=")) {
+                stepsPerSecond = Integer.parseInt(args[i].substring("steps=".length()));
+            } else if (args[i].startsWith("profile=")) {
+                profileDirectory = args[i].substring("profile=".length());
+            } else if (args[i].startsWith("alloc=")) {
+                allocationBudget = Long.parseLong(args[i].substring("alloc=".length()));
+            } else if (args[i].startsWith("record=")) {
+                recordFile = args[i].substring("record=".length());
+            } else if (args[i].startsWith("level=")) {
+                try {
+                    levels.add(FileLevel.load(Paths.get(args[i].substring("level=".length()))));
+                } catch (IOException e) {
+                    System.err.println("Could not load the level: " + e.getMessage());
+                    return;
+                }
+            } else if (args[i].equals("dirty")) {
+                dirtyRendering = true;
+            } else if (args[i].equals("threaded")) {
+                threadedRendering = true;
+            } else if (args[i].equals("move")) {
+                movePaddle = true;
+            } else if (args[i].equals("1")) {
+                levels.add(new DirectHit());
+            } else if (args[i].equals("2")) {
+                levels.add(new WideEasy());
+            } else if (args[i].equals("3")) {
+                levels.add(new Green3());
+            }
+        }
+        if (levels.isEmpty()) {
+            levels.add(new DirectHit());
+            levels.add(new WideEasy());
+            levels.add(new Green3());
+        }
+        ScriptedKeyboardSensor keyboard = new ScriptedKeyboardSensor();
+        if (movePaddle) {
+            sweepPaddle(keyboard, frameLimit);
+        }
+        HeadlessSimulation simulation = new HeadlessSimulation(keyboard, frameLimit, stepsPerSecond);
+        simulation.getRunner().setDirtyRendering(dirtyRendering);
+        simulation.getRunner().setThreadedRendering(threadedRendering);
+        if (profileDirectory != null) {
+            simulation.getRunner().getProfiler().setEnabled(true);
+            simulation.getRunner().getProfiler().setDumpDirectory(Paths.get(profileDirectory));
+        }
+        if (allocationBudget >= 0) {
+            simulation.getRunner().getProfiler().setEnabled(true);
+            if (!simulation.getRunner().getProfiler().setAllocationTracking(true)) {
+                System.err.println("The allocations can't be tracked on this JVM");
+                System.exit(1);
+            }
+            simulation.getRunner().getProfiler().setAllocationBudget(allocationBudget);
+        }
+        InputRecording recording = null;
+        if (recordFile != null) {
+            recording = InputRecording.record(FRAMES_PER_SECOND, stepsPerSecond);
+            simulation.getRunner().setInputRecording(recording);
+        }
+        if (allocationBudget >= 0) {
+            // the levels are run once untracked first, so what the JIT allocates
+            // once while it compiles (and deoptimizes) the game isn't counted
+            ScriptedKeyboardSensor warmupKeyboard = new ScriptedKeyboardSensor();
+            if (movePaddle) {
+                sweepPaddle(warmupKeyboard, frameLimit);
+            }
+            HeadlessSimulation warmup = new HeadlessSimulation(warmupKeyboard, frameLimit, stepsPerSecond);
+            warmup.getRunner().setDirtyRendering(dirtyRendering);
+            warmup.runLevels(levels);
+        }
+        long startTime = System.nanoTime();
+        simulation.runLevels(levels);
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        long frames = simulation.getRunner().getFrameCount();
+        System.out.println("frames: " + frames + ", seconds: " + seconds
+                + ", frames per second: " + frames / seconds + ", score: " + simulation.getScore().getValue());
+        if (threadedRendering) {
+            // the render thread shows the last frame before it stops
+            simulation.getRunner().close();
+            System.out.println("frames shown: " + simulation.getRunner().getShownFrameCount());
+        }
+        if (recording != null) {
+            try {
+                recording.save(Paths.get(recordFile));
+            } catch (IOException e) {
+                System.err.println("Could not save the recording: " + e.getMessage());
+            }
+        }
+        if (allocationBudget >= 0) {
+            List<String> violations = simulation.getRunner().getProfiler().getBudgetViolations();
+            for (String violation : violations) {
+                System.out.println("over the allocation budget: " + violation);
+            }
+            if (!violations.isEmpty()) {
+                System.exit(1);
+            }
+        }
+    }
+}
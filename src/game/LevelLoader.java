@@ -0,0 +1,71 @@
+package game;
+
+import animations.AnimationRunner;
+import levels.LevelInformation;
+import utils.Counter;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The LevelLoader class builds levels on a background thread, so the next
+ * level is built while the current level (or its countdown) runs, and a large
+ * level doesn't stall the game between levels.
+ * Building a level creates it and initializes it (creating its blocks, and
+ * filling its collision environment and spatial index), draws its background
+ * into its cache, and checks it can be played (see GameLevel.prepare). The
+ * built level is handed over through a Future, which is safe to read on the
+ * thread that runs the animations once it is done.
+ * A level may only be built while no other thread uses it, and the levels are
+ * built one at a time, in the order they were asked for.
+ *
+ * @author Eitan Maimoni
+ * @version 19.0.2
+ * @since 2023-06-01
+ */
+public class LevelLoader {
+    private final AnimationRunner runner;
+    private final Counter score;
+    private final ExecutorService executor;
+
+    /**
+     * Constructs a new LevelLoader, for levels run by the given runner.
+     *
+     * @param runner the animation runner the levels are run with
+     * @param score  the score counter shared by the levels
+     */
+    public LevelLoader(AnimationRunner runner, Counter score) {
+        this.runner = runner;
+        this.score = score;
+        this.executor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "level-loader");
+            // a game that ends while a level is built still exits
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts building the given level on the background thread.
+     *
+     * @param levelInfo the level to build
+     * @return the level once it is built; getting it throws an
+     *         ExecutionException if the level can't be played
+     */
+    public Future<GameLevel> load(LevelInformation levelInfo) {
+        return this.executor.submit(() -> {
+            GameLevel gameLevel = new GameLevel(levelInfo, this.runner, this.runner.getInput(), this.score);
+            gameLevel.initialize();
+            gameLevel.prepare();
+            return gameLevel;
+        });
+    }
+
+    /**
+     * Stops the background thread, abandoning the levels that are still built.
+     */
+    public void close() {
+        this.executor.shutdownNow();
+    }
+}
@@ -0,0 +1,125 @@
+package game;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import animations.AnimationRunner;
+import animations.HeadlessDrawSurface;
+import animations.InputRecording;
+import animations.ScriptedKeyboardSensor;
+import levels.FileLevel;
+import levels.LevelInformation;
+
+/**
+ * The ReplaySession class plays back a game session recorded with the
+ * argument "record=FILE" of Ass6Game or HeadlessSimulation.
+ * The levels of the session are created again, and the actions and the steps of
+ * every frame are read from the recording, so the session is simulated
+ * exactly as it was recorded. It can be played back headless as fast as the
+ * CPU allows, to reproduce a bug or to measure how fast the engine runs the
+ * same session, or in a window in any time scale.
+ *
+ * @author Eitan Maimoni
+ * @version 19.0.2
+ * @since 2023-06-01
+ */
+public class ReplaySession {
+    /**
+     * The prefix of a recorded level that was loaded from a level file,
+     * followed by the path of the file.
+     */
+    public static final String LEVEL_FILE_PREFIX = "file:";
+    private static final int WINDOW_HEIGHT = 600;
+    private static final int WINDOW_WIDTH = 800;
+
+    /**
+     * Creates the levels of a recording again. A level loaded from a file is
+     * loaded again from the same file.
+     *
+     * @param recording the recording
+     * @return the levels, in the order they were run
+     * @throws IOException if a level can't be created
+     */
+    public static List<LevelInformation> createLevels(InputRecording recording) throws IOException {
+        List<LevelInformation> levels = new ArrayList<>();
+        for (String className : recording.getLevels()) {
+            if (className.startsWith(LEVEL_FILE_PREFIX)) {
+                levels.add(FileLevel.load(Paths.get(className.substring(LEVEL_FILE_PREFIX.length()))));
+                continue;
+            }
+            try {
+                Object level = Class.forName(className).getDeclaredConstructor().newInstance();
+                levels.add((LevelInformation) level);
+            } catch (ReflectiveOperationException | ClassCastException e) {
+                throw new IOException("Could not create the level " + className, e);
+            }
+        }
+        return levels;
+    }
+
+    /**
+     * Plays back the recording in the file given as the first argument, and
+     * prints how fast it ran and the final score.
+     * The other arguments are optionally "headless" to play it back without
+     * a window as fast as the CPU allows, optionally "scale=X" to show the
+     * frames X times faster than they were recorded (e.g. 0.25 for slow
+     * motion), optionally "profile=DIR" to write the phase times of every
+     * frame of every level to the directory DIR, and optionally "dirty" to
+     * draw only the regions that changed every frame.
+     *
+     * @param args the input arguments
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Usage: ReplaySession FILE [headless] [scale=X] [profile=DIR] [dirty]");
+            return;
+        }
+        boolean headless = false;
+        double timeScale = 1;
+        String profileDirectory = null;
+        boolean dirtyRendering = false;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("headless")) {
+                headless = true;
+            } else if (args[i].startsWith("scale=")) {
+                timeScale = Double.parseDouble(args[i].substring("scale=".length()));
+            } else if (args[i].startsWith("profile=")) {
+                profileDirectory = args[i].substring("profile=".length());
+            } else if (args[i].equals("dirty")) {
+                dirtyRendering = true;
+            }
+        }
+        InputRecording recording;
+        List<LevelInformation> levels;
+        try {
+            recording = InputRecording.load(Paths.get(args[0]));
+            levels = createLevels(recording);
+        } catch (IOException e) {
+            System.err.println("Could not load the recording: " + e.getMessage());
+            return;
+        }
+        AnimationRunner runner;
+        if (headless) {
+            runner = new AnimationRunner(new HeadlessDrawSurface(WINDOW_WIDTH, WINDOW_HEIGHT),
+                    new ScriptedKeyboardSensor(), recording.getFramesPerSecond(), recording.getStepsPerSecond());
+        } else {
+            runner = new AnimationRunner(recording.getFramesPerSecond(), recording.getStepsPerSecond());
+            runner.setTimeScale(timeScale);
+        }
+        runner.setInputRecording(recording);
+        runner.setDirtyRendering(dirtyRendering);
+        if (profileDirectory != null) {
+            runner.getProfiler().setEnabled(true);
+            runner.getProfiler().setDumpDirectory(Paths.get(profileDirectory));
+        }
+        GameFlow gameFlow = new GameFlow(runner);
+        long startTime = System.nanoTime();
+        gameFlow.runLevels(levels);
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        long frames = runner.getFrameCount();
+        System.out.println("frames: " + frames + " of " + recording.getFrameCount() + ", seconds: " + seconds
+                + ", frames per second: " + frames / seconds + ", score: " + gameFlow.getScore().getValue());
+    }
+}
@@ -147,6 +147,27 @@ public class Line {
         return false;
     }
 
+    /**
+     * Determines whether the point with the given coordinates lies on this
+     * line. Works like isPointOnLine(Point) on raw coordinates.
+     *
+     * @param pointX the x-coordinate of the point to be checked
+     * @param pointY the y-coordinate of the point to be checked
+     * @return true if the point lies on the line, false otherwise
+     */
+    public boolean isPointOnLine(double pointX, double pointY) {
+        if (this.slope == NO_SLOPE) {
+            if (isDoubleEqual(pointX, this.start.getX())) {
+                return isInRange(this.start.getY(), this.end.getY(), pointY);
+            }
+        } else {
+            if (Math.abs(pointY - this.slope * pointX - this.yIntercept) < EPSILON) {
+                return isInRange(this.start.getX(), this.end.getX(), pointX);
+            }
+        }
+        return false;
+    }
+
     /**
      * Determines whether a given lines that we already know they have same slope
      * and has intersection overlap.
@@ -372,6 +393,106 @@ public class Line {
         }
     }
 
+    /**
+     * Intersection with the segment between the two given points.
+     * Works like intersectionWith(Line) on raw coordinates, so it does not
+     * allocate.
+     *
+     * @param x1           the x-coordinate of the start point of the segment
+     * @param y1           the y-coordinate of the start point of the segment
+     * @param x2           the x-coordinate of the end point of the segment
+     * @param y2           the y-coordinate of the end point of the segment
+     * @param intersection an array of (at least) 2 cells, the x and y
+     *                     coordinates of the intersection point are written to
+     * @return true if the line and the segment intersect in a single point,
+     *         false otherwise
+     */
+    public boolean intersectionWith(double x1, double y1, double x2, double y2, double[] intersection) {
+        double thisX1 = this.start.getX();
+        double thisY1 = this.start.getY();
+        double thisX2 = this.end.getX();
+        double thisY2 = this.end.getY();
+        double otherSlope = NO_SLOPE;
+        if (!isDoubleEqual(x2, x1)) {
+            otherSlope = (y2 - y1) / (x2 - x1);
+        }
+        double otherYIntercept = y1 - (otherSlope * x1);
+        if (this.slope == NO_SLOPE && otherSlope == NO_SLOPE) {
+            // the same checks as isIntersectingVertical and intersectionWithVertical
+            if (!isDoubleEqual(x1, thisX1)
+                    || !(isInRange(y1, y2, thisY1) || isInRange(y1, y2, thisY2)
+                            || isInRange(thisY1, thisY2, y1) || isInRange(thisY1, thisY2, y2))
+                    || isSameSegment(x1, y1, x2, y2) || isLineOverlap(thisY1, thisY2, y1, y2)) {
+                return false;
+            }
+            return sharedEdge(x1, y1, x2, y2, intersection);
+        }
+        double mutualX;
+        double mutualY;
+        if (this.slope == NO_SLOPE) {
+            mutualX = thisX1;
+            mutualY = otherSlope * mutualX + otherYIntercept;
+            if (!isInRange(x1, x2, mutualX) || !isInRange(thisY1, thisY2, mutualY)) {
+                return false;
+            }
+        } else if (otherSlope == NO_SLOPE) {
+            mutualX = x1;
+            mutualY = this.slope * mutualX + this.yIntercept;
+            if (!isInRange(thisX1, thisX2, mutualX) || !isInRange(y1, y2, mutualY)) {
+                return false;
+            }
+        } else if (isDoubleEqual(otherSlope, this.slope)) {
+            // the same checks as isIntersecting and intersectionWith
+            if (!isDoubleEqual(otherYIntercept, this.yIntercept)
+                    || !(isInRange(x1, x2, thisX1) || isInRange(x1, x2, thisX2)
+                            || isInRange(thisX1, thisX2, x1) || isInRange(thisX1, thisX2, x2))
+                    || isSameSegment(x1, y1, x2, y2) || isLineOverlap(thisX1, thisX2, x1, x2)) {
+                return false;
+            }
+            return sharedEdge(x1, y1, x2, y2, intersection);
+        } else {
+            mutualX = (this.yIntercept - otherYIntercept) / (otherSlope - this.slope);
+            if (!isInRange(x1, x2, mutualX) || !isInRange(thisX1, thisX2, mutualX)) {
+                return false;
+            }
+            mutualY = otherSlope * mutualX + otherYIntercept;
+        }
+        if (isSameSegment(x1, y1, x2, y2)) {
+            return false;
+        }
+        intersection[0] = mutualX;
+        intersection[1] = mutualY;
+        return true;
+    }
+
+    // checks if the segment has the same edges as this line
+    private boolean isSameSegment(double x1, double y1, double x2, double y2) {
+        double thisX1 = this.start.getX();
+        double thisY1 = this.start.getY();
+        double thisX2 = this.end.getX();
+        double thisY2 = this.end.getY();
+        return isDoubleEqual(thisX1, x1) && isDoubleEqual(thisY1, y1)
+                && isDoubleEqual(thisX2, x2) && isDoubleEqual(thisY2, y2)
+                || isDoubleEqual(thisX1, x2) && isDoubleEqual(thisY1, y2)
+                        && isDoubleEqual(thisX2, x1) && isDoubleEqual(thisY2, y1);
+    }
+
+    // writes the edge two segments on the same line that touch but don't
+    // overlap have in common
+    private boolean sharedEdge(double x1, double y1, double x2, double y2, double[] intersection) {
+        double thisX1 = this.start.getX();
+        double thisY1 = this.start.getY();
+        if (isDoubleEqual(thisX1, x1) && isDoubleEqual(thisY1, y1)
+                || isDoubleEqual(thisX1, x2) && isDoubleEqual(thisY1, y2)) {
+            intersection[0] = thisX1;
+            intersection[1] = thisY1;
+        } else {
+            intersection[0] = this.end.getX();
+            intersection[1] = this.end.getY();
+        }
+        return true;
+    }
+
     /**
      * Closest intersection to start of line point.
      *
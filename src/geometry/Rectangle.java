@@ -5,17 +5,47 @@ import java.util.List;
 
 /**
  * The `Rectangle` class represents a rectangle in 2D space.
+ * A rectangle can be moved in place (see moveTo). Its points and lines are
+ * then built again only when they are asked for, so moving it every step (like
+ * the paddle's) doesn't allocate, as long as it is read through the raw
+ * coordinates.
  *
  * @author Eitan Maimoni
  * @version 19.0.2
  * @since 2023-06-01
  */
 public class Rectangle {
+    /**
+     * No face of a rectangle, returned when a segment misses it.
+     */
+    public static final int NO_FACE = 0;
+    /**
+     * The upper face of a rectangle.
+     */
+    public static final int TOP = 1;
+    /**
+     * The lower face of a rectangle.
+     */
+    public static final int BOTTOM = 2;
+    /**
+     * The left face of a rectangle.
+     */
+    public static final int LEFT = 4;
+    /**
+     * The right face of a rectangle.
+     */
+    public static final int RIGHT = 8;
+    // how far from an edge a point may be and still be on it, like in Line
+    private static final double EPSILON = 1e-10;
     private Line upperLine;
     private Line lowerLine;
     private Line leftLine;
     private Line rightLine;
-    private final Point upperLeftPoint;
+    private Line[] lines;
+    // null from the moment the rectangle moves until it is asked for
+    private Point upperLeftPoint;
+    private double upperLeftX;
+    private double upperLeftY;
     private final double width;
     private final double height;
 
@@ -30,25 +60,53 @@ public class Rectangle {
     // Create a new rectangle with location and width/height.
     public Rectangle(Point upperLeftPoint, double width, double height) {
         this.upperLeftPoint = upperLeftPoint;
+        this.upperLeftX = upperLeftPoint.getX();
+        this.upperLeftY = upperLeftPoint.getY();
         this.width = width;
         this.height = height;
         initializeLines();
     }
 
+    /**
+     * Moves the rectangle so its upper-left point is at the given
+     * coordinates, keeping its width and height.
+     *
+     * @param x the x-coordinate of the new upper-left point
+     * @param y the y-coordinate of the new upper-left point
+     */
+    public void moveTo(double x, double y) {
+        this.upperLeftX = x;
+        this.upperLeftY = y;
+        this.upperLeftPoint = null;
+        this.upperLine = null;
+        this.lowerLine = null;
+        this.leftLine = null;
+        this.rightLine = null;
+        this.lines = null;
+    }
+
     /**
      * Initializes the four lines of the rectangle using its upper-left point,
      * width and height.
      */
     public void initializeLines() {
         Point upperLeft, upperRight, lowerLeft, lowerRight;
-        upperLeft = this.upperLeftPoint;
-        upperRight = new Point(this.upperLeftPoint, width, 0);
-        lowerLeft = new Point(this.upperLeftPoint, 0, -height);
-        lowerRight = new Point(this.upperLeftPoint, width, -height);
+        upperLeft = getUpperLeftPoint();
+        upperRight = new Point(upperLeft, width, 0);
+        lowerLeft = new Point(upperLeft, 0, -height);
+        lowerRight = new Point(upperLeft, width, -height);
         this.upperLine = new Line(upperLeft, upperRight);
         this.lowerLine = new Line(lowerLeft, lowerRight);
         this.leftLine = new Line(lowerLeft, upperLeft);
         this.rightLine = new Line(lowerRight, upperRight);
+        this.lines = new Line[] {this.upperLine, this.lowerLine, this.leftLine, this.rightLine};
+    }
+
+    // builds the lines again if the rectangle moved since they were built
+    private void ensureLines() {
+        if (this.lines == null) {
+            initializeLines();
+        }
     }
 
     /**
@@ -89,6 +147,7 @@ public class Rectangle {
     // Return a (possibly empty) List of intersection points
     // with the specified line.
     public java.util.List<Point> intersectionPoints(Line line) {
+        ensureLines();
         List<Point> points = new ArrayList<>();
         Point p1 = this.upperLine.intersectionWith(line);
         if (p1 != null && !isPointInList(points, p1)) {
@@ -109,6 +168,215 @@ public class Rectangle {
         return points;
     }
 
+    /**
+     * Finds the intersection point of the rectangle with the segment between
+     * the two given points, that is the closest to the start of the segment.
+     * Works like Line.closestIntersectionToStartOfLine on raw coordinates, so it
+     * does not allocate.
+     *
+     * @param x1           the x-coordinate of the start point of the segment
+     * @param y1           the y-coordinate of the start point of the segment
+     * @param x2           the x-coordinate of the end point of the segment
+     * @param y2           the y-coordinate of the end point of the segment
+     * @param intersection an array of (at least) 2 cells, the x and y
+     *                     coordinates of the closest intersection point are
+     *                     written to
+     * @return true if there is intersection point, false otherwise
+     */
+    public boolean closestIntersection(double x1, double y1, double x2, double y2, double[] intersection) {
+        boolean found = false;
+        double closestX = 0;
+        double closestY = 0;
+        double smallestDistance = 0;
+        ensureLines();
+        for (Line line : this.lines) {
+            if (!line.intersectionWith(x1, y1, x2, y2, intersection)) {
+                continue;
+            }
+            double x = intersection[0];
+            double y = intersection[1];
+            double distance = Math.sqrt((x1 - x) * (x1 - x) + (y1 - y) * (y1 - y));
+            // a point already found on another line is not counted twice
+            if (!found || (smallestDistance > distance
+                    && !(Math.abs(x - closestX) < 1e-10 && Math.abs(y - closestY) < 1e-10))) {
+                found = true;
+                smallestDistance = distance;
+                closestX = x;
+                closestY = y;
+            }
+        }
+        intersection[0] = closestX;
+        intersection[1] = closestY;
+        return found;
+    }
+
+    /**
+     * Finds the first point of the segment between the two given points that
+     * is on the boundary of the rectangle, with the slab method: the segment
+     * is clipped against the range of x-coordinates and the range of
+     * y-coordinates of the rectangle, so the point is found with a few
+     * divisions on raw coordinates, and no line of the rectangle is used.
+     * It finds the same point as closestIntersection: a point within 1e-10 of
+     * an edge is on it, a segment that starts inside the rectangle meets it
+     * where it leaves it, and a segment running along an edge doesn't meet that
+     * edge, only the edges across its way.
+     *
+     * @param x1  the x-coordinate of the start point of the segment
+     * @param y1  the y-coordinate of the start point of the segment
+     * @param x2  the x-coordinate of the end point of the segment
+     * @param y2  the y-coordinate of the end point of the segment
+     * @param hit an array of (at least) 3 cells, the segment parameter of the
+     *            point (0 at the start and 1 at the end) and its x and y
+     *            coordinates are written to
+     * @return the faces of the rectangle the point is on, as a bitmask of
+     *         TOP, BOTTOM, LEFT and RIGHT (two faces at a corner), or NO_FACE
+     *         if the segment doesn't meet the boundary
+     */
+    public int slabIntersection(double x1, double y1, double x2, double y2, double[] hit) {
+        double left = this.upperLeftX;
+        double right = left + this.width;
+        double top = this.upperLeftY;
+        double bottom = top - this.height;
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        // the segment parameters at which the segment enters and leaves the
+        // slab of every axis, which is padded by EPSILON
+        double nearX = Double.NEGATIVE_INFINITY;
+        double farX = Double.POSITIVE_INFINITY;
+        double nearY = Double.NEGATIVE_INFINITY;
+        double farY = Double.POSITIVE_INFINITY;
+        if (dx != 0) {
+            double toLeft = (left - EPSILON - x1) / dx;
+            double toRight = (right + EPSILON - x1) / dx;
+            nearX = Math.min(toLeft, toRight);
+            farX = Math.max(toLeft, toRight);
+        } else if (x1 < left - EPSILON || x1 > right + EPSILON) {
+            return NO_FACE;
+        }
+        if (dy != 0) {
+            double toBottom = (bottom - EPSILON - y1) / dy;
+            double toTop = (top + EPSILON - y1) / dy;
+            nearY = Math.min(toBottom, toTop);
+            farY = Math.max(toBottom, toTop);
+        } else if (y1 < bottom - EPSILON || y1 > top + EPSILON) {
+            return NO_FACE;
+        }
+        double near = Math.max(nearX, nearY);
+        double far = Math.min(farX, farY);
+        if (near > far || near > 1 || far < 0) {
+            return NO_FACE;
+        }
+        if (near >= 0) {
+            // the segment enters the rectangle
+            return slabPoint(x1, y1, dx, dy, nearX >= nearY, dx > 0 ? left : right, dy > 0 ? bottom : top,
+                    dx > 0 ? LEFT : RIGHT, dy > 0 ? BOTTOM : TOP, hit);
+        }
+        // the segment starts inside the rectangle, or on its boundary. Like in
+        // Line, a segment is parallel to a vertical edge if it has no slope,
+        // and to a horizontal edge if its slope is 0
+        boolean vertical = Math.abs(dx) < EPSILON;
+        boolean horizontal = !vertical && Math.abs(dy / dx) < EPSILON;
+        int startFaces = NO_FACE;
+        if (!vertical) {
+            startFaces |= Math.abs(x1 - left) < EPSILON ? LEFT : NO_FACE;
+            startFaces |= Math.abs(x1 - right) < EPSILON ? RIGHT : NO_FACE;
+        }
+        if (!horizontal) {
+            startFaces |= Math.abs(y1 - bottom) < EPSILON ? BOTTOM : NO_FACE;
+            startFaces |= Math.abs(y1 - top) < EPSILON ? TOP : NO_FACE;
+        }
+        if (startFaces != NO_FACE) {
+            hit[0] = 0;
+            hit[1] = x1;
+            hit[2] = y1;
+            return startFaces;
+        }
+        if (dx == 0 && dy == 0) {
+            return NO_FACE;
+        }
+        // the segment leaves the rectangle, if it doesn't end before the edge
+        boolean onX = farX <= farY;
+        int faces = slabPoint(x1, y1, dx, dy, onX, dx > 0 ? right : left, dy > 0 ? top : bottom,
+                dx > 0 ? RIGHT : LEFT, dy > 0 ? TOP : BOTTOM, hit);
+        if ((hit[0] - 1) * Math.abs(onX ? dx : dy) >= EPSILON) {
+            return NO_FACE;
+        }
+        return faces;
+    }
+
+    // writes the point where the segment crosses the edge at x = edgeX (if
+    // onX) or at y = edgeY, which is exactly on the edge, and returns its faces
+    private static int slabPoint(double x1, double y1, double dx, double dy, boolean onX, double edgeX,
+            double edgeY, int faceX, int faceY, double[] hit) {
+        double t;
+        double x;
+        double y;
+        if (onX) {
+            t = (edgeX - x1) / dx;
+            x = edgeX;
+            y = y1 + dy * t;
+        } else {
+            t = (edgeY - y1) / dy;
+            x = x1 + dx * t;
+            y = edgeY;
+        }
+        hit[0] = Math.max(0, t);
+        hit[1] = x;
+        hit[2] = y;
+        int faces = onX ? faceX : faceY;
+        if (onX && dy != 0 && Math.abs(y - edgeY) < EPSILON) {
+            faces |= faceY;
+        } else if (!onX && dx != 0 && Math.abs(x - edgeX) < EPSILON) {
+            faces |= faceX;
+        }
+        return faces;
+    }
+
+    /**
+     * Finds the first point of the segment between the two given points that
+     * is within the given margin of the rectangle, with the slab method. A
+     * segment that starts that close to the rectangle meets it at its start.
+     *
+     * @param x1     the x-coordinate of the start point of the segment
+     * @param y1     the y-coordinate of the start point of the segment
+     * @param x2     the x-coordinate of the end point of the segment
+     * @param y2     the y-coordinate of the end point of the segment
+     * @param margin how far from the rectangle the point may be
+     * @return the segment parameter of the point (0 at the start and 1 at the
+     *         end), or infinity if the segment doesn't come that close
+     */
+    public double entryTime(double x1, double y1, double x2, double y2, double margin) {
+        double left = this.upperLeftX - margin;
+        double right = this.upperLeftX + this.width + margin;
+        double top = this.upperLeftY + margin;
+        double bottom = this.upperLeftY - this.height - margin;
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double near = 0;
+        double far = 1;
+        if (dx == 0) {
+            if (x1 < left || x1 > right) {
+                return Double.POSITIVE_INFINITY;
+            }
+        } else {
+            double toLeft = (left - x1) / dx;
+            double toRight = (right - x1) / dx;
+            near = Math.max(near, Math.min(toLeft, toRight));
+            far = Math.min(far, Math.max(toLeft, toRight));
+        }
+        if (dy == 0) {
+            if (y1 < bottom || y1 > top) {
+                return Double.POSITIVE_INFINITY;
+            }
+        } else {
+            double toBottom = (bottom - y1) / dy;
+            double toTop = (top - y1) / dy;
+            near = Math.max(near, Math.min(toBottom, toTop));
+            far = Math.min(far, Math.max(toBottom, toTop));
+        }
+        return near > far ? Double.POSITIVE_INFINITY : near;
+    }
+
     /**
      * gets the width of the rectangle.
      *
@@ -133,15 +401,74 @@ public class Rectangle {
      * @return the upper left point
      */
     public Point getUpperLeftPoint() {
+        if (this.upperLeftPoint == null) {
+            this.upperLeftPoint = new Point(this.upperLeftX, this.upperLeftY);
+        }
         return this.upperLeftPoint;
     }
 
+    /**
+     * Gets the x-coordinate of the upper left point, without building it.
+     *
+     * @return the x-coordinate of the upper left point
+     */
+    public double getUpperLeftX() {
+        return this.upperLeftX;
+    }
+
+    /**
+     * Gets the y-coordinate of the upper left point, without building it.
+     *
+     * @return the y-coordinate of the upper left point
+     */
+    public double getUpperLeftY() {
+        return this.upperLeftY;
+    }
+
+    /**
+     * Finds the faces of the rectangle the point with the given coordinates
+     * is on, like isPointOnLine of the line of every face, on raw coordinates
+     * and without building the lines.
+     *
+     * @param x the x-coordinate of the point
+     * @param y the y-coordinate of the point
+     * @return the faces the point is on, as a bitmask of TOP, BOTTOM, LEFT and
+     *         RIGHT, or NO_FACE if it is on none of them
+     */
+    public int facesAt(double x, double y) {
+        double right = this.upperLeftX + this.width;
+        double bottom = this.upperLeftY - this.height;
+        int faces = NO_FACE;
+        if (Math.abs(y - this.upperLeftY) < EPSILON && isInRange(this.upperLeftX, right, x)) {
+            faces |= TOP;
+        }
+        if (Math.abs(y - bottom) < EPSILON && isInRange(this.upperLeftX, right, x)) {
+            faces |= BOTTOM;
+        }
+        if (Math.abs(x - this.upperLeftX) < EPSILON && isInRange(bottom, this.upperLeftY, y)) {
+            faces |= LEFT;
+        }
+        if (Math.abs(x - right) < EPSILON && isInRange(bottom, this.upperLeftY, y)) {
+            faces |= RIGHT;
+        }
+        return faces;
+    }
+
+    // checks whether the value is between the bounds, or within EPSILON of
+    // one of them, like Line.isInRange
+    private static boolean isInRange(double a, double b, double v) {
+        double high = Math.max(a, b);
+        double low = Math.min(a, b);
+        return high > v && v > low || Math.abs(high - v) < EPSILON || Math.abs(low - v) < EPSILON;
+    }
+
     /**
      * Gets the upper line.
      *
      * @return the upper line
      */
     public Line getUpperLine() {
+        ensureLines();
         return this.upperLine;
     }
 
@@ -151,6 +478,7 @@ public class Rectangle {
      * @return the lower line
      */
     public Line getLowerLine() {
+        ensureLines();
         return this.lowerLine;
     }
 
@@ -160,6 +488,7 @@ public class Rectangle {
      * @return the left line
      */
     public Line getLeftLine() {
+        ensureLines();
         return this.leftLine;
     }
 
@@ -169,6 +498,7 @@ public class Rectangle {
      * @return the right line
      */
     public Line getRightLine() {
+        ensureLines();
         return this.rightLine;
     }
 }
\ No newline at end of file
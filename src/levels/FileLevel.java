@@ -0,0 +1,610 @@
+package levels;
+
+import backgrounds.CityBackground;
+import backgrounds.DayBackground;
+import backgrounds.NightBackground;
+import geometry.Point;
+import geometry.Rectangle;
+import objects.Block;
+import physics.Velocity;
+import sprites.Sprite;
+
+import java.awt.Color;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The FileLevel class represents a level loaded from a file, so levels can be
+ * added and changed without compiling the game.
+ * A level file is either a text file, for writing levels by hand, or a
+ * compact binary file, for shipping them (see LevelCompiler), and the format
+ * is told by the first bytes of the file.
+ * The text format has a keyword and its values in every line, and "#" in
+ * the place of a keyword, or after the values, starts a comment:
+ * <pre>
+ * name Green 3                (the rest of the line, up to a comment)
+ * background day              (day, night or city)
+ * paddle 8 110                (speed and width)
+ * ball 60 5                   (angle and speed, a line for every ball)
+ * remove 57                   (blocks to remove, all the blocks by default)
+ * block 425 550 50 25 blue    (x, y, width, height and color)
+ * </pre>
+ * The point of a block is its top left corner, like in the other levels, and
+ * its color is a name of a java.awt.Color constant or "#rrggbb".
+ * The file is mapped to memory and parsed in place, and the blocks are kept
+ * in arrays of numbers, so even a level of 100,000 blocks loads in
+ * milliseconds. The blocks are created only when the level asks for them.
+ * The level is validated while it is loaded: every value must be in range,
+ * and every block inside the screen.
+ *
+ * @author Eitan Maimoni
+ * @version 19.0.2
+ * @since 2023-06-01
+ */
+public class FileLevel implements LevelInformation {
+    private static final int MAGIC = 0x41524B4C;
+    private static final int FORMAT_VERSION = 1;
+    private static final String[] BACKGROUNDS = {"day", "night", "city"};
+    private static final int SCREEN_WIDTH = 800;
+    private static final int SCREEN_HEIGHT = 600;
+    private static final int INITIAL_CAPACITY = 16;
+    private final Path source;
+    private String name;
+    private int background;
+    private int paddleSpeed;
+    private int paddleWidth;
+    private double[] ballAngles;
+    private double[] ballSpeeds;
+    private int ballCount;
+    private int blocksToRemove;
+    // the blocks, by block
+    private double[] blockX;
+    private double[] blockY;
+    private double[] blockWidths;
+    private double[] blockHeights;
+    private int[] blockColors;
+    private int blockCount;
+
+    private FileLevel(Path source) {
+        this.source = source;
+        this.background = -1;
+        this.ballAngles = new double[INITIAL_CAPACITY];
+        this.ballSpeeds = new double[INITIAL_CAPACITY];
+        this.blocksToRemove = -1;
+        this.blockX = new double[INITIAL_CAPACITY];
+        this.blockY = new double[INITIAL_CAPACITY];
+        this.blockWidths = new double[INITIAL_CAPACITY];
+        this.blockHeights = new double[INITIAL_CAPACITY];
+        this.blockColors = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Loads and validates a level file, in the text or the binary format.
+     *
+     * @param file the level file
+     * @return the level
+     * @throws IOException if the file can't be read, or is not a valid level
+     */
+    public static FileLevel load(Path file) throws IOException {
+        FileLevel level = new FileLevel(file.toAbsolutePath());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() >= Integer.BYTES && buffer.getInt(0) == MAGIC) {
+                level.readBinary(buffer);
+            } else {
+                new TextParser(file, buffer, level).parse();
+            }
+        }
+        level.validate();
+        return level;
+    }
+
+    /**
+     * Returns the absolute path of the file the level was loaded from.
+     *
+     * @return the path
+     */
+    public Path getSource() {
+        return this.source;
+    }
+
+    /**
+     * Returns the number of blocks of the level.
+     *
+     * @return the number of blocks
+     */
+    public int getBlockCount() {
+        return this.blockCount;
+    }
+
+    /**
+     * Writes the level to the given file in the binary format.
+     *
+     * @param file the file to write to
+     * @throws IOException if the file can't be written
+     */
+    public void writeBinary(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(FORMAT_VERSION);
+            byte[] nameBytes = this.name.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(nameBytes.length);
+            out.write(nameBytes);
+            out.writeByte(this.background);
+            out.writeInt(this.paddleSpeed);
+            out.writeInt(this.paddleWidth);
+            out.writeInt(this.blocksToRemove);
+            out.writeInt(this.ballCount);
+            writeDoubles(out, this.ballAngles, this.ballCount);
+            writeDoubles(out, this.ballSpeeds, this.ballCount);
+            out.writeInt(this.blockCount);
+            // the blocks are written by field, so they are read in bulk
+            writeDoubles(out, this.blockX, this.blockCount);
+            writeDoubles(out, this.blockY, this.blockCount);
+            writeDoubles(out, this.blockWidths, this.blockCount);
+            writeDoubles(out, this.blockHeights, this.blockCount);
+            for (int i = 0; i < this.blockCount; i++) {
+                out.writeInt(this.blockColors[i]);
+            }
+        }
+    }
+
+    private static void writeDoubles(DataOutputStream out, double[] values, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            out.writeDouble(values[i]);
+        }
+    }
+
+    private void readBinary(ByteBuffer buffer) throws IOException {
+        try {
+            buffer.getInt();
+            if (buffer.get() != FORMAT_VERSION) {
+                throw new IOException(this.source + ": unsupported level format version");
+            }
+            byte[] nameBytes = new byte[buffer.getInt()];
+            buffer.get(nameBytes);
+            this.name = new String(nameBytes, StandardCharsets.UTF_8);
+            this.background = buffer.get();
+            this.paddleSpeed = buffer.getInt();
+            this.paddleWidth = buffer.getInt();
+            this.blocksToRemove = buffer.getInt();
+            this.ballCount = checkCount(buffer.getInt(), buffer, 2 * Double.BYTES);
+            this.ballAngles = readDoubles(buffer, this.ballCount);
+            this.ballSpeeds = readDoubles(buffer, this.ballCount);
+            this.blockCount = checkCount(buffer.getInt(), buffer, 4 * Double.BYTES + Integer.BYTES);
+            this.blockX = readDoubles(buffer, this.blockCount);
+            this.blockY = readDoubles(buffer, this.blockCount);
+            this.blockWidths = readDoubles(buffer, this.blockCount);
+            this.blockHeights = readDoubles(buffer, this.blockCount);
+            this.blockColors = new int[this.blockCount];
+            buffer.asIntBuffer().get(this.blockColors);
+        } catch (RuntimeException e) {
+            // a truncated file, or a length that doesn't fit it
+            throw new IOException(this.source + ": corrupted level file", e);
+        }
+    }
+
+    private int checkCount(int count, ByteBuffer buffer, int bytesPerItem) throws IOException {
+        if (count < 0 || (long) count * bytesPerItem > buffer.remaining()) {
+            throw new IOException(this.source + ": corrupted level file");
+        }
+        return count;
+    }
+
+    private static double[] readDoubles(ByteBuffer buffer, int count) {
+        double[] values = new double[count];
+        buffer.asDoubleBuffer().get(values);
+        buffer.position(buffer.position() + count * Double.BYTES);
+        return values;
+    }
+
+    private void addBall(double angle, double speed) {
+        if (this.ballCount == this.ballAngles.length) {
+            this.ballAngles = Arrays.copyOf(this.ballAngles, this.ballCount * 2);
+            this.ballSpeeds = Arrays.copyOf(this.ballSpeeds, this.ballCount * 2);
+        }
+        this.ballAngles[this.ballCount] = angle;
+        this.ballSpeeds[this.ballCount] = speed;
+        this.ballCount++;
+    }
+
+    private void addBlock(double x, double y, double width, double height, int color) {
+        if (this.blockCount == this.blockX.length) {
+            int capacity = this.blockCount * 2;
+            this.blockX = Arrays.copyOf(this.blockX, capacity);
+            this.blockY = Arrays.copyOf(this.blockY, capacity);
+            this.blockWidths = Arrays.copyOf(this.blockWidths, capacity);
+            this.blockHeights = Arrays.copyOf(this.blockHeights, capacity);
+            this.blockColors = Arrays.copyOf(this.blockColors, capacity);
+        }
+        this.blockX[this.blockCount] = x;
+        this.blockY[this.blockCount] = y;
+        this.blockWidths[this.blockCount] = width;
+        this.blockHeights[this.blockCount] = height;
+        this.blockColors[this.blockCount] = color;
+        this.blockCount++;
+    }
+
+    // checks the values that are not checked by the text parser, so a binary
+    // file is held to the same rules
+    private void validate() throws IOException {
+        if (this.name == null || this.name.isEmpty()) {
+            throw new IOException(this.source + ": the level has no name");
+        }
+        if (this.background < 0 || this.background >= BACKGROUNDS.length) {
+            throw new IOException(this.source + ": the level has no background");
+        }
+        if (this.paddleSpeed <= 0 || this.paddleWidth <= 0 || this.paddleWidth > SCREEN_WIDTH) {
+            throw new IOException(this.source + ": the level has no valid paddle");
+        }
+        if (this.ballCount == 0) {
+            throw new IOException(this.source + ": the level has no balls");
+        }
+        for (int i = 0; i < this.ballCount; i++) {
+            if (!Double.isFinite(this.ballAngles[i]) || !(this.ballSpeeds[i] > 0)
+                    || Double.isInfinite(this.ballSpeeds[i])) {
+                throw new IOException(this.source + ": ball " + (i + 1) + " has an invalid velocity");
+            }
+        }
+        for (int i = 0; i < this.blockCount; i++) {
+            String error = checkBlock(this.blockX[i], this.blockY[i], this.blockWidths[i], this.blockHeights[i]);
+            if (error != null) {
+                throw new IOException(this.source + ": block " + (i + 1) + " " + error);
+            }
+        }
+        if (this.blocksToRemove < 0) {
+            this.blocksToRemove = this.blockCount;
+        } else if (this.blocksToRemove > this.blockCount) {
+            throw new IOException(this.source + ": the level has fewer blocks than blocks to remove");
+        }
+    }
+
+    // returns what is wrong with a block, or null if it is valid
+    private static String checkBlock(double x, double y, double width, double height) {
+        if (!(width > 0) || !(height > 0)) {
+            return "has no area";
+        }
+        if (!(x >= 0) || !(x + width <= SCREEN_WIDTH) || !(y <= SCREEN_HEIGHT) || !(y - height >= 0)) {
+            return "is outside the screen";
+        }
+        return null;
+    }
+
+    @Override
+    public int numberOfBalls() {
+        return this.ballCount;
+    }
+
+    @Override
+    public List<Velocity> initialBallVelocities() {
+        List<Velocity> velocities = new ArrayList<>();
+        for (int i = 0; i < this.ballCount; i++) {
+            velocities.add(Velocity.fromAngleAndSpeed(this.ballAngles[i], this.ballSpeeds[i]));
+        }
+        return velocities;
+    }
+
+    @Override
+    public int paddleSpeed() {
+        return this.paddleSpeed;
+    }
+
+    @Override
+    public int paddleWidth() {
+        return this.paddleWidth;
+    }
+
+    @Override
+    public String levelName() {
+        return this.name;
+    }
+
+    @Override
+    public Sprite getBackground() {
+        if (this.background == 0) {
+            return new DayBackground();
+        }
+        if (this.background == 1) {
+            return new NightBackground();
+        }
+        return new CityBackground();
+    }
+
+    @Override
+    public List<Block> blocks() {
+        List<Block> blocks = new ArrayList<>(this.blockCount);
+        for (int i = 0; i < this.blockCount; i++) {
+            Rectangle r = new Rectangle(new Point(this.blockX[i], this.blockY[i]), this.blockWidths[i],
+                    this.blockHeights[i]);
+            blocks.add(new Block(r, new Color(this.blockColors[i])));
+        }
+        return blocks;
+    }
+
+    @Override
+    public int numberOfBlocksToRemove() {
+        return this.blocksToRemove;
+    }
+
+    /**
+     * The TextParser class parses a level in the text format in place, byte
+     * by byte, without creating a string for every line.
+     */
+    private static class TextParser {
+        private static final byte[] NAME = bytes("name");
+        private static final byte[] BACKGROUND = bytes("background");
+        private static final byte[] PADDLE = bytes("paddle");
+        private static final byte[] BALL = bytes("ball");
+        private static final byte[] REMOVE = bytes("remove");
+        private static final byte[] BLOCK = bytes("block");
+        private static final String[] COLOR_NAMES = {"black", "blue", "cyan", "darkGray", "gray", "green",
+                "lightGray", "magenta", "orange", "pink", "red", "white", "yellow"};
+        private static final Color[] COLORS = {Color.black, Color.blue, Color.cyan, Color.darkGray, Color.gray,
+                Color.green, Color.lightGray, Color.magenta, Color.orange, Color.pink, Color.red, Color.white,
+                Color.yellow};
+        private static final byte[][] COLOR_BYTES = new byte[COLOR_NAMES.length][];
+        private static final byte[][] BACKGROUND_BYTES = new byte[BACKGROUNDS.length][];
+        // a double is exact up to 2^53, so longer numbers are not parsed
+        private static final int MAX_DIGITS = 15;
+        private static final double[] POWERS_OF_TEN = {1, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+                1e11, 1e12, 1e13, 1e14, 1e15};
+        private final Path file;
+        private final ByteBuffer buffer;
+        private final FileLevel level;
+        private final int limit;
+        private int position;
+        private int line;
+        // the bounds of the last token read
+        private int tokenStart;
+        private int tokenEnd;
+
+        static {
+            for (int i = 0; i < COLOR_NAMES.length; i++) {
+                COLOR_BYTES[i] = bytes(COLOR_NAMES[i]);
+            }
+            for (int i = 0; i < BACKGROUNDS.length; i++) {
+                BACKGROUND_BYTES[i] = bytes(BACKGROUNDS[i]);
+            }
+        }
+
+        TextParser(Path file, ByteBuffer buffer, FileLevel level) {
+            this.file = file;
+            this.buffer = buffer;
+            this.level = level;
+            this.limit = buffer.limit();
+            this.position = 0;
+            this.line = 1;
+        }
+
+        private static byte[] bytes(String s) {
+            return s.getBytes(StandardCharsets.UTF_8);
+        }
+
+        void parse() throws IOException {
+            while (this.position < this.limit) {
+                if (nextToken() && !isComment()) {
+                    parseLine();
+                    if (nextToken() && !isComment()) {
+                        throw error("unexpected value at the end of the line");
+                    }
+                }
+                skipLine();
+            }
+        }
+
+        private void parseLine() throws IOException {
+            if (tokenIs(BLOCK)) {
+                double x = nextNumber();
+                double y = nextNumber();
+                double width = nextNumber();
+                double height = nextNumber();
+                int color = nextColor();
+                String error = checkBlock(x, y, width, height);
+                if (error != null) {
+                    throw error("the block " + error);
+                }
+                this.level.addBlock(x, y, width, height, color);
+            } else if (tokenIs(BALL)) {
+                double angle = nextNumber();
+                double speed = nextNumber();
+                if (!(speed > 0)) {
+                    throw error("the speed of a ball must be positive");
+                }
+                this.level.addBall(angle, speed);
+            } else if (tokenIs(NAME)) {
+                // the name is the rest of the line, up to a comment, so it
+                // may have spaces, and "#" inside a word is a part of it
+                skipSpaces();
+                int start = this.position;
+                int end = start;
+                while (this.position < this.limit && peek() != '\n'
+                        && !(peek() == '#' && isSpace(this.buffer.get(this.position - 1)))) {
+                    if (!isSpace(peek())) {
+                        end = this.position + 1;
+                    }
+                    this.position++;
+                }
+                byte[] nameBytes = new byte[end - start];
+                this.buffer.get(start, nameBytes);
+                this.level.name = new String(nameBytes, StandardCharsets.UTF_8);
+            } else if (tokenIs(BACKGROUND)) {
+                expectToken("a background");
+                this.level.background = indexOfToken(BACKGROUND_BYTES);
+                if (this.level.background < 0) {
+                    throw error("unknown background, expected day, night or city");
+                }
+            } else if (tokenIs(PADDLE)) {
+                this.level.paddleSpeed = nextInt();
+                this.level.paddleWidth = nextInt();
+                if (this.level.paddleSpeed <= 0 || this.level.paddleWidth <= 0
+                        || this.level.paddleWidth > SCREEN_WIDTH) {
+                    throw error("the paddle speed and width must be positive, and the width at most "
+                            + SCREEN_WIDTH);
+                }
+            } else if (tokenIs(REMOVE)) {
+                this.level.blocksToRemove = nextInt();
+                if (this.level.blocksToRemove < 0) {
+                    throw error("the number of blocks to remove must not be negative");
+                }
+            } else {
+                throw error("unknown keyword");
+            }
+        }
+
+        private IOException error(String message) {
+            return new IOException(this.file + ":" + this.line + ": " + message);
+        }
+
+        private byte peek() {
+            return this.buffer.get(this.position);
+        }
+
+        private static boolean isSpace(byte b) {
+            return b == ' ' || b == '\t' || b == '\r';
+        }
+
+        private boolean isComment() {
+            return this.buffer.get(this.tokenStart) == '#';
+        }
+
+        private void skipSpaces() {
+            while (this.position < this.limit && isSpace(peek())) {
+                this.position++;
+            }
+        }
+
+        // skips the rest of the line
+        private void skipLine() {
+            while (this.position < this.limit && peek() != '\n') {
+                this.position++;
+            }
+            if (this.position < this.limit) {
+                this.position++;
+                this.line++;
+            }
+        }
+
+        // reads the next token of the line, returns false if the line ended
+        private boolean nextToken() {
+            skipSpaces();
+            if (this.position >= this.limit || peek() == '\n') {
+                return false;
+            }
+            this.tokenStart = this.position;
+            while (this.position < this.limit && !isSpace(peek()) && peek() != '\n') {
+                this.position++;
+            }
+            this.tokenEnd = this.position;
+            return true;
+        }
+
+        private void expectToken(String what) throws IOException {
+            if (!nextToken()) {
+                throw error("expected " + what);
+            }
+        }
+
+        private boolean tokenIs(byte[] word) {
+            if (this.tokenEnd - this.tokenStart != word.length) {
+                return false;
+            }
+            for (int i = 0; i < word.length; i++) {
+                byte b = this.buffer.get(this.tokenStart + i);
+                if (b != word[i] && Character.toLowerCase(b) != Character.toLowerCase(word[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int indexOfToken(byte[][] words) {
+            for (int i = 0; i < words.length; i++) {
+                if (tokenIs(words[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private int nextInt() throws IOException {
+            double value = nextNumber();
+            if (value != Math.rint(value) || Math.abs(value) > Integer.MAX_VALUE) {
+                throw error("expected a whole number");
+            }
+            return (int) value;
+        }
+
+        // parses a decimal number: the digits are read into a long, which is
+        // divided once by a power of ten, so the result is rounded correctly
+        private double nextNumber() throws IOException {
+            expectToken("a number");
+            int i = this.tokenStart;
+            boolean negative = false;
+            byte b = this.buffer.get(i);
+            if (b == '-' || b == '+') {
+                negative = b == '-';
+                i++;
+            }
+            long digits = 0;
+            int digitCount = 0;
+            int fractionDigits = 0;
+            boolean fraction = false;
+            for (; i < this.tokenEnd; i++) {
+                b = this.buffer.get(i);
+                if (b == '.' && !fraction) {
+                    fraction = true;
+                } else if (b >= '0' && b <= '9') {
+                    if (digitCount == MAX_DIGITS) {
+                        throw error("the number has too many digits");
+                    }
+                    digits = digits * 10 + (b - '0');
+                    digitCount++;
+                    if (fraction) {
+                        fractionDigits++;
+                    }
+                } else {
+                    throw error("expected a number");
+                }
+            }
+            if (digitCount == 0) {
+                throw error("expected a number");
+            }
+            double value = digits / POWERS_OF_TEN[fractionDigits];
+            return negative ? -value : value;
+        }
+
+        private int nextColor() throws IOException {
+            expectToken("a color");
+            if (this.buffer.get(this.tokenStart) == '#') {
+                if (this.tokenEnd - this.tokenStart != 7) {
+                    throw error("expected a color as #rrggbb");
+                }
+                int rgb = 0;
+                for (int i = this.tokenStart + 1; i < this.tokenEnd; i++) {
+                    int digit = Character.digit(this.buffer.get(i), 16);
+                    if (digit < 0) {
+                        throw error("expected a color as #rrggbb");
+                    }
+                    rgb = rgb * 16 + digit;
+                }
+                return rgb;
+            }
+            int index = indexOfToken(COLOR_BYTES);
+            if (index < 0) {
+                throw error("unknown color");
+            }
+            return COLORS[index].getRGB() & 0xFFFFFF;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package levels;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * The LevelCompiler class converts a level file to the binary format, which
+ * is smaller and loads faster than the text format, to ship the levels with
+ * the game.
+ *
+ * @author Eitan Maimoni
+ * @version 19.0.2
+ * @since 2023-06-01
+ */
+public class LevelCompiler {
+    /**
+     * Validates the level file given as the first argument, and writes it in
+     * the binary format to the file given as the second argument.
+     *
+     * @param args the input arguments
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: LevelCompiler LEVEL_FILE BINARY_FILE");
+            return;
+        }
+        try {
+            FileLevel level = FileLevel.load(Paths.get(args[0]));
+            level.writeBinary(Paths.get(args[1]));
+            System.out.println(level.levelName() + ": " + level.getBlockCount() + " blocks");
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+}
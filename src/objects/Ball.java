@@ -2,30 +2,41 @@ package objects;
 
 import biuoop.DrawSurface;
 import game.GameLevel;
-import geometry.Line;
 import geometry.Point;
-import physics.Collidable;
-import physics.CollisionInfo;
+import physics.CollisionLayer;
 import physics.GameEnvironment;
 import physics.Velocity;
 import sprites.Sprite;
 
-import java.awt.Color;
-
 /**
  * The Ball class represents a 2D ball object.
- * 
+ * While the ball is in a BallSystem (like the one of a game), its state is
+ * kept in the system, and the ball is a handle to its slot in the system.
+ * A new ball, or a ball removed from its system, keeps its few values in the
+ * handle itself, so creating and losing a ball don't allocate a system. A
+ * ball that is stepped or drawn on its own moves into a system of its own,
+ * which is created the first time it is needed and kept for the next times.
+ *
  * @author Eitan Maimoni
  * @version 19.0.2
  * @since 2023-06-01
  */
 public class Ball implements Sprite {
-    private Point point;
-    private final int radius;
-    private final java.awt.Color color;
-    private Velocity velocity = null;
+    // the state of the ball while it is in no system
+    private double x;
+    private double y;
+    private double dx;
+    private double dy;
+    private boolean hasVelocity;
+    private int radius;
+    private java.awt.Color color;
+    private int collisionMask;
     private GameEnvironment environment;
-    private static final int Y_AXIS_FIX = 600;
+    // the system the ball is stepped and drawn in on its own, or null
+    private BallSystem own;
+    // the system holding the state of the ball, or null if it is in none
+    private BallSystem system;
+    private int index;
 
     /**
      * Constructs a new Ball with the given position, radius, and color.
@@ -35,9 +46,7 @@ public class Ball implements Sprite {
      * @param color  the color of the ball
      */
     public Ball(Point point, int radius, java.awt.Color color) {
-        this.point = point;
-        this.radius = radius;
-        this.color = color;
+        this(point.getX(), point.getY(), radius, color);
     }
 
     /**
@@ -49,9 +58,90 @@ public class Ball implements Sprite {
      * @param color  the color of the ball
      */
     public Ball(double x, double y, int radius, java.awt.Color color) {
-        this.point = new Point(x, y);
+        this.x = x;
+        this.y = y;
         this.radius = radius;
         this.color = color;
+        this.collisionMask = CollisionLayer.ALL;
+    }
+
+    /**
+     * Attaches the ball to its slot in a system.
+     *
+     * @param ballSystem the system holding the state of the ball
+     * @param slot       the index of the ball in the system
+     */
+    void attach(BallSystem ballSystem, int slot) {
+        this.system = ballSystem;
+        this.index = slot;
+    }
+
+    /**
+     * Returns the system holding the state of the ball.
+     *
+     * @return the ball system, or null if the ball is in no system
+     */
+    BallSystem system() {
+        return this.system;
+    }
+
+    /**
+     * Moves the state of the ball, which is in no system, into a new slot of
+     * the given system.
+     *
+     * @param target the system to move the ball into
+     */
+    void moveInto(BallSystem target) {
+        target.add(this, this.x, this.y, this.radius, this.color);
+        target.setCollisionMask(this.index, this.collisionMask);
+        target.setEnvironment(this.index, this.environment);
+        target.setVelocity(this.index, this.dx, this.dy);
+        if (!this.hasVelocity) {
+            target.clearVelocity(this.index);
+        }
+        this.environment = null;
+        this.color = null;
+    }
+
+    /**
+     * Keeps the state of the ball from its slot in the given system in the
+     * handle, and leaves the system.
+     *
+     * @param from the system the ball leaves
+     * @param slot the index of the ball in the system
+     */
+    void detach(BallSystem from, int slot) {
+        this.x = from.getX(slot);
+        this.y = from.getY(slot);
+        this.dx = from.getDX(slot);
+        this.dy = from.getDY(slot);
+        this.hasVelocity = from.hasVelocity(slot);
+        this.radius = from.getRadius(slot);
+        this.color = from.getColor(slot);
+        this.collisionMask = from.getCollisionMask(slot);
+        this.environment = from.getEnvironment(slot);
+        this.system = null;
+    }
+
+    // returns the system of the ball, moving a ball that is in no system into
+    // its own
+    private BallSystem attached() {
+        if (this.system == null) {
+            if (this.own == null) {
+                this.own = new BallSystem();
+            }
+            this.own.add(this);
+        }
+        return this.system;
+    }
+
+    /**
+     * Returns the index of the ball in its system.
+     *
+     * @return the index of the ball
+     */
+    int index() {
+        return this.index;
     }
 
     /**
@@ -60,7 +150,33 @@ public class Ball implements Sprite {
      * @param environment the environment
      */
     public void setEnvironment(GameEnvironment environment) {
-        this.environment = environment;
+        if (this.system == null) {
+            this.environment = environment;
+        } else {
+            this.system.setEnvironment(this.index, environment);
+        }
+    }
+
+    /**
+     * Sets the collision layers the ball collides with.
+     *
+     * @param mask a bitmask of CollisionLayer constants
+     */
+    public void setCollisionMask(int mask) {
+        if (this.system == null) {
+            this.collisionMask = mask;
+        } else {
+            this.system.setCollisionMask(this.index, mask);
+        }
+    }
+
+    /**
+     * Returns the collision layers the ball collides with.
+     *
+     * @return a bitmask of CollisionLayer constants
+     */
+    public int getCollisionMask() {
+        return this.system == null ? this.collisionMask : this.system.getCollisionMask(this.index);
     }
 
     /**
@@ -69,7 +185,7 @@ public class Ball implements Sprite {
      * @return the x coordinate of the center of the ball
      */
     public int getX() {
-        return (int) this.point.getX();
+        return (int) (this.system == null ? this.x : this.system.getX(this.index));
     }
 
     /**
@@ -78,7 +194,7 @@ public class Ball implements Sprite {
      * @return the y coordinate of the center of the ball
      */
     public int getY() {
-        return (int) this.point.getY();
+        return (int) (this.system == null ? this.y : this.system.getY(this.index));
     }
 
     /**
@@ -87,7 +203,7 @@ public class Ball implements Sprite {
      * @return the radius of the ball
      */
     public int getSize() {
-        return (int) this.radius;
+        return this.system == null ? this.radius : this.system.getRadius(this.index);
     }
 
     /**
@@ -96,7 +212,7 @@ public class Ball implements Sprite {
      * @return the color of the ball
      */
     public java.awt.Color getColor() {
-        return this.color;
+        return this.system == null ? this.color : this.system.getColor(this.index);
     }
 
     /**
@@ -105,7 +221,13 @@ public class Ball implements Sprite {
      * @param v the velocity to set
      */
     public void setVelocity(Velocity v) {
-        this.velocity = v;
+        if (v != null) {
+            setVelocity(v.getDX(), v.getDY());
+        } else if (this.system == null) {
+            this.hasVelocity = false;
+        } else {
+            this.system.clearVelocity(this.index);
+        }
     }
 
     /**
@@ -115,16 +237,44 @@ public class Ball implements Sprite {
      * @param dy the y component of the velocity
      */
     public void setVelocity(double dx, double dy) {
-        this.velocity = new Velocity(dx, dy);
+        if (this.system == null) {
+            this.dx = dx;
+            this.dy = dy;
+            this.hasVelocity = true;
+        } else {
+            this.system.setVelocity(this.index, dx, dy);
+        }
     }
 
     /**
      * Returns the velocity of the ball.
      *
-     * @return the velocity of the ball
+     * @return the velocity of the ball, or null if it has no velocity
      */
     public Velocity getVelocity() {
-        return this.velocity;
+        boolean moves = this.system == null ? this.hasVelocity : this.system.hasVelocity(this.index);
+        if (!moves) {
+            return null;
+        }
+        return new Velocity(getDX(), getDY());
+    }
+
+    /**
+     * Returns the change in position of the ball on the x-axis.
+     *
+     * @return the x component of the velocity of the ball
+     */
+    public double getDX() {
+        return this.system == null ? this.dx : this.system.getDX(this.index);
+    }
+
+    /**
+     * Returns the change in position of the ball on the y-axis.
+     *
+     * @return the y component of the velocity of the ball
+     */
+    public double getDY() {
+        return this.system == null ? this.dy : this.system.getDY(this.index);
     }
 
     /**
@@ -133,7 +283,7 @@ public class Ball implements Sprite {
      * @param g the g
      */
     public void addToGame(GameLevel g) {
-        g.addSprite(this);
+        g.addBall(this);
     }
 
     /**
@@ -143,27 +293,27 @@ public class Ball implements Sprite {
      * @param gameLevel the game to add the block to
      */
     public void removeFromGame(GameLevel gameLevel) {
-        gameLevel.removeSprite(this);
+        gameLevel.removeBall(this);
     }
 
     @Override
     public void drawOn(DrawSurface d) {
-        int x = this.getX();
-        int y = this.getY();
-        int r = this.getSize();
-        // draw the ball as a filled circle with the given color
-        // *600 - y because the original board y-axis is opposite
-        d.setColor(Color.black);
-        d.fillCircle(x, Y_AXIS_FIX - y, r + 1);
-        d.setColor(this.getColor());
-        d.fillCircle(x, Y_AXIS_FIX - y, r);
-        d.setColor(Color.red);
-        d.fillCircle(x, Y_AXIS_FIX - y, 2);
+        attached().draw(d, this.index, getX(), getY());
+    }
+
+    @Override
+    public void drawOn(DrawSurface d, double alpha) {
+        attached().drawOn(d, this.index, alpha);
     }
 
     @Override
     public void timePassed() {
-        moveOneStep();
+        timePassed(1.0);
+    }
+
+    @Override
+    public void timePassed(double dt) {
+        attached().timePassed(this.index, dt);
     }
 
     /**
@@ -172,61 +322,21 @@ public class Ball implements Sprite {
      * If the ball collides with a collidable object in its trajectory,
      * its velocity is updated accordingly.
      * Otherwise, the ball moves to its new position according to its velocity.
+     * The step works on raw coordinates and reuses the contact manifold of
+     * the ball system, so it does not allocate.
      */
     public void moveOneStep() {
-        if (velocity == null) {
-            return;
-        }
-        double dx = velocity.getDX();
-        double dy = velocity.getDY();
-        double x = this.point.getX();
-        double y = this.point.getY();
-        Point start = new Point(x, y);
-        Point end = new Point(x + dx, y + dy);
-        Line trajectory = new Line(start, end);
-        // get the closest collision point
-        CollisionInfo closest = environment.getClosestCollision(trajectory);
-        // if there is no collision, the ball moves according to its velocity
-        if (closest == null) {
-            this.point = this.getVelocity().applyToPoint(this.point);
-            return;
-        }
-        Point collisionPoint = closest.collisionPoint();
-        // checks if the collision point is on more than 1 collidables
-        java.util.List<Collidable> collidables;
-        collidables = environment.getCollidablesOnPoint(collisionPoint);
-        // if there are more than 1 collidable on the collision point
-        // we set flags and send the collision point and the
-        // collidables to special method that will change the flags if we need
-        // to change the DX or DY.
-        if (collidables.size() >= 2) {
-            boolean[] flag = { false, false };
-            boolean[] temp = { false, false };
-            for (Collidable c : collidables) {
-                if (c.className().equals("Block")) {
-                    Block block = (Block) c;
-                    temp = block.hitMultiCollidables(this, collisionPoint, this.velocity);
-                }
-                if (temp[0]) {
-                    flag[0] = true;
-                }
-                if (temp[1]) {
-                    flag[1] = true;
-                }
-            }
-            if (flag[1]) {
-                dx = -dx;
-            }
-            if (flag[0]) {
-                dy = -dy;
-            }
-            setVelocity(dx, dy);
-        } else {
-            Collidable collidable = closest.collisionObject();
-            setVelocity(collidable.hit(this, collisionPoint, this.velocity));
-            if (collidable.className().equals("Paddle")) {
-                this.point = this.getVelocity().applyToPoint(this.point);
-            }
-        }
+        moveOneStep(1.0);
+    }
+
+    /**
+     * Moves the ball by the given part of a step according to its current
+     * velocity (which is the change in position over a whole step).
+     *
+     * @param dt the part of a step to move, 1 for a whole step
+     * @see #moveOneStep()
+     */
+    public void moveOneStep(double dt) {
+        attached().moveOneStep(this.index, dt);
     }
 }
@@ -0,0 +1,953 @@
+package objects;
+
+import biuoop.DrawSurface;
+import physics.Collidable;
+import physics.CollisionLayer;
+import physics.ContactManifold;
+import physics.GameEnvironment;
+import sprites.DirtyRegions;
+import sprites.RegionSprite;
+import utils.FrameProfiler;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The BallSystem class holds the state of many balls in parallel arrays of
+ * primitives (positions, velocities, radii, colors) and moves them all in a
+ * single loop, so thousands of balls can be stepped with no per ball virtual
+ * calls and good cache locality.
+ * Every ball in the system has a Ball handle, which reads and writes its slot
+ * in the arrays. A Ball in no system keeps its state in its handle, and moves
+ * into a shared system (like the one of a GameLevel) when it is added to it.
+ * Balls removed while the system is stepping are only marked, and the arrays
+ * are compacted (keeping the order of the balls) at the end of the step.
+ * A system given a ForkJoinPool steps large numbers of balls in two phases:
+ * the collision queries of all the balls run in parallel against the
+ * environment as it is at the start of the step, and then the hits are applied
+ * serially in the order of the balls. A query made stale by an earlier hit of
+ * the step (like a removed block) is made again, so the result is exactly the
+ * same as stepping the balls one by one.
+ * The system remembers where every ball was last drawn (including balls
+ * removed since), so only the regions of the balls that moved are drawn again
+ * when rendering dirty regions.
+ * In the event-driven mode, the system predicts when every ball may next hit
+ * a static collidable (its time of impact), and a ball flying through empty
+ * space doesn't query the environment until then. It queries again when it
+ * gets there, when its velocity changes, when collidables are added, or when
+ * the collidable it was flying to is removed, and checks the moving
+ * collidables (the paddle) on every step, which only compares bounding boxes.
+ * The balls still move the same way every step, so the mode changes how often
+ * the environment is queried, but not where the balls are.
+ * A ball may resolve several collisions in a step (up to a budget, see
+ * setMaxCollisionsPerStep): after a hit it moves to just before the collision
+ * point and goes on for the rest of the step, instead of losing it. The
+ * collisions resolved and the steps that used up the budget are counted by
+ * the profiler.
+ *
+ * @author Eitan Maimoni
+ * @version 19.0.2
+ * @since 2023-06-01
+ */
+public class BallSystem implements RegionSprite {
+    private static final int INITIAL_CAPACITY = 4;
+    private static final int Y_AXIS_FIX = 600;
+    // the least number of balls that are stepped in parallel, and the number
+    // of balls every parallel task queries
+    private static final int PARALLEL_THRESHOLD = 512;
+    private static final int QUERY_CHUNK = 128;
+    // how far (in pixels, about the diagonal of the window) and for how many
+    // steps a time of impact is predicted
+    private static final double EVENT_DISTANCE = 1000;
+    private static final double MAX_EVENT_STEPS = 4096;
+    // how far (in pixels) before a collision point a ball stops when it goes
+    // on moving in the same step, so its next query doesn't start on what it hit
+    private static final double CONTACT_SKIN = 1e-3;
+    // measures nothing, for systems that are not profiled
+    private static final FrameProfiler NO_PROFILER = new FrameProfiler(0);
+    private double[] x;
+    private double[] y;
+    private double[] dx;
+    private double[] dy;
+    // the positions before the last step, for drawing in between steps
+    private double[] previousX;
+    private double[] previousY;
+    private boolean[] hasVelocity;
+    private boolean[] removed;
+    private int[] radius;
+    private int[] collisionMask;
+    // changes every time the velocity, mask or environment of a ball is set
+    private int[] version;
+    private Color[] color;
+    private GameEnvironment[] environment;
+    private Ball[] handles;
+    // the screen position every ball was last drawn at
+    private int[] drawnX;
+    private int[] drawnY;
+    private boolean[] drawn;
+    // the screen positions and radii of removed balls that were drawn
+    private int[] erased;
+    private int erasedCount;
+    private int size;
+    private int removedCount;
+    private boolean stepping;
+    private boolean eventDriven;
+    private int maxCollisions;
+    // the predicted time of impact of every ball: whether it was predicted,
+    // the steps from the prediction to it and since it was made, the
+    // collidable the ball flies to, and what it was predicted for
+    private boolean[] scheduled;
+    private double[] impactTime;
+    private double[] travel;
+    private Collidable[] eventTarget;
+    private int[] eventVersion;
+    private long[] eventAdditions;
+    private long[] eventRemovals;
+    private final ContactManifold contact;
+    private final ForkJoinPool pool;
+    private FrameProfiler profiler;
+    // the results of the parallel collision queries, by ball index
+    private ContactManifold[] manifolds;
+    private boolean[] queried;
+    private boolean[] queryHit;
+    private int[] queryVersion;
+    private long[] queryAdditions;
+    private long[] queryRemovals;
+
+    /**
+     * Constructs a new empty BallSystem, that steps the balls one by one.
+     */
+    public BallSystem() {
+        this(null);
+    }
+
+    /**
+     * Constructs a new empty BallSystem, that runs the collision queries of
+     * many balls in parallel in the given pool.
+     *
+     * @param pool the pool to run the collision queries in, or null to step
+     *             the balls one by one
+     */
+    public BallSystem(ForkJoinPool pool) {
+        this.x = new double[INITIAL_CAPACITY];
+        this.y = new double[INITIAL_CAPACITY];
+        this.dx = new double[INITIAL_CAPACITY];
+        this.dy = new double[INITIAL_CAPACITY];
+        this.previousX = new double[INITIAL_CAPACITY];
+        this.previousY = new double[INITIAL_CAPACITY];
+        this.hasVelocity = new boolean[INITIAL_CAPACITY];
+        this.removed = new boolean[INITIAL_CAPACITY];
+        this.radius = new int[INITIAL_CAPACITY];
+        this.collisionMask = new int[INITIAL_CAPACITY];
+        this.version = new int[INITIAL_CAPACITY];
+        this.color = new Color[INITIAL_CAPACITY];
+        this.environment = new GameEnvironment[INITIAL_CAPACITY];
+        this.handles = new Ball[INITIAL_CAPACITY];
+        this.drawnX = new int[INITIAL_CAPACITY];
+        this.drawnY = new int[INITIAL_CAPACITY];
+        this.drawn = new boolean[INITIAL_CAPACITY];
+        this.erased = new int[3 * INITIAL_CAPACITY];
+        this.erasedCount = 0;
+        this.size = 0;
+        this.removedCount = 0;
+        this.stepping = false;
+        this.eventDriven = false;
+        this.maxCollisions = 1;
+        this.scheduled = new boolean[INITIAL_CAPACITY];
+        this.impactTime = new double[INITIAL_CAPACITY];
+        this.travel = new double[INITIAL_CAPACITY];
+        this.eventTarget = new Collidable[INITIAL_CAPACITY];
+        this.eventVersion = new int[INITIAL_CAPACITY];
+        this.eventAdditions = new long[INITIAL_CAPACITY];
+        this.eventRemovals = new long[INITIAL_CAPACITY];
+        this.contact = new ContactManifold();
+        this.pool = pool;
+        this.profiler = NO_PROFILER;
+    }
+
+    /**
+     * Sets the profiler the collision queries and the hits of the balls are
+     * measured into.
+     *
+     * @param frameProfiler the profiler, or null to not measure the balls
+     */
+    public void setProfiler(FrameProfiler frameProfiler) {
+        this.profiler = frameProfiler == null ? NO_PROFILER : frameProfiler;
+    }
+
+    /**
+     * Sets whether the balls only query the environment when they may hit
+     * something (see the event-driven mode above), or on every step.
+     *
+     * @param enabled true for the event-driven mode, false to query on every
+     *                step
+     */
+    public void setEventDriven(boolean enabled) {
+        this.eventDriven = enabled;
+    }
+
+    /**
+     * Returns whether the balls only query the environment when they may hit
+     * something.
+     *
+     * @return true in the event-driven mode, false otherwise
+     */
+    public boolean isEventDriven() {
+        return this.eventDriven;
+    }
+
+    /**
+     * Sets how many collisions a ball may resolve in a single step.
+     * With a budget of 1, a ball that hits something stays where it was and
+     * loses the rest of the step. With a larger budget, the ball moves to just
+     * before the collision point and goes on for the rest of the step with its
+     * new velocity, hitting what it meets next (like a ball bouncing in a
+     * corner, or a fast ball hitting several blocks in one step), until the
+     * step ends or the budget is used up.
+     *
+     * @param budget the number of collisions per step, at least 1
+     */
+    public void setMaxCollisionsPerStep(int budget) {
+        this.maxCollisions = Math.max(1, budget);
+    }
+
+    /**
+     * Returns how many collisions a ball may resolve in a single step.
+     *
+     * @return the number of collisions per step
+     */
+    public int getMaxCollisionsPerStep() {
+        return this.maxCollisions;
+    }
+
+    /**
+     * Returns the number of balls in the system.
+     *
+     * @return the number of balls
+     */
+    public int size() {
+        return this.size - this.removedCount;
+    }
+
+    /**
+     * Adds a new ball to the system, and attaches its handle to it.
+     *
+     * @param ball   the handle of the ball
+     * @param bx     the x coordinate of the ball's center
+     * @param by     the y coordinate of the ball's center
+     * @param r      the radius of the ball
+     * @param c      the color of the ball
+     */
+    void add(Ball ball, double bx, double by, int r, Color c) {
+        int i = newSlot(ball);
+        this.x[i] = bx;
+        this.y[i] = by;
+        this.previousX[i] = bx;
+        this.previousY[i] = by;
+        this.dx[i] = 0;
+        this.dy[i] = 0;
+        this.hasVelocity[i] = false;
+        this.radius[i] = r;
+        this.collisionMask[i] = CollisionLayer.ALL;
+        this.color[i] = c;
+        this.environment[i] = null;
+        this.drawn[i] = false;
+        this.scheduled[i] = false;
+        this.eventTarget[i] = null;
+    }
+
+    /**
+     * Moves the given ball into this system, with all its state.
+     * If the ball is already in this system, does nothing.
+     *
+     * @param ball the ball to add
+     */
+    public void add(Ball ball) {
+        BallSystem from = ball.system();
+        if (from == this) {
+            return;
+        }
+        if (from == null) {
+            ball.moveInto(this);
+            return;
+        }
+        int j = ball.index();
+        int i = newSlot(ball);
+        copySlot(from, j, i);
+        // the ball was not drawn by this system yet
+        this.drawn[i] = false;
+        from.detach(j);
+    }
+
+    /**
+     * Removes the given ball from this system. The ball keeps its state in
+     * its handle.
+     * If the ball is not in this system, does nothing.
+     *
+     * @param ball the ball to remove
+     */
+    public void remove(Ball ball) {
+        if (ball.system() != this || this.removed[ball.index()]) {
+            return;
+        }
+        this.removed[ball.index()] = true;
+        this.removedCount++;
+        if (!this.stepping) {
+            compact();
+        }
+    }
+
+    private int newSlot(Ball ball) {
+        if (this.size == this.x.length) {
+            grow();
+        }
+        int i = this.size++;
+        this.removed[i] = false;
+        this.handles[i] = ball;
+        ball.attach(this, i);
+        return i;
+    }
+
+    private void grow() {
+        int capacity = this.x.length * 2;
+        this.x = Arrays.copyOf(this.x, capacity);
+        this.y = Arrays.copyOf(this.y, capacity);
+        this.dx = Arrays.copyOf(this.dx, capacity);
+        this.dy = Arrays.copyOf(this.dy, capacity);
+        this.previousX = Arrays.copyOf(this.previousX, capacity);
+        this.previousY = Arrays.copyOf(this.previousY, capacity);
+        this.hasVelocity = Arrays.copyOf(this.hasVelocity, capacity);
+        this.removed = Arrays.copyOf(this.removed, capacity);
+        this.radius = Arrays.copyOf(this.radius, capacity);
+        this.collisionMask = Arrays.copyOf(this.collisionMask, capacity);
+        this.version = Arrays.copyOf(this.version, capacity);
+        this.color = Arrays.copyOf(this.color, capacity);
+        this.environment = Arrays.copyOf(this.environment, capacity);
+        this.handles = Arrays.copyOf(this.handles, capacity);
+        this.drawnX = Arrays.copyOf(this.drawnX, capacity);
+        this.drawnY = Arrays.copyOf(this.drawnY, capacity);
+        this.drawn = Arrays.copyOf(this.drawn, capacity);
+        this.scheduled = Arrays.copyOf(this.scheduled, capacity);
+        this.impactTime = Arrays.copyOf(this.impactTime, capacity);
+        this.travel = Arrays.copyOf(this.travel, capacity);
+        this.eventTarget = Arrays.copyOf(this.eventTarget, capacity);
+        this.eventVersion = Arrays.copyOf(this.eventVersion, capacity);
+        this.eventAdditions = Arrays.copyOf(this.eventAdditions, capacity);
+        this.eventRemovals = Arrays.copyOf(this.eventRemovals, capacity);
+    }
+
+    private void copySlot(BallSystem from, int j, int i) {
+        this.x[i] = from.x[j];
+        this.y[i] = from.y[j];
+        this.dx[i] = from.dx[j];
+        this.dy[i] = from.dy[j];
+        this.previousX[i] = from.previousX[j];
+        this.previousY[i] = from.previousY[j];
+        this.hasVelocity[i] = from.hasVelocity[j];
+        this.radius[i] = from.radius[j];
+        this.collisionMask[i] = from.collisionMask[j];
+        this.version[i] = from.version[j] + 1;
+        this.color[i] = from.color[j];
+        this.environment[i] = from.environment[j];
+        this.drawnX[i] = from.drawnX[j];
+        this.drawnY[i] = from.drawnY[j];
+        this.drawn[i] = from.drawn[j];
+        // the time of impact is predicted again in the new slot
+        this.scheduled[i] = false;
+        this.eventTarget[i] = null;
+    }
+
+    // marks the slot of a ball that moved to another system as removed
+    private void detach(int j) {
+        this.handles[j] = null;
+        if (!this.removed[j]) {
+            this.removed[j] = true;
+            this.removedCount++;
+        }
+        if (!this.stepping) {
+            compact();
+        }
+    }
+
+    // removes the slots marked as removed, keeping the order of the others
+    private void compact() {
+        int j = 0;
+        for (int i = 0; i < this.size; i++) {
+            if (this.removed[i]) {
+                if (this.drawn[i]) {
+                    erase(i);
+                }
+                Ball ball = this.handles[i];
+                if (ball != null && ball.system() == this) {
+                    // the removed ball keeps its state in its handle
+                    ball.detach(this, i);
+                }
+                continue;
+            }
+            if (i != j) {
+                copySlot(this, i, j);
+                this.handles[j] = this.handles[i];
+                this.handles[j].attach(this, j);
+            }
+            this.removed[j] = false;
+            j++;
+        }
+        for (int i = j; i < this.size; i++) {
+            this.handles[i] = null;
+            this.color[i] = null;
+            this.environment[i] = null;
+            this.eventTarget[i] = null;
+            this.removed[i] = false;
+        }
+        this.size = j;
+        this.removedCount = 0;
+    }
+
+    // keeps where a removed ball was drawn, to draw over it
+    private void erase(int i) {
+        if (3 * this.erasedCount + 3 > this.erased.length) {
+            this.erased = Arrays.copyOf(this.erased, this.erased.length * 2);
+        }
+        int k = 3 * this.erasedCount++;
+        this.erased[k] = this.drawnX[i];
+        this.erased[k + 1] = this.drawnY[i];
+        this.erased[k + 2] = this.radius[i];
+    }
+
+    double getX(int i) {
+        return this.x[i];
+    }
+
+    double getY(int i) {
+        return this.y[i];
+    }
+
+    double getDX(int i) {
+        return this.dx[i];
+    }
+
+    double getDY(int i) {
+        return this.dy[i];
+    }
+
+    boolean hasVelocity(int i) {
+        return this.hasVelocity[i];
+    }
+
+    int getRadius(int i) {
+        return this.radius[i];
+    }
+
+    Color getColor(int i) {
+        return this.color[i];
+    }
+
+    int getCollisionMask(int i) {
+        return this.collisionMask[i];
+    }
+
+    GameEnvironment getEnvironment(int i) {
+        return this.environment[i];
+    }
+
+    void setCollisionMask(int i, int mask) {
+        this.version[i]++;
+        this.collisionMask[i] = mask;
+    }
+
+    void setEnvironment(int i, GameEnvironment env) {
+        this.version[i]++;
+        this.environment[i] = env;
+    }
+
+    void setVelocity(int i, double vx, double vy) {
+        this.version[i]++;
+        this.hasVelocity[i] = true;
+        this.dx[i] = vx;
+        this.dy[i] = vy;
+    }
+
+    void clearVelocity(int i) {
+        this.version[i]++;
+        this.hasVelocity[i] = false;
+    }
+
+    @Override
+    public void drawOn(DrawSurface d) {
+        for (int i = 0; i < this.size; i++) {
+            if (!this.removed[i]) {
+                draw(d, i, (int) this.x[i], (int) this.y[i]);
+            }
+        }
+        this.erasedCount = 0;
+    }
+
+    @Override
+    public void drawOn(DrawSurface d, double alpha) {
+        for (int i = 0; i < this.size; i++) {
+            if (!this.removed[i]) {
+                drawOn(d, i, alpha);
+            }
+        }
+        this.erasedCount = 0;
+    }
+
+    @Override
+    public void addDirtyRegions(DirtyRegions regions, double alpha) {
+        for (int i = 0; i < this.size; i++) {
+            if (this.removed[i]) {
+                continue;
+            }
+            int bx = (int) (this.previousX[i] + (this.x[i] - this.previousX[i]) * alpha);
+            int by = Y_AXIS_FIX - (int) (this.previousY[i] + (this.y[i] - this.previousY[i]) * alpha);
+            if (!this.drawn[i]) {
+                addRegion(regions, bx, by, bx, by, this.radius[i]);
+            } else if (bx != this.drawnX[i] || by != Y_AXIS_FIX - this.drawnY[i]) {
+                // the ball moves a few pixels, so the old and new positions
+                // are marked as one region
+                addRegion(regions, this.drawnX[i], Y_AXIS_FIX - this.drawnY[i], bx, by, this.radius[i]);
+            }
+        }
+        addErasedRegions(regions);
+    }
+
+    @Override
+    public void addRegion(DirtyRegions regions) {
+        for (int i = 0; i < this.size; i++) {
+            if (!this.removed[i]) {
+                int bx = this.drawn[i] ? this.drawnX[i] : (int) this.x[i];
+                int by = Y_AXIS_FIX - (this.drawn[i] ? this.drawnY[i] : (int) this.y[i]);
+                addRegion(regions, bx, by, bx, by, this.radius[i]);
+            }
+        }
+        addErasedRegions(regions);
+    }
+
+    @Override
+    public boolean intersects(java.awt.Rectangle area) {
+        return true;
+    }
+
+    private void addErasedRegions(DirtyRegions regions) {
+        for (int k = 0; k < 3 * this.erasedCount; k += 3) {
+            int bx = this.erased[k];
+            int by = Y_AXIS_FIX - this.erased[k + 1];
+            addRegion(regions, bx, by, bx, by, this.erased[k + 2]);
+        }
+    }
+
+    // marks the region covering a ball of the given radius (and its outline)
+    // drawn at both the given screen positions
+    private static void addRegion(DirtyRegions regions, int x1, int y1, int x2, int y2, int r) {
+        int reach = r + 1;
+        int left = Math.min(x1, x2) - reach;
+        int top = Math.min(y1, y2) - reach;
+        regions.add(left, top, Math.max(x1, x2) + reach + 1 - left, Math.max(y1, y2) + reach + 1 - top);
+    }
+
+    /**
+     * Draws a single ball in between its previous and current positions.
+     *
+     * @param d     the DrawSurface to draw on
+     * @param i     the index of the ball
+     * @param alpha how far between the previous position (0) and the
+     *              current position (1) to draw the ball
+     */
+    void drawOn(DrawSurface d, int i, double alpha) {
+        double drawX = this.previousX[i] + (this.x[i] - this.previousX[i]) * alpha;
+        double drawY = this.previousY[i] + (this.y[i] - this.previousY[i]) * alpha;
+        draw(d, i, (int) drawX, (int) drawY);
+    }
+
+    /**
+     * Draws a single ball at the given position.
+     *
+     * @param d  the DrawSurface to draw on
+     * @param i  the index of the ball
+     * @param bx the x coordinate to draw the ball's center at
+     * @param by the y coordinate to draw the ball's center at
+     */
+    void draw(DrawSurface d, int i, int bx, int by) {
+        int r = this.radius[i];
+        this.drawnX[i] = bx;
+        this.drawnY[i] = by;
+        this.drawn[i] = true;
+        // draw the ball as a filled circle with the given color
+        // *600 - y because the original board y-axis is opposite
+        d.setColor(Color.black);
+        d.fillCircle(bx, Y_AXIS_FIX - by, r + 1);
+        d.setColor(this.color[i]);
+        d.fillCircle(bx, Y_AXIS_FIX - by, r);
+        d.setColor(Color.red);
+        d.fillCircle(bx, Y_AXIS_FIX - by, 2);
+    }
+
+    @Override
+    public void timePassed() {
+        timePassed(1.0);
+    }
+
+    @Override
+    public void timePassed(double dt) {
+        // balls added during the step are stepped from the next step
+        int count = this.size;
+        this.stepping = true;
+        if (this.pool != null && count >= PARALLEL_THRESHOLD) {
+            ensureQueryCapacity(count);
+            long start = this.profiler.start();
+            this.pool.invoke(new QueryTask(0, count, dt));
+            this.profiler.stop(FrameProfiler.COLLISION, start);
+            for (int i = 0; i < count; i++) {
+                if (!this.removed[i]) {
+                    this.previousX[i] = this.x[i];
+                    this.previousY[i] = this.y[i];
+                    commitStep(i, dt);
+                }
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                if (!this.removed[i]) {
+                    this.previousX[i] = this.x[i];
+                    this.previousY[i] = this.y[i];
+                    step(i, dt);
+                }
+            }
+        }
+        this.stepping = false;
+        if (this.removedCount > 0) {
+            compact();
+        }
+    }
+
+    /**
+     * Notifies a single ball that the given amount of time has passed.
+     *
+     * @param i  the index of the ball
+     * @param dt the part of a step to move, 1 for a whole step
+     */
+    void timePassed(int i, double dt) {
+        this.previousX[i] = this.x[i];
+        this.previousY[i] = this.y[i];
+        moveOneStep(i, dt);
+    }
+
+    /**
+     * Moves a single ball by the given part of a step according to its
+     * current velocity, like Ball.moveOneStep.
+     * The step reuses the contact manifold of the system, so it does not
+     * allocate. Like a step of the whole system, a ball removed by a hit
+     * listener is only marked, and the arrays are compacted after the step.
+     *
+     * @param i  the index of the ball
+     * @param dt the part of a step to move, 1 for a whole step
+     */
+    void moveOneStep(int i, double dt) {
+        // the ball may be stepped by a listener during a step of the system,
+        // which compacts the arrays itself when it ends
+        boolean outer = this.stepping;
+        this.stepping = true;
+        step(i, dt);
+        this.stepping = outer;
+        if (!outer && this.removedCount > 0) {
+            compact();
+        }
+    }
+
+    // moves a single ball by the given part of a step, while the system is
+    // stepping
+    private void step(int i, double dt) {
+        if (!this.hasVelocity[i]) {
+            return;
+        }
+        // get the closest collision point, and everything touching it
+        ContactManifold closest = this.contact;
+        resolve(i, dt, closest, findContact(i, dt, closest));
+    }
+
+    // finds the closest collision of the ball in the given part of a step,
+    // measured by the profiler
+    private boolean findContact(int i, double dt, ContactManifold closest) {
+        long start = this.profiler.start();
+        boolean hit = searchContact(i, dt, closest);
+        this.profiler.stop(FrameProfiler.COLLISION, start);
+        return hit;
+    }
+
+    // finds the closest collision of the ball in the given part of a step.
+    // Only reads the environment and writes the ball's own slot, so the
+    // queries of different balls may run in parallel
+    private boolean searchContact(int i, double dt, ContactManifold closest) {
+        double stepX = this.dx[i] * dt;
+        double stepY = this.dy[i] * dt;
+        return !isClearStep(i, dt, closest) && this.environment[i].findClosestContact(this.x[i], this.y[i],
+                this.x[i] + stepX, this.y[i] + stepY, closest, this.collisionMask[i]);
+    }
+
+    // checks, in the event-driven mode, if the ball surely hits nothing in the
+    // step, because it is before its time of impact and not near a moving
+    // collidable. The time of impact is predicted again if it is not valid
+    private boolean isClearStep(int i, double dt, ContactManifold scratch) {
+        if (!this.eventDriven || (this.dx[i] == 0 && this.dy[i] == 0)) {
+            return false;
+        }
+        GameEnvironment env = this.environment[i];
+        if (!isEventValid(i, dt, env)) {
+            schedule(i, env, scratch);
+        }
+        if (this.travel[i] + dt >= this.impactTime[i]) {
+            return false;
+        }
+        double stepX = this.dx[i] * dt;
+        double stepY = this.dy[i] * dt;
+        // the paddle may move into the path of the ball on any step
+        return !env.isNearMovingCollidable(this.x[i], this.y[i], this.x[i] + stepX, this.y[i] + stepY,
+                this.collisionMask[i]);
+    }
+
+    // the time of impact is valid if it was predicted for the current
+    // velocity, mask and environment, nothing was added to the environment
+    // since, and the collidable the ball flies to was not removed (removing
+    // anything else only makes the time of impact later). A ball that passed
+    // its time of impact without hitting anything, or that flies to nothing
+    // and reached the end of the prediction, predicts again
+    private boolean isEventValid(int i, double dt, GameEnvironment env) {
+        if (!this.scheduled[i] || this.eventVersion[i] != this.version[i]
+                || this.eventAdditions[i] != env.getAdditionCount()
+                || this.travel[i] > this.impactTime[i]) {
+            return false;
+        }
+        if (this.eventTarget[i] == null) {
+            return this.travel[i] + dt < this.impactTime[i];
+        }
+        if (this.eventRemovals[i] != env.getRemovalCount()) {
+            if (!env.contains(this.eventTarget[i])) {
+                return false;
+            }
+            this.eventRemovals[i] = env.getRemovalCount();
+        }
+        return true;
+    }
+
+    // predicts the time of impact of the ball along its velocity
+    private void schedule(int i, GameEnvironment env, ContactManifold scratch) {
+        double speed = Math.sqrt(this.dx[i] * this.dx[i] + this.dy[i] * this.dy[i]);
+        double steps = Math.min(MAX_EVENT_STEPS, EVENT_DISTANCE / speed);
+        double t = env.timeOfImpact(this.x[i], this.y[i], this.x[i] + this.dx[i] * steps,
+                this.y[i] + this.dy[i] * steps, scratch, this.collisionMask[i]);
+        this.scheduled[i] = true;
+        this.travel[i] = 0;
+        this.eventVersion[i] = this.version[i];
+        this.eventAdditions[i] = env.getAdditionCount();
+        this.eventRemovals[i] = env.getRemovalCount();
+        if (t > 1) {
+            this.impactTime[i] = steps;
+            this.eventTarget[i] = null;
+        } else {
+            this.impactTime[i] = t * steps;
+            this.eventTarget[i] = scratch.collisionObject();
+        }
+    }
+
+    private void ensureQueryCapacity(int count) {
+        if (this.manifolds != null && this.manifolds.length >= count) {
+            return;
+        }
+        int capacity = Math.max(count, this.x.length);
+        int from = this.manifolds == null ? 0 : this.manifolds.length;
+        this.manifolds = this.manifolds == null ? new ContactManifold[capacity]
+                : Arrays.copyOf(this.manifolds, capacity);
+        for (int i = from; i < capacity; i++) {
+            this.manifolds[i] = new ContactManifold();
+        }
+        this.queried = new boolean[capacity];
+        this.queryHit = new boolean[capacity];
+        this.queryVersion = new int[capacity];
+        this.queryAdditions = new long[capacity];
+        this.queryRemovals = new long[capacity];
+    }
+
+    // the read-only part of a step, run in parallel: finds the collision of
+    // the ball against the environment as it is at the start of the step
+    private void query(int i, double dt) {
+        this.queried[i] = !this.removed[i] && this.hasVelocity[i];
+        if (!this.queried[i]) {
+            return;
+        }
+        GameEnvironment env = this.environment[i];
+        this.queryVersion[i] = this.version[i];
+        this.queryAdditions[i] = env.getAdditionCount();
+        this.queryRemovals[i] = env.getRemovalCount();
+        this.queryHit[i] = searchContact(i, dt, this.manifolds[i]);
+    }
+
+    // the serial part of a step: uses the collision found in parallel if it is
+    // still what a serial step would find, otherwise finds it again, and then
+    // applies the hits in the order of the balls
+    private void commitStep(int i, double dt) {
+        if (!this.hasVelocity[i]) {
+            return;
+        }
+        ContactManifold closest = this.manifolds[i];
+        boolean hit = this.queryHit[i];
+        if (!isQueryValid(i)) {
+            hit = findContact(i, dt, closest);
+        }
+        resolve(i, dt, closest, hit);
+    }
+
+    // the collision found in parallel is still valid if the ball did not
+    // change since (the position only changes in the ball's own step), nothing
+    // was added to the environment, and none of the contacts was removed
+    // (removing anything else can't change the closest collision)
+    private boolean isQueryValid(int i) {
+        if (!this.queried[i] || this.queryVersion[i] != this.version[i]) {
+            return false;
+        }
+        GameEnvironment env = this.environment[i];
+        if (env.getAdditionCount() != this.queryAdditions[i]) {
+            return false;
+        }
+        if (env.getRemovalCount() != this.queryRemovals[i] && this.queryHit[i]) {
+            ContactManifold closest = this.manifolds[i];
+            for (int k = 0; k < closest.size(); k++) {
+                if (!env.contains(closest.contact(k))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // applies the collision found for the ball: moves it if nothing was hit,
+    // otherwise hits the collidables and sets its new velocity. While the
+    // collision budget lasts, the ball then moves to just before the collision
+    // point and goes on for the rest of the step, finding its next collision
+    private void resolve(int i, double dt, ContactManifold closest, boolean hit) {
+        Ball hitter = this.handles[i];
+        double remaining = dt;
+        int collisions = 0;
+        boolean found = hit;
+        while (found) {
+            collisions++;
+            boolean last = collisions >= this.maxCollisions;
+            if (!last) {
+                remaining -= approach(i, remaining, closest);
+            }
+            boolean stays = hitContacts(hitter, i, remaining, closest);
+            // the hit may remove the ball, or stop it
+            boolean goesOn = stays && this.handles[i] == hitter && !this.removed[i] && this.hasVelocity[i];
+            if (!goesOn || last || remaining <= 0) {
+                this.profiler.count(FrameProfiler.COLLISIONS, collisions);
+                if (goesOn && last && remaining > 0) {
+                    this.profiler.count(FrameProfiler.EXHAUSTED_STEPS, 1);
+                }
+                return;
+            }
+            found = findContact(i, remaining, closest);
+        }
+        // if there is no collision, the ball moves according to its velocity
+        this.x[i] = this.x[i] + this.dx[i] * remaining;
+        this.y[i] = this.y[i] + this.dy[i] * remaining;
+        this.travel[i] += remaining;
+        if (collisions > 0) {
+            this.profiler.count(FrameProfiler.COLLISIONS, collisions);
+        }
+    }
+
+    // moves the ball to just before the collision point, and returns the part
+    // of the step it took
+    private double approach(int i, double dt, ContactManifold closest) {
+        double stepX = this.dx[i] * dt;
+        double stepY = this.dy[i] * dt;
+        double length = Math.sqrt(stepX * stepX + stepY * stepY);
+        if (length == 0) {
+            return 0;
+        }
+        double toX = closest.getX() - this.x[i];
+        double toY = closest.getY() - this.y[i];
+        double part = Math.max(0, Math.min(1, (Math.sqrt(toX * toX + toY * toY) - CONTACT_SKIN) / length));
+        this.x[i] = this.x[i] + stepX * part;
+        this.y[i] = this.y[i] + stepY * part;
+        return dt * part;
+    }
+
+    // hits the collidables of the collision, and sets the new velocity of the
+    // ball. Returns false if the ball hit a paddle, and so moved out of it for
+    // the given part of a step, true if it stays at the collision
+    private boolean hitContacts(Ball hitter, int i, double dt, ContactManifold closest) {
+        double startDX = this.dx[i];
+        double startDY = this.dy[i];
+        // the ball (or what it hit) may change, the time of impact is
+        // predicted again
+        this.scheduled[i] = false;
+        long start = this.profiler.start();
+        double collisionX = closest.getX();
+        double collisionY = closest.getY();
+        boolean stays = true;
+        // if there are more than 1 blocks on the collision point, each of them
+        // is hit, and the ball is reflected on every axis one of them reflects
+        if (closest.countContacts(CollisionLayer.BLOCK) >= 2) {
+            boolean reflectX = false;
+            boolean reflectY = false;
+            for (int k = 0; k < closest.size(); k++) {
+                if ((closest.layer(k) & CollisionLayer.BLOCK) != 0) {
+                    // the velocity each block sets is overridden, the hit
+                    // is resolved by the normals of all the blocks together
+                    closest.contact(k).hit(hitter, collisionX, collisionY);
+                    this.dx[i] = startDX;
+                    this.dy[i] = startDY;
+                    reflectX = reflectX || closest.normalX(k) != 0;
+                    reflectY = reflectY || closest.normalY(k) != 0;
+                }
+            }
+            setVelocity(i, reflectX ? -startDX : startDX, reflectY ? -startDY : startDY);
+        } else {
+            closest.collisionObject().hit(hitter, collisionX, collisionY);
+            if ((closest.collisionLayer() & CollisionLayer.PADDLE) != 0) {
+                this.x[i] = this.x[i] + this.dx[i] * dt;
+                this.y[i] = this.y[i] + this.dy[i] * dt;
+                stays = false;
+            }
+        }
+        this.profiler.stop(FrameProfiler.HITS, start);
+        return stays;
+    }
+
+    /**
+     * Runs the collision queries of a range of balls, splitting it between
+     * the threads of the pool.
+     */
+    private class QueryTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+        private final double dt;
+
+        /**
+         * Constructs a new QueryTask for the balls in [from, to).
+         *
+         * @param from the index of the first ball
+         * @param to   the index after the last ball
+         * @param dt   the part of a step to move, 1 for a whole step
+         */
+        QueryTask(int from, int to, double dt) {
+            this.from = from;
+            this.to = to;
+            this.dt = dt;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= QUERY_CHUNK) {
+                for (int i = this.from; i < this.to; i++) {
+                    query(i, this.dt);
+                }
+                return;
+            }
+            int middle = (this.from + this.to) >>> 1;
+            invokeAll(new QueryTask(this.from, middle, this.dt), new QueryTask(middle, this.to, this.dt));
+        }
+    }
+}
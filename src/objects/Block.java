@@ -1,18 +1,20 @@
 package objects;
 
 import biuoop.DrawSurface;
+import collision.HitEventBus;
 import collision.HitListener;
 import collision.HitNotifier;
 import game.GameLevel;
 import geometry.Point;
 import geometry.Rectangle;
 import physics.Collidable;
+import physics.CollisionLayer;
 import physics.Velocity;
-import sprites.Sprite;
+import sprites.DirtyRegions;
+import sprites.RegionSprite;
+import utils.DeferredList;
 
 import java.awt.Color;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * The Block class represents a block in 2D space.
@@ -21,10 +23,15 @@ import java.util.List;
  * @version 19.0.2
  * @since 2023-06-01
  */
-public class Block implements Collidable, Sprite, HitNotifier {
-    private final List<HitListener> hitListeners;
+public class Block implements Collidable, RegionSprite, HitNotifier {
+    // listeners added or removed while notifying a hit are added or removed
+    // when all the listeners were notified
+    private final DeferredList<HitListener> hitListeners;
+    // the bus the hits are posted to in a game, null outside of a game
+    private HitEventBus eventBus;
     private final Rectangle rect;
     private final java.awt.Color color;
+    private int layer;
     private static final int Y_AXIS_FIX = 600;
 
     /**
@@ -36,7 +43,8 @@ public class Block implements Collidable, Sprite, HitNotifier {
     public Block(Rectangle rectangle, java.awt.Color color) {
         this.rect = rectangle;
         this.color = color;
-        this.hitListeners = new ArrayList<>();
+        this.hitListeners = new DeferredList<>();
+        this.layer = CollisionLayer.BLOCK;
     }
 
     /**
@@ -57,6 +65,18 @@ public class Block implements Collidable, Sprite, HitNotifier {
         return this.rect;
     }
 
+    /**
+     * Sets the collision layers of the block, BLOCK by default. The hits of
+     * the block are posted to the event bus of a game with its layers as
+     * their type. The layers must be set before the block is added to a game,
+     * whose environment keeps them.
+     *
+     * @param layers the collision layers, one or more CollisionLayer bits
+     */
+    public void setCollisionLayer(int layers) {
+        this.layer = layers;
+    }
+
     /**
      * Adds the block to the specified game by adding
      * it as a sprite and collidable.
@@ -66,6 +86,7 @@ public class Block implements Collidable, Sprite, HitNotifier {
     public void addToGame(GameLevel g) {
         g.addSprite(this);
         g.addCollidable(this);
+        this.eventBus = g.getHitEventBus();
     }
 
     /**
@@ -98,83 +119,50 @@ public class Block implements Collidable, Sprite, HitNotifier {
     }
 
     /**
-     * Notifies all hit listeners about a hit event.
+     * Notifies the hit listeners about a hit event. In a game, the listeners
+     * that opted into batch delivery are notified by the event bus after the
+     * step, and the others now.
      *
      * @param hitter the Ball object that caused the hit
      */
     private void notifyHit(Ball hitter) {
-        // Make a copy of the hitListeners before iterating over them.
-        List<HitListener> listeners = new ArrayList<HitListener>(this.hitListeners);
-        // Notify all listeners about a hit event:
-        for (HitListener hl : listeners) {
-            hl.hitEvent(this, hitter);
+        boolean hasBatched = notifyListeners(hitter, false);
+        if (this.eventBus != null) {
+            this.eventBus.post(this, hitter, hasBatched);
         }
     }
 
     /**
-     * Checks if the ball need to change his velocity (dx and dy), in case there
-     * is more than 1 collidable on the collision point.
+     * Notifies the hit listeners that opted into batch delivery about a hit
+     * that was recorded by the event bus.
      *
-     * @param collisionPoint  the point where the block was hit
-     * @param currentVelocity the velocity of the object hitting the block
-     * @param hitter          the ball that hit the block
-     * @return an array of booleans (flags) indicating whether the ball should
-     *         change his DX or DY.
+     * @param hitter the Ball object that caused the hit
      */
-    public boolean[] hitMultiCollidables(Ball hitter, Point collisionPoint, Velocity currentVelocity) {
-        this.notifyHit(hitter);
-        boolean[] flag = { false, false };
-        double dx = currentVelocity.getDX();
-        double dy = currentVelocity.getDY();
-        if (dx > 0 && dy > 0) {
-            if (this.rect.getRightLine().end().getX() > collisionPoint.getX()
-                    && !(this.rect.getLeftLine().start().equals(collisionPoint))) {
-                flag[1] = true;
-            }
-        }
-        if (dx > 0 && dy < 0) {
-            if (this.rect.getRightLine().end().getX() > collisionPoint.getX()
-                    && !(this.rect.getLeftLine().end().equals(collisionPoint))) {
-                flag[1] = true;
-            }
-        }
-        if (dx < 0 && dy > 0) {
-            if (this.rect.getLeftLine().end().getX() < collisionPoint.getX()
-                    && !(this.rect.getRightLine().start().equals(collisionPoint))) {
-                flag[1] = true;
-            }
-        }
-        if (dx < 0 && dy < 0) {
-            if (this.rect.getLeftLine().end().getX() < collisionPoint.getX()
-                    && !(this.rect.getRightLine().end().equals(collisionPoint))) {
-                flag[1] = true;
-            }
-        }
-        if (dy > 0 && dx > 0) {
-            if (this.rect.getUpperLine().end().getY() > collisionPoint.getY()
-                    && !(this.rect.getLeftLine().start().equals(collisionPoint))) {
-                flag[0] = true;
-            }
-        }
-        if (dy > 0 && dx < 0) {
-            if (this.rect.getUpperLine().end().getY() > collisionPoint.getY()
-                    && !(this.rect.getRightLine().start().equals(collisionPoint))) {
-                flag[0] = true;
-            }
-        }
-        if (dy < 0 && dx > 0) {
-            if (this.rect.getLowerLine().end().getY() < collisionPoint.getY()
-                    && !(this.rect.getLeftLine().end().equals(collisionPoint))) {
-                flag[0] = true;
-            }
-        }
-        if (dy < 0 && dx < 0) {
-            if (this.rect.getLowerLine().end().getY() < collisionPoint.getY()
-                    && !(this.rect.getRightLine().end().equals(collisionPoint))) {
-                flag[0] = true;
+    public void notifyBatchedHit(Ball hitter) {
+        notifyListeners(hitter, true);
+    }
+
+    // notifies the batched or the other listeners (all of them outside of a
+    // game), and returns true if there are listeners that were skipped
+    private boolean notifyListeners(Ball hitter, boolean batched) {
+        boolean skipped = false;
+        this.hitListeners.beginIteration();
+        try {
+            for (int i = 0; i < this.hitListeners.size(); i++) {
+                HitListener hl = this.hitListeners.get(i);
+                if (hl == null) {
+                    continue;
+                }
+                if (batched == (this.eventBus != null && hl.isBatched())) {
+                    hl.hitEvent(this, hitter);
+                } else {
+                    skipped = true;
+                }
             }
+        } finally {
+            this.hitListeners.endIteration();
         }
-        return flag;
+        return skipped;
     }
 
     @Override
@@ -202,6 +190,26 @@ public class Block implements Collidable, Sprite, HitNotifier {
         return new Velocity(dx, dy);
     }
 
+    @Override
+    public void hit(Ball hitter, double collisionX, double collisionY) {
+        this.notifyHit(hitter);
+        double dx = hitter.getDX();
+        double dy = hitter.getDY();
+        if (this.rect.getLeftLine().isPointOnLine(collisionX, collisionY) && dx > 0) {
+            dx = -dx;
+        }
+        if (this.rect.getRightLine().isPointOnLine(collisionX, collisionY) && dx < 0) {
+            dx = -dx;
+        }
+        if (this.rect.getUpperLine().isPointOnLine(collisionX, collisionY) && dy < 0) {
+            dy = -dy;
+        }
+        if (this.rect.getLowerLine().isPointOnLine(collisionX, collisionY) && dy > 0) {
+            dy = -dy;
+        }
+        hitter.setVelocity(dx, dy);
+    }
+
     @Override
     public void drawOn(DrawSurface d) {
         Point point = this.rect.getUpperLeftPoint();
@@ -222,7 +230,27 @@ public class Block implements Collidable, Sprite, HitNotifier {
     }
 
     @Override
-    public String className() {
-        return "Block";
+    public void addDirtyRegions(DirtyRegions regions, double alpha) {
+        // a block looks the same until it is removed
+    }
+
+    @Override
+    public void addRegion(DirtyRegions regions) {
+        Point point = this.rect.getUpperLeftPoint();
+        // the outline is drawn one pixel to the right and below the rectangle
+        regions.add((int) point.getX(), Y_AXIS_FIX - (int) point.getY(),
+                (int) this.rect.getWidth() + 1, (int) this.rect.getHeight() + 1);
+    }
+
+    @Override
+    public boolean intersects(java.awt.Rectangle area) {
+        Point point = this.rect.getUpperLeftPoint();
+        return area.intersects((int) point.getX(), Y_AXIS_FIX - (int) point.getY(),
+                (int) this.rect.getWidth() + 1, (int) this.rect.getHeight() + 1);
+    }
+
+    @Override
+    public int collisionLayer() {
+        return this.layer;
     }
 }
@@ -1,28 +1,39 @@
 package objects;
 
+import animations.InputAction;
+import animations.InputSnapshot;
 import biuoop.DrawSurface;
 import biuoop.KeyboardSensor;
 import game.GameLevel;
 import geometry.Point;
 import geometry.Rectangle;
 import physics.Collidable;
+import physics.CollisionLayer;
 import physics.Velocity;
-import sprites.Sprite;
+import sprites.DirtyRegions;
+import sprites.RegionSprite;
 
 import java.awt.Color;
 
 /**
  * The Paddle class represents the player-controlled paddle
  * in the game in 2D space.
+ * The paddle moves its collision rectangle in place and reads it through its
+ * raw coordinates, so moving, drawing and hitting the paddle don't allocate.
  *
  * @author Eitan Maimoni
  * @version 19.0.2
  * @since 2023-06-01
  */
-public class Paddle implements Sprite, Collidable, KeyboardSensor {
+public class Paddle implements RegionSprite, Collidable, KeyboardSensor {
 
-    private final biuoop.KeyboardSensor keyboard;
-    private Rectangle rect;
+    private final InputSnapshot input;
+    private final Rectangle rect;
+    // the x-coordinate before the last step, for drawing in between steps
+    private double previousX;
+    // the x-coordinate the paddle was last drawn at
+    private int drawnX;
+    private boolean drawn;
     private final java.awt.Color color;
     private final int speed;
     private final int width;
@@ -33,19 +44,20 @@ public class Paddle implements Sprite, Collidable, KeyboardSensor {
     private static final double HEIGHT = 15;
 
     /**
-     * Constructs a new Paddle object with a specified keyboard sensor.
+     * Constructs a new Paddle object with a specified input.
      *
-     * @param keyboard The keyboard sensor to use for
-     * @param speed    The speed of the paddle
-     * @param width    The width of the paddle
-     *                 controlling the paddle's movement.
+     * @param input The input snapshot to use for
+     * @param speed The speed of the paddle
+     * @param width The width of the paddle
+     *              controlling the paddle's movement.
      */
-    public Paddle(biuoop.KeyboardSensor keyboard, int speed, int width) {
+    public Paddle(InputSnapshot input, int speed, int width) {
         double x = (400 - (width * 0.5));
         Point point = new Point(x, 15);
         this.rect = new Rectangle(point, width, HEIGHT);
+        this.previousX = x;
         this.color = Color.lightGray;
-        this.keyboard = keyboard;
+        this.input = input;
         this.speed = speed;
         this.width = width;
     }
@@ -58,7 +70,7 @@ public class Paddle implements Sprite, Collidable, KeyboardSensor {
      * @return True if the key is currently being pressed, false otherwise.
      */
     public boolean isPressed(String var1) {
-        return keyboard.isPressed(var1);
+        return this.input.isPressed(var1);
     }
 
     /**
@@ -79,29 +91,43 @@ public class Paddle implements Sprite, Collidable, KeyboardSensor {
      * Moves the paddle one step to the left.
      */
     public void moveLeft() {
-        double newX = this.rect.getUpperLeftPoint().getX() - this.speed;
+        moveLeft(1.0);
+    }
+
+    /**
+     * Moves the paddle the given part of a step to the left.
+     *
+     * @param dt the part of a step to move, 1 for a whole step
+     */
+    public void moveLeft(double dt) {
+        double step = this.speed * dt;
+        double newX = this.rect.getUpperLeftX() - step;
         if (isDoubleEqual(newX, BORDER_WIDTH) || newX < BORDER_WIDTH) {
             return;
         }
-        Point point = new Point(this.rect.getUpperLeftPoint(), -this.speed, 0);
-        double width = this.rect.getWidth();
-        double height = this.rect.getHeight();
-        this.rect = new Rectangle(point, width, height);
+        this.rect.moveTo(newX, this.rect.getUpperLeftY());
     }
 
     /**
      * Moves the paddle one step to the right.
      */
     public void moveRight() {
-        double newX = this.rect.getUpperLeftPoint().getX() + this.width + this.speed;
+        moveRight(1.0);
+    }
+
+    /**
+     * Moves the paddle the given part of a step to the right.
+     *
+     * @param dt the part of a step to move, 1 for a whole step
+     */
+    public void moveRight(double dt) {
+        double step = this.speed * dt;
+        double newX = this.rect.getUpperLeftX() + this.width + step;
         if (isDoubleEqual(newX, WINDOW_WIDTH - BORDER_WIDTH)
                 || newX > WINDOW_WIDTH - BORDER_WIDTH) {
             return;
         }
-        Point point = new Point(this.rect.getUpperLeftPoint(), this.speed, 0);
-        double width = this.rect.getWidth();
-        double height = this.rect.getHeight();
-        this.rect = new Rectangle(point, width, height);
+        this.rect.moveTo(this.rect.getUpperLeftX() + step, this.rect.getUpperLeftY());
     }
 
     /**
@@ -112,8 +138,18 @@ public class Paddle implements Sprite, Collidable, KeyboardSensor {
      *         where 1 is the leftmost region and 5 is the rightmost region
      */
     public int whichRegion(Point collisionPoint) {
-        double collisionX = collisionPoint.getX();
-        double upperLeftX = this.rect.getUpperLeftPoint().getX();
+        return whichRegion(collisionPoint.getX());
+    }
+
+    /**
+     * Determines which region of the paddle the ball collides with.
+     *
+     * @param collisionX the x-coordinate of the collision between the ball and paddle
+     * @return an integer representing the region of the paddle,
+     *         where 1 is the leftmost region and 5 is the rightmost region
+     */
+    public int whichRegion(double collisionX) {
+        double upperLeftX = this.rect.getUpperLeftX();
         double regionWidth = rect.getWidth() / 5;
         for (int i = 1; i < 5; i++) {
             if (collisionX < upperLeftX + (i * regionWidth)) {
@@ -123,18 +159,102 @@ public class Paddle implements Sprite, Collidable, KeyboardSensor {
         return 5;
     }
 
+    /**
+     * Returns the angle the ball bounces in after hitting the upper line of the
+     * paddle, based on the region of the paddle the ball hit on.
+     *
+     * @param collisionX the x-coordinate of the collision between the ball and paddle
+     * @return the angle in degrees, or NaN if the ball is simply reflected
+     */
+    private double bounceAngle(double collisionX) {
+        // add the "magic number" on this method are not actually "magic number"
+        // those number are specific number we have been asked to use
+        // in the assigment.
+        int region = whichRegion(collisionX);
+        if (region == 1) {
+            // if the paddle close to the border, its make sure the ball
+            // doesn't go out of the border
+            if (this.rect.getUpperLeftX() < 35) {
+                return 80;
+            }
+            return 150;
+        } else if (region == 2) {
+            return 120;
+        } else if (region == 3) {
+            return Double.NaN;
+        } else if (region == 4) {
+            return 60;
+        } else {
+            // if the paddle close to the border, its make sure the ball
+            // doesn't go out of the border
+            if (this.rect.getUpperLeftX() + this.rect.getWidth() > 765) {
+                return 100;
+            }
+            return 30;
+        }
+    }
+
     @Override
     public void timePassed() {
-        moveOneStep();
+        timePassed(1.0);
+    }
+
+    @Override
+    public void timePassed(double dt) {
+        this.previousX = this.rect.getUpperLeftX();
+        moveOneStep(dt);
     }
 
     @Override
     public void drawOn(DrawSurface d) {
-        Point point = this.rect.getUpperLeftPoint();
+        draw(d, (int) this.rect.getUpperLeftX());
+    }
+
+    @Override
+    public void drawOn(DrawSurface d, double alpha) {
+        draw(d, drawX(alpha));
+    }
+
+    private int drawX(double alpha) {
+        double x = this.rect.getUpperLeftX();
+        return (int) (this.previousX + (x - this.previousX) * alpha);
+    }
+
+    // marks the region the paddle covers when drawn at the given x-coordinate
+    private void addRegion(DirtyRegions regions, int x) {
+        // the outline is drawn one pixel to the right and below the rectangle
+        regions.add(x, Y_AXIS_FIX - (int) this.rect.getUpperLeftY(),
+                (int) this.rect.getWidth() + 1, (int) this.rect.getHeight() + 1);
+    }
+
+    @Override
+    public void addDirtyRegions(DirtyRegions regions, double alpha) {
+        int x = drawX(alpha);
+        if (this.drawn && x == this.drawnX) {
+            return;
+        }
+        if (this.drawn) {
+            addRegion(regions, this.drawnX);
+        }
+        addRegion(regions, x);
+    }
+
+    @Override
+    public void addRegion(DirtyRegions regions) {
+        addRegion(regions, this.drawn ? this.drawnX : drawX(1));
+    }
+
+    @Override
+    public boolean intersects(java.awt.Rectangle area) {
+        return true;
+    }
+
+    private void draw(DrawSurface d, int x) {
+        this.drawnX = x;
+        this.drawn = true;
         int h = (int) this.rect.getHeight();
         int w = (int) this.rect.getWidth();
-        int x = (int) point.getX();
-        int y = (int) point.getY();
+        int y = (int) this.rect.getUpperLeftY();
         // draw the ball as a filled circle with the given color
         // *600 - y because the original board y-axis is opposite
         d.setColor(this.color);
@@ -150,38 +270,17 @@ public class Paddle implements Sprite, Collidable, KeyboardSensor {
 
     @Override
     public Velocity hit(Ball hitter, Point collisionPoint, Velocity currentVelocity) {
-        // add the "magic number" on this method are not actually "magic number"
-        // those number are specific number we have been asked to use
-        // in the assigment.
         double dx = currentVelocity.getDX();
         double dy = currentVelocity.getDY();
         double speed = Math.sqrt(dx * dx + dy * dy);
-        // if the ball hit in the upper line
+        // if the ball hit in the upper line, change the velocity based on the
+        // region of the paddle the ball hit on
         if (this.rect.getUpperLine().isPointOnLine(collisionPoint)) {
-            int region = whichRegion(collisionPoint);
-            // change the velocity based on the region of the paddle the ball
-            // hit on (parameters as asked in the assigment)
-            if (region == 1) {
-                // if the paddle close to the border, its make sure the ball
-                // doesn't go out of the border
-                if (this.rect.getLeftLine().start().getX() < 35) {
-                    return Velocity.fromAngleAndSpeed(80, speed);
-                }
-                return Velocity.fromAngleAndSpeed(150, speed);
-            } else if (region == 2) {
-                return Velocity.fromAngleAndSpeed(120, speed);
-            } else if (region == 3) {
+            double angle = bounceAngle(collisionPoint.getX());
+            if (Double.isNaN(angle)) {
                 return new Velocity(dx, -dy);
-            } else if (region == 4) {
-                return Velocity.fromAngleAndSpeed(60, speed);
-            } else {
-                // if the paddle close to the border, its make sure the ball
-                // doesn't go out of the border
-                if (this.rect.getRightLine().start().getX() > 765) {
-                    return Velocity.fromAngleAndSpeed(100, speed);
-                }
-                return Velocity.fromAngleAndSpeed(30, speed);
             }
+            return Velocity.fromAngleAndSpeed(angle, speed);
         }
         // if the ball hit in the left line
         if (this.rect.getLeftLine().isPointOnLine(collisionPoint)) {
@@ -193,15 +292,37 @@ public class Paddle implements Sprite, Collidable, KeyboardSensor {
         return new Velocity(dx, dy);
     }
 
+    @Override
+    public void hit(Ball hitter, double collisionX, double collisionY) {
+        double dx = hitter.getDX();
+        double dy = hitter.getDY();
+        double speed = Math.sqrt(dx * dx + dy * dy);
+        int faces = this.rect.facesAt(collisionX, collisionY);
+        if ((faces & Rectangle.TOP) != 0) {
+            double angle = bounceAngle(collisionX);
+            if (Double.isNaN(angle)) {
+                hitter.setVelocity(dx, -dy);
+            } else {
+                // the same as Velocity.fromAngleAndSpeed
+                double angleInRadians = Math.toRadians(angle);
+                hitter.setVelocity(speed * Math.cos(angleInRadians), speed * Math.sin(angleInRadians));
+            }
+            return;
+        }
+        if ((faces & (Rectangle.LEFT | Rectangle.RIGHT)) != 0) {
+            hitter.setVelocity(-dx, dy);
+        }
+    }
+
     /**
      * This method adds the paddle to the game by adding it
-     * as both a sprite and a collidable.
+     * as both a sprite and a (moving) collidable.
      * 
      * @param g the game to add the paddle to.
      */
     public void addToGame(GameLevel g) {
         g.addSprite(this);
-        g.addCollidable(this);
+        g.addMovingCollidable(this);
     }
 
     /**
@@ -209,16 +330,26 @@ public class Paddle implements Sprite, Collidable, KeyboardSensor {
      * by calling the 'moveLeft' or 'moveRight' methods accordingly.
      */
     public void moveOneStep() {
-        if (isPressed(LEFT_KEY)) {
-            moveLeft();
+        moveOneStep(1.0);
+    }
+
+    /**
+     * This method moves the paddle the given part of a step according to the
+     * user input.
+     *
+     * @param dt the part of a step to move, 1 for a whole step
+     */
+    public void moveOneStep(double dt) {
+        if (this.input.isDown(InputAction.LEFT)) {
+            moveLeft(dt);
         }
-        if (isPressed(RIGHT_KEY)) {
-            moveRight();
+        if (this.input.isDown(InputAction.RIGHT)) {
+            moveRight(dt);
         }
     }
 
     @Override
-    public String className() {
-        return "Paddle";
+    public int collisionLayer() {
+        return CollisionLayer.PADDLE;
     }
 }
\ No newline at end of file
@@ -0,0 +1,165 @@
+package objects;
+
+import biuoop.DrawSurface;
+import sprites.DirtyRegions;
+import sprites.RegionSprite;
+import utils.FrameProfiler;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+
+/**
+ * The PerformanceIndicator class shows the p50 and p99 times of every phase of
+ * a frame, in milliseconds, and the p50 and p99 counts of every counter of a
+ * frame, in a small panel under the score indicator.
+ * The times are read from a FrameProfiler, and the texts are only rebuilt
+ * every few drawn frames (as counted by the profiler, however many steps each
+ * frame runs), in a reused buffer, so the indicator costs almost nothing to
+ * draw and allocates little more than its texts.
+ *
+ * @author Eitan Maimoni
+ * @version 19.0.2
+ * @since 2023-06-01
+ */
+public class PerformanceIndicator implements RegionSprite {
+    private static final int REFRESH_FRAMES = 30;
+    private static final int LINE_HEIGHT = 15;
+    private static final int FONT_SIZE = 12;
+    private static final int WIDTH = 210;
+    private static final long NANOS_PER_MICROSECOND = 1000;
+    private static final long MICROS_PER_MILLISECOND = 1000;
+    private static final int NAME_WIDTH = 12;
+    private static final int VALUE_WIDTH = 9;
+    private static final String HEADER = "phase          p50 ms    p99 ms";
+    private static final Color PANEL_COLOR = new Color(20, 20, 20);
+    private final FrameProfiler profiler;
+    private final int positionX;
+    private final int positionY;
+    private final String[] lines;
+    private final StringBuilder text;
+    // the profiler frame count at which the texts are next rebuilt
+    private int refreshFrame;
+    // true if the texts changed since they were last drawn
+    private boolean stale;
+
+    /**
+     * Constructs a new PerformanceIndicator.
+     *
+     * @param profiler  the profiler whose times are shown
+     * @param positionX the x-coordinate of the top left corner of the panel
+     * @param positionY the y-coordinate of the top left corner of the panel
+     */
+    public PerformanceIndicator(FrameProfiler profiler, int positionX, int positionY) {
+        this.profiler = profiler;
+        this.positionX = positionX;
+        this.positionY = positionY;
+        this.lines = new String[FrameProfiler.getPhaseCount() + FrameProfiler.getCounterCount() + 1];
+        this.text = new StringBuilder();
+        // the level may be built on another thread while the profiler is in
+        // use, so the times are only read from the first step
+        this.lines[0] = HEADER;
+        for (int p = 0; p < FrameProfiler.getPhaseCount(); p++) {
+            this.lines[p + 1] = FrameProfiler.getPhaseName(p);
+        }
+        for (int c = 0; c < FrameProfiler.getCounterCount(); c++) {
+            this.lines[FrameProfiler.getPhaseCount() + c + 1] = FrameProfiler.getCounterName(c);
+        }
+        this.refreshFrame = 0;
+        this.stale = true;
+    }
+
+    private void refresh() {
+        this.lines[0] = HEADER;
+        for (int p = 0; p < FrameProfiler.getPhaseCount(); p++) {
+            this.text.setLength(0);
+            appendName(FrameProfiler.getPhaseName(p));
+            appendMilliseconds(this.profiler.percentile(p, 50));
+            appendMilliseconds(this.profiler.percentile(p, 99));
+            this.lines[p + 1] = this.text.toString();
+        }
+        for (int c = 0; c < FrameProfiler.getCounterCount(); c++) {
+            this.text.setLength(0);
+            appendName(FrameProfiler.getCounterName(c));
+            appendValue(this.profiler.countPercentile(c, 50), 0);
+            appendValue(this.profiler.countPercentile(c, 99), 0);
+            this.lines[FrameProfiler.getPhaseCount() + c + 1] = this.text.toString();
+        }
+        this.stale = true;
+    }
+
+    // appends the name, padded to its column
+    private void appendName(String name) {
+        this.text.append(name);
+        for (int i = name.length(); i < NAME_WIDTH; i++) {
+            this.text.append(' ');
+        }
+    }
+
+    // appends the nanoseconds in milliseconds, rounded to 3 decimals
+    private void appendMilliseconds(long nanos) {
+        long micros = (nanos + NANOS_PER_MICROSECOND / 2) / NANOS_PER_MICROSECOND;
+        appendValue(micros / MICROS_PER_MILLISECOND, 4);
+        long fraction = micros % MICROS_PER_MILLISECOND;
+        this.text.append('.');
+        for (long digit = MICROS_PER_MILLISECOND / 10; digit > 0; digit /= 10) {
+            this.text.append((char) ('0' + fraction / digit % 10));
+        }
+    }
+
+    // appends the value, right aligned in its column, with room for the
+    // given number of characters after it
+    private void appendValue(long value, int after) {
+        int digits = 1;
+        for (long rest = value / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        for (int i = digits + after; i < VALUE_WIDTH; i++) {
+            this.text.append(' ');
+        }
+        this.text.append(value);
+    }
+
+    @Override
+    public void drawOn(DrawSurface d) {
+        this.stale = false;
+        int top = 600 - this.positionY;
+        d.setColor(PANEL_COLOR);
+        d.fillRectangle(this.positionX, top, WIDTH, height());
+        d.setColor(Color.white);
+        for (int i = 0; i < this.lines.length; i++) {
+            d.drawText(this.positionX + 5, top + (i + 1) * LINE_HEIGHT, this.lines[i], FONT_SIZE);
+        }
+    }
+
+    private int height() {
+        return this.lines.length * LINE_HEIGHT + 5;
+    }
+
+    @Override
+    public void timePassed() {
+        int frames = this.profiler.getFrameCount();
+        // the frame count starts over when the profiler is reset
+        if (frames >= this.refreshFrame || frames < this.refreshFrame - REFRESH_FRAMES) {
+            refresh();
+            this.refreshFrame = frames + REFRESH_FRAMES;
+        }
+    }
+
+    @Override
+    public void addDirtyRegions(DirtyRegions regions, double alpha) {
+        // the texts change only when they are rebuilt
+        if (this.stale) {
+            addRegion(regions);
+        }
+    }
+
+    @Override
+    public void addRegion(DirtyRegions regions) {
+        regions.add(this.positionX, 600 - this.positionY, WIDTH, height());
+    }
+
+    @Override
+    public boolean intersects(Rectangle area) {
+        return area.intersects(this.positionX, 600 - this.positionY, WIDTH, height());
+    }
+}
@@ -1,10 +1,12 @@
 package objects;
 
 import biuoop.DrawSurface;
-import sprites.Sprite;
+import sprites.DirtyRegions;
+import sprites.RegionSprite;
 import utils.Counter;
 
 import java.awt.Color;
+import java.awt.Rectangle;
 
 /**
  * The ScoreIndicator class represents a visual indicator for the current score
@@ -16,11 +18,15 @@ import java.awt.Color;
  * @version 19.0.2
  * @since 2023-06-01
  */
-public class ScoreIndicator implements Sprite {
+public class ScoreIndicator implements RegionSprite {
     private final Counter scoresCounter;
     private final int positionX;
     private final int positionY;
-    private final String levelName;
+    private final String levelText;
+    // the score that was last drawn, and its text
+    private int drawnScore;
+    private String scoreText;
+    private boolean drawn;
 
     /**
      * Constructs a new ScoreIndicator.
@@ -34,26 +40,47 @@ public class ScoreIndicator implements Sprite {
         this.scoresCounter = scoresCounter;
         this.positionX = positionX;
         this.positionY = positionY;
-        this.levelName = levelName;
+        this.levelText = "Level Name: " + levelName;
     }
 
     @Override
     public void drawOn(DrawSurface d) {
         d.setColor(Color.white);
         d.fillRectangle(0, 600 - positionY, 800, 25);
-        // Get the current score and convert it to a string
+        // Get the current score and convert it to a string, only when it
+        // changed
         int score = scoresCounter.getValue();
-        String scoreText = "Score: " + score;
+        if (!this.drawn || score != this.drawnScore) {
+            this.scoreText = "Score: " + score;
+        }
+        this.drawnScore = score;
+        this.drawn = true;
         // Draw the score on the DrawSurface at the specified position
         d.setColor(Color.black);
-        d.drawText(positionX, 600 - (positionY - 20), scoreText, 15);
-        String levelText = "Level Name: " + this.levelName;
+        d.drawText(positionX, 600 - (positionY - 20), this.scoreText, 15);
         // Draw the score on the DrawSurface at the specified position
         d.setColor(Color.black);
-        d.drawText(600, 600 - (positionY - 20), levelText, 15);
+        d.drawText(600, 600 - (positionY - 20), this.levelText, 15);
     }
 
     @Override
     public void timePassed() {
     }
+
+    @Override
+    public void addDirtyRegions(DirtyRegions regions, double alpha) {
+        if (!this.drawn || this.drawnScore != scoresCounter.getValue()) {
+            addRegion(regions);
+        }
+    }
+
+    @Override
+    public void addRegion(DirtyRegions regions) {
+        regions.add(0, 600 - positionY, 800, 25);
+    }
+
+    @Override
+    public boolean intersects(Rectangle area) {
+        return area.intersects(0, 600 - positionY, 800, 25);
+    }
 }
@@ -0,0 +1,255 @@
+package physics;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import geometry.Point;
+import geometry.Rectangle;
+
+/**
+ * The BoxBatch class keeps the collision rectangles of many static
+ * collidables in primitive arrays, one array per bound (the left, right,
+ * bottom and top of every rectangle), so a segment can be tested against all
+ * of them in one tight loop, several rectangles per instruction when the
+ * Vector API is available (see VectorBoxKernel).
+ * The batch only finds the rectangles a segment touches; the exact hit is then
+ * found by testing them one by one, like without a batch.
+ * A removed rectangle is moved far out of the game area, so no segment touches
+ * it, and the arrays are compacted when half of them are removed.
+ *
+ * @author Eitan Maimoni
+ * @version 19.0.2
+ * @since 2023-06-01
+ */
+class BoxBatch {
+    private static final int INITIAL_CAPACITY = 64;
+    // where removed rectangles are moved to
+    private static final double REMOVED = 1e300;
+    private final BoxKernel kernel;
+    private double[] minX;
+    private double[] maxX;
+    private double[] minY;
+    private double[] maxY;
+    private Collidable[] collidables;
+    private long[] orders;
+    private int[] layers;
+    private final Map<Collidable, Integer> indices;
+    private int size;
+    private int removed;
+
+    /**
+     * Constructs a new empty BoxBatch.
+     *
+     * @param vectorized true to test several rectangles per instruction if the
+     *                   Vector API is available, false to test them one by one
+     */
+    BoxBatch(boolean vectorized) {
+        this.kernel = vectorized ? vectorKernel() : new ScalarBoxKernel();
+        this.minX = new double[INITIAL_CAPACITY];
+        this.maxX = new double[INITIAL_CAPACITY];
+        this.minY = new double[INITIAL_CAPACITY];
+        this.maxY = new double[INITIAL_CAPACITY];
+        this.collidables = new Collidable[INITIAL_CAPACITY];
+        this.orders = new long[INITIAL_CAPACITY];
+        this.layers = new int[INITIAL_CAPACITY];
+        this.indices = new IdentityHashMap<>();
+        this.size = 0;
+        this.removed = 0;
+    }
+
+    // loads VectorBoxKernel by name, so the game still runs (with the scalar
+    // kernel) when it was compiled or is run without jdk.incubator.vector
+    private static BoxKernel vectorKernel() {
+        try {
+            return (BoxKernel) Class.forName("physics.VectorBoxKernel").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new ScalarBoxKernel();
+        }
+    }
+
+    /**
+     * Returns whether the rectangles are tested several per instruction.
+     *
+     * @return true if the Vector API is used, false otherwise
+     */
+    boolean isVectorized() {
+        return this.kernel.isVectorized();
+    }
+
+    /**
+     * Adds the collision rectangle of the given static collidable to the batch.
+     *
+     * @param c     the collidable to add
+     * @param order the order in which the collidable was added to the environment
+     * @param layer the collision layers of the collidable
+     */
+    void add(Collidable c, long order, int layer) {
+        if (this.size == this.collidables.length) {
+            grow();
+        }
+        Rectangle rect = c.getCollisionRectangle();
+        Point upperLeft = rect.getUpperLeftPoint();
+        this.minX[this.size] = upperLeft.getX();
+        this.maxX[this.size] = upperLeft.getX() + rect.getWidth();
+        this.minY[this.size] = upperLeft.getY() - rect.getHeight();
+        this.maxY[this.size] = upperLeft.getY();
+        this.collidables[this.size] = c;
+        this.orders[this.size] = order;
+        this.layers[this.size] = layer;
+        this.indices.put(c, this.size);
+        this.size++;
+    }
+
+    /**
+     * Removes the given collidable from the batch.
+     *
+     * @param c the collidable to remove
+     * @return true if the collidable was in the batch, false otherwise
+     */
+    boolean remove(Collidable c) {
+        Integer index = this.indices.remove(c);
+        if (index == null) {
+            return false;
+        }
+        this.minX[index] = REMOVED;
+        this.maxX[index] = REMOVED;
+        this.minY[index] = REMOVED;
+        this.maxY[index] = REMOVED;
+        this.collidables[index] = null;
+        this.removed++;
+        if (this.removed * 2 > this.size) {
+            compact();
+        }
+        return true;
+    }
+
+    // removes the moved rectangles from the arrays, keeping the order of the rest
+    private void compact() {
+        int n = 0;
+        for (int i = 0; i < this.size; i++) {
+            if (this.collidables[i] == null) {
+                continue;
+            }
+            this.minX[n] = this.minX[i];
+            this.maxX[n] = this.maxX[i];
+            this.minY[n] = this.minY[i];
+            this.maxY[n] = this.maxY[i];
+            this.collidables[n] = this.collidables[i];
+            this.orders[n] = this.orders[i];
+            this.layers[n] = this.layers[i];
+            this.indices.put(this.collidables[n], n);
+            n++;
+        }
+        Arrays.fill(this.collidables, n, this.size, null);
+        this.size = n;
+        this.removed = 0;
+    }
+
+    private void grow() {
+        int capacity = this.collidables.length * 2;
+        this.minX = Arrays.copyOf(this.minX, capacity);
+        this.maxX = Arrays.copyOf(this.maxX, capacity);
+        this.minY = Arrays.copyOf(this.minY, capacity);
+        this.maxY = Arrays.copyOf(this.maxY, capacity);
+        this.collidables = Arrays.copyOf(this.collidables, capacity);
+        this.orders = Arrays.copyOf(this.orders, capacity);
+        this.layers = Arrays.copyOf(this.layers, capacity);
+    }
+
+    /**
+     * Finds the rectangles that the segment between the two given points
+     * touches, with the rectangles padded by the given margin, and writes their
+     * indices to the given array in increasing order.
+     *
+     * @param x1     the x-coordinate of the segment start
+     * @param y1     the y-coordinate of the segment start
+     * @param x2     the x-coordinate of the segment end
+     * @param y2     the y-coordinate of the segment end
+     * @param margin how much the rectangles are padded on every side
+     * @param found  the array the indices are written to, at least as long as
+     *               the batch
+     * @return the number of rectangles the segment touches
+     */
+    int candidates(double x1, double y1, double x2, double y2, double margin, int[] found) {
+        return this.kernel.candidates(this, x1, y1, x2, y2, margin, found);
+    }
+
+    /**
+     * Returns the number of slots in the batch, including the removed
+     * rectangles that were not compacted yet.
+     *
+     * @return the number of slots
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the collidable of the given slot.
+     *
+     * @param i the index of the slot
+     * @return the collidable
+     */
+    Collidable collidable(int i) {
+        return this.collidables[i];
+    }
+
+    /**
+     * Returns the order in which the collidable of the given slot was added to
+     * the environment.
+     *
+     * @param i the index of the slot
+     * @return the order
+     */
+    long order(int i) {
+        return this.orders[i];
+    }
+
+    /**
+     * Returns the collision layers of the collidable of the given slot, as they
+     * were when it was added.
+     *
+     * @param i the index of the slot
+     * @return the collision layers
+     */
+    int layer(int i) {
+        return this.layers[i];
+    }
+
+    /**
+     * Returns the left bounds of the rectangles.
+     *
+     * @return the left bounds, by slot
+     */
+    double[] minX() {
+        return this.minX;
+    }
+
+    /**
+     * Returns the right bounds of the rectangles.
+     *
+     * @return the right bounds, by slot
+     */
+    double[] maxX() {
+        return this.maxX;
+    }
+
+    /**
+     * Returns the bottom bounds of the rectangles.
+     *
+     * @return the bottom bounds, by slot
+     */
+    double[] minY() {
+        return this.minY;
+    }
+
+    /**
+     * Returns the top bounds of the rectangles.
+     *
+     * @return the top bounds, by slot
+     */
+    double[] maxY() {
+        return this.maxY;
+    }
+}
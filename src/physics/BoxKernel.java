@@ -0,0 +1,35 @@
+package physics;
+
+/**
+ * The BoxKernel interface is a slab test over all the rectangles of a
+ * BoxBatch at once.
+ *
+ * @author Eitan Maimoni
+ * @version 19.0.2
+ * @since 2023-06-01
+ */
+interface BoxKernel {
+    /**
+     * Finds the rectangles of the batch that the segment between the two given
+     * points touches, with the rectangles padded by the given margin, and
+     * writes their indices to the given array in increasing order.
+     *
+     * @param batch  the rectangles to test
+     * @param x1     the x-coordinate of the segment start
+     * @param y1     the y-coordinate of the segment start
+     * @param x2     the x-coordinate of the segment end
+     * @param y2     the y-coordinate of the segment end
+     * @param margin how much the rectangles are padded on every side
+     * @param found  the array the indices are written to, at least as long as
+     *               the batch
+     * @return the number of rectangles the segment touches
+     */
+    int candidates(BoxBatch batch, double x1, double y1, double x2, double y2, double margin, int[] found);
+
+    /**
+     * Returns whether the kernel tests several rectangles per instruction.
+     *
+     * @return true if the kernel is vectorized, false otherwise
+     */
+    boolean isVectorized();
+}
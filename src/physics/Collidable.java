@@ -35,9 +35,26 @@ public interface Collidable {
     Velocity hit(Ball hitter, Point collisionPoint, Velocity currentVelocity);
 
     /**
-     * Returns the name of the specific class the collidable belong to.
+     * Notifies the collidable that the hitter collided with it at the given
+     * point, and sets the new velocity of the hitter.
+     * Works on raw coordinates. The default implementation delegates to
+     * hit(Ball, Point, Velocity), collidables can override it so that a
+     * collision does not allocate.
      *
-     * @return the colidable name
+     * @param hitter     the object that hit the collidable
+     * @param collisionX the x-coordinate of the point at which the collision occurred
+     * @param collisionY the y-coordinate of the point at which the collision occurred
      */
-    String className();
+    default void hit(Ball hitter, double collisionX, double collisionY) {
+        Velocity velocity = hit(hitter, new Point(collisionX, collisionY), hitter.getVelocity());
+        hitter.setVelocity(velocity.getDX(), velocity.getDY());
+    }
+
+    /**
+     * Returns the collision layers the collidable belongs to, as a bitmask of
+     * CollisionLayer constants.
+     *
+     * @return the collision layers of the collidable
+     */
+    int collisionLayer();
 }
\ No newline at end of file
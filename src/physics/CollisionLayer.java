@@ -0,0 +1,46 @@
+package physics;
+
+/**
+ * The CollisionLayer class holds the collision layers a Collidable can belong
+ * to.
+ * Every layer is a single bit, so a collidable can belong to several layers,
+ * and a query can ask for several layers at once with a mask (e.g.
+ * BLOCK | PADDLE), which is checked with a single bitwise and.
+ *
+ * @author Eitan Maimoni
+ * @version 19.0.2
+ * @since 2023-06-01
+ */
+public final class CollisionLayer {
+    /**
+     * No layer, a mask of NONE matches no collidable.
+     */
+    public static final int NONE = 0;
+    /**
+     * Static blocks (including the borders). Balls hitting several blocks on
+     * the same point are reflected by all of them together.
+     */
+    public static final int BLOCK = 1;
+    /**
+     * The paddle. A ball hitting the paddle moves away from it in the same
+     * step, so it can't get stuck inside the moving paddle.
+     */
+    public static final int PADDLE = 1 << 1;
+    /**
+     * The border at the bottom of the screen, that takes the balls hitting it
+     * out of the game. Its blocks belong to BLOCK too.
+     */
+    public static final int DEATH = 1 << 2;
+    /**
+     * The blocks of a level, that break when hit and give score. They belong
+     * to BLOCK too.
+     */
+    public static final int BRICK = 1 << 3;
+    /**
+     * Every layer, a mask of ALL matches every collidable.
+     */
+    public static final int ALL = ~0;
+
+    private CollisionLayer() {
+    }
+}
@@ -0,0 +1,341 @@
+package physics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import geometry.Point;
+import geometry.Rectangle;
+
+/**
+ * The ContactManifold class describes the closest collision of a trajectory
+ * with the collidables of a GameEnvironment.
+ * It holds the nearest collision point, every collidable touching that point
+ * (in the order they were added to the environment), and the hit normal of
+ * each of them.
+ * A manifold can be filled again and again by GameEnvironment.findClosestContact,
+ * which does not allocate once the manifold has grown to the needed size.
+ *
+ * @author Eitan Maimoni
+ * @version 19.0.2
+ * @since 2023-06-01
+ */
+public class ContactManifold {
+    private static final double EPSILON = 1e-10;
+    private static final int INITIAL_CAPACITY = 4;
+    private double x;
+    private double y;
+    private double distance;
+    private double dx;
+    private double dy;
+    private int closest;
+    private int size;
+    private Collidable[] contacts;
+    private long[] orders;
+    private int[] layers;
+    // scratch space of the queries that fill this manifold
+    private final double[] intersection;
+    private final ArrayList<SpatialGrid.Entry> candidates;
+    private int[] found;
+
+    /**
+     * Constructs a new empty ContactManifold.
+     */
+    public ContactManifold() {
+        this.contacts = new Collidable[INITIAL_CAPACITY];
+        this.orders = new long[INITIAL_CAPACITY];
+        this.layers = new int[INITIAL_CAPACITY];
+        this.size = 0;
+        this.intersection = new double[3];
+        this.candidates = new ArrayList<>();
+        this.found = new int[0];
+    }
+
+    /**
+     * Returns the scratch array the intersection points of a query are
+     * written to.
+     *
+     * @return the intersection scratch array
+     */
+    double[] intersection() {
+        return this.intersection;
+    }
+
+    /**
+     * Returns the scratch list the broadphase candidates of a query are
+     * written to.
+     *
+     * @return the candidates scratch list
+     */
+    ArrayList<SpatialGrid.Entry> candidates() {
+        return this.candidates;
+    }
+
+    /**
+     * Returns the scratch array the indices of the rectangles a box batch
+     * finds are written to, grown to the given length if needed.
+     *
+     * @param length the least length of the array
+     * @return the found indices scratch array
+     */
+    int[] found(int length) {
+        if (this.found.length < length) {
+            this.found = new int[Math.max(length, this.found.length * 2)];
+        }
+        return this.found;
+    }
+
+    /**
+     * Clears the manifold before a new query along the given direction.
+     *
+     * @param directionX the change in position on the x-axis of the trajectory
+     * @param directionY the change in position on the y-axis of the trajectory
+     */
+    void reset(double directionX, double directionY) {
+        this.dx = directionX;
+        this.dy = directionY;
+        this.size = 0;
+        this.closest = -1;
+    }
+
+    /**
+     * Offers a collision with a collidable to the manifold.
+     * A collision at the current collision point is added to the contacts, a
+     * closer collision replaces them, and a farther collision is ignored.
+     * When several collidables are hit at the same distance, the one that was
+     * added last to the environment is the closest.
+     *
+     * @param c          the collidable that was hit
+     * @param order      the order in which the collidable was added
+     * @param layer      the collision layers of the collidable
+     * @param px         the x-coordinate of the collision point
+     * @param py         the y-coordinate of the collision point
+     * @param pDistance  the distance of the collision point from the trajectory start
+     */
+    void offer(Collidable c, long order, int layer, double px, double py, double pDistance) {
+        if (this.size > 0 && !(isDoubleEqual(px, this.x) && isDoubleEqual(py, this.y))) {
+            if (pDistance >= this.distance) {
+                return;
+            }
+            this.size = 0;
+        } else if (contains(c)) {
+            return;
+        }
+        int index = add(c, order, layer);
+        if (this.size == 1 || pDistance < this.distance
+                || (pDistance == this.distance && order > this.orders[this.closest])) {
+            this.x = px;
+            this.y = py;
+            this.distance = pDistance;
+            this.closest = index;
+        } else if (this.closest >= index) {
+            this.closest++;
+        }
+    }
+
+    private boolean contains(Collidable c) {
+        for (int i = 0; i < this.size; i++) {
+            if (this.contacts[i] == c) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int add(Collidable c, long order, int layer) {
+        if (this.size == this.contacts.length) {
+            this.contacts = Arrays.copyOf(this.contacts, this.size * 2);
+            this.orders = Arrays.copyOf(this.orders, this.size * 2);
+            this.layers = Arrays.copyOf(this.layers, this.size * 2);
+        }
+        // keep the contacts sorted by the order they were added to the environment
+        int index = this.size;
+        while (index > 0 && this.orders[index - 1] > order) {
+            this.contacts[index] = this.contacts[index - 1];
+            this.orders[index] = this.orders[index - 1];
+            this.layers[index] = this.layers[index - 1];
+            index--;
+        }
+        this.contacts[index] = c;
+        this.orders[index] = order;
+        this.layers[index] = layer;
+        this.size++;
+        return index;
+    }
+
+    /**
+     * Returns the distance of the collision point from the trajectory start.
+     *
+     * @return the distance, if there is a collision
+     */
+    double distance() {
+        return this.distance;
+    }
+
+    /**
+     * Returns whether the trajectory hit any collidable.
+     *
+     * @return true if there is a collision, false otherwise
+     */
+    public boolean hasCollision() {
+        return this.size > 0;
+    }
+
+    /**
+     * Returns the point at which the collision occurs.
+     *
+     * @return the collision point.
+     */
+    public Point collisionPoint() {
+        return new Point(this.x, this.y);
+    }
+
+    /**
+     * Returns the x-coordinate of the collision point.
+     *
+     * @return the x-coordinate of the collision point
+     */
+    public double getX() {
+        return this.x;
+    }
+
+    /**
+     * Returns the y-coordinate of the collision point.
+     *
+     * @return the y-coordinate of the collision point
+     */
+    public double getY() {
+        return this.y;
+    }
+
+    /**
+     * Returns the closest collidable object involved in the collision.
+     *
+     * @return the collidable object.
+     */
+    public Collidable collisionObject() {
+        return this.contacts[this.closest];
+    }
+
+    /**
+     * Returns the number of collidables touching the collision point.
+     *
+     * @return the number of contacts
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the collidable of the given contact.
+     *
+     * @param i the index of the contact
+     * @return the collidable
+     */
+    public Collidable contact(int i) {
+        return this.contacts[i];
+    }
+
+    /**
+     * Returns the collision layers of the given contact.
+     *
+     * @param i the index of the contact
+     * @return the collision layers, as a bitmask of CollisionLayer constants
+     */
+    public int layer(int i) {
+        return this.layers[i];
+    }
+
+    /**
+     * Returns the collision layers of the closest collidable.
+     *
+     * @return the collision layers, as a bitmask of CollisionLayer constants
+     */
+    public int collisionLayer() {
+        return this.layers[this.closest];
+    }
+
+    /**
+     * Returns the number of contacts in any of the layers of the given mask.
+     *
+     * @param mask a bitmask of CollisionLayer constants
+     * @return the number of contacts matching the mask
+     */
+    public int countContacts(int mask) {
+        int count = 0;
+        for (int i = 0; i < this.size; i++) {
+            if ((this.layers[i] & mask) != 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the x component of the hit normal of the given contact, which is
+     * -1 or 1 if the contact reflects the trajectory on the x-axis, 0 otherwise.
+     * The trajectory is not reflected by a contact it only touches on the corner
+     * it enters from, so several collidables touching each other reflect it
+     * like a single wall.
+     *
+     * @param i the index of the contact
+     * @return the x component of the hit normal
+     */
+    public double normalX(int i) {
+        if (this.dx == 0 || this.dy == 0 || isEntryCorner(i)) {
+            return 0;
+        }
+        Rectangle rect = this.contacts[i].getCollisionRectangle();
+        double left = rect.getUpperLeftPoint().getX();
+        double right = left + rect.getWidth();
+        if (this.dx > 0 && right > this.x) {
+            return -1;
+        }
+        if (this.dx < 0 && left < this.x) {
+            return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the y component of the hit normal of the given contact, which is
+     * -1 or 1 if the contact reflects the trajectory on the y-axis, 0 otherwise.
+     *
+     * @param i the index of the contact
+     * @return the y component of the hit normal
+     * @see #normalX(int)
+     */
+    public double normalY(int i) {
+        if (this.dx == 0 || this.dy == 0 || isEntryCorner(i)) {
+            return 0;
+        }
+        Rectangle rect = this.contacts[i].getCollisionRectangle();
+        double top = rect.getUpperLeftPoint().getY();
+        double bottom = top - rect.getHeight();
+        if (this.dy > 0 && top > this.y) {
+            return -1;
+        }
+        if (this.dy < 0 && bottom < this.y) {
+            return 1;
+        }
+        return 0;
+    }
+
+    // checks if the collision point is the corner of the contact the trajectory
+    // enters from (lower left when going right and up, and so on)
+    private boolean isEntryCorner(int i) {
+        Rectangle rect = this.contacts[i].getCollisionRectangle();
+        double cornerX = rect.getUpperLeftPoint().getX();
+        double cornerY = rect.getUpperLeftPoint().getY();
+        if (this.dx < 0) {
+            cornerX = cornerX + rect.getWidth();
+        }
+        if (this.dy > 0) {
+            cornerY = cornerY + (-rect.getHeight());
+        }
+        return isDoubleEqual(cornerX, this.x) && isDoubleEqual(cornerY, this.y);
+    }
+
+    private static boolean isDoubleEqual(double a, double b) {
+        return Math.abs(a - b) < EPSILON;
+    }
+}
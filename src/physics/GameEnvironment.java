@@ -1,44 +1,222 @@
 package physics;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 import geometry.Line;
 import geometry.Point;
 import geometry.Rectangle;
+import utils.DeferredList;
 
 /**
  * The GameEnvironment class represents the environment in which the
  * game is played.
  * It manages a collection of Collidable objects and provides methods
  * for adding new objects to the collection and checking for collisions.
+ * By default the collidables are indexed by a uniform SpatialGrid, so a
+ * collision query only tests the collidables near the trajectory. The old
+ * linear scan over all the collidables can be selected instead.
+ * A removed collidable is not found by queries from the moment it is removed,
+ * but the collection is only compacted in batches (see compact), so removing
+ * many blocks in a frame costs O(1) per block.
+ * A wall of bricks on a lattice can be kept in a TileMap: once the tile map
+ * is added, every added collidable that fits its lattice is kept in its cell
+ * instead of in the collection, and is found by walking the cells.
+ * For balls that only query again when they may hit something, the
+ * environment also predicts the time of impact of a ray with the static
+ * collidables, and tells whether a moving collidable is near a trajectory.
+ * Without a spatial grid, the static rectangles can be kept in a BoxBatch, so
+ * a query first finds the rectangles near the trajectory in one tight loop
+ * (several rectangles per instruction with the Vector API), and only tests
+ * those exactly.
  *
  * @author Eitan Maimoni
  * @version 19.0.2
  * @since 2023-06-01
  */
 public class GameEnvironment {
-    private final List<Collidable> collidables;
+    private static final double WINDOW_WIDTH = 800;
+    private static final double WINDOW_HEIGHT = 600;
+    private static final double CELL_SIZE = 50;
+    // how close to a static collidable a ray may come before its predicted
+    // time of impact, which covers the rounding of the positions a ball moves
+    // through until then (the padding of the spatial grid and of tile maps is
+    // not smaller, so every collidable this close to the ray is found)
+    private static final double IMPACT_MARGIN = 1e-6;
+    // a box batch finds the rectangles within this margin of a trajectory,
+    // which is wider than the padding of the exact tests (see
+    // Rectangle.slabIntersection), so it finds every rectangle they may hit
+    private static final double BATCH_MARGIN = 1e-9;
+    private final DeferredList<Collidable> collidables;
+    private final SpatialGrid grid;
+    private final List<TileMap> tileMaps;
+    private final List<Collidable> movingCollidables;
+    // the same moving collidables, to tell in O(1) if a collidable moves
+    private final Set<Collidable> moving;
+    // without a spatial grid, the static rectangles may be kept in a batch,
+    // and the rest of the collidables (moving ones and tile maps) aside
+    private BoxBatch boxes;
+    private final List<SpatialGrid.Entry> unbatched;
+    private long nextOrder;
+    private long additions;
+    private long removals;
 
     /**
      * Constructs a new GameEnvironment object wit an empty
-     * collection of Collidable objects.
+     * collection of Collidable objects, indexed by a spatial grid.
      */
     public GameEnvironment() {
-        this.collidables = new ArrayList<>();
+        this(true);
+    }
+
+    /**
+     * Constructs a new GameEnvironment object wit an empty
+     * collection of Collidable objects.
+     *
+     * @param useSpatialGrid true to index the collidables by a spatial grid,
+     *                       false to scan all the collidables on every query
+     */
+    public GameEnvironment(boolean useSpatialGrid) {
+        this.collidables = new DeferredList<>();
+        this.tileMaps = new ArrayList<>();
+        this.movingCollidables = new ArrayList<>();
+        this.moving = Collections.newSetFromMap(new IdentityHashMap<>());
+        this.unbatched = new ArrayList<>();
+        this.additions = 0;
+        this.removals = 0;
+        if (useSpatialGrid) {
+            this.grid = new SpatialGrid(WINDOW_WIDTH, WINDOW_HEIGHT, CELL_SIZE);
+        } else {
+            this.grid = null;
+        }
+    }
+
+    /**
+     * Returns whether the collidables are indexed by a spatial grid.
+     *
+     * @return true if a spatial grid is used, false if every query scans all
+     *         the collidables
+     */
+    public boolean usesSpatialGrid() {
+        return this.grid != null;
+    }
+
+    /**
+     * Makes the queries without a spatial grid keep the collision rectangles of
+     * the static collidables in a BoxBatch, which finds the rectangles near a
+     * trajectory before they are tested exactly. The results are the same as
+     * without the batch, but the collision layers of a collidable are read when
+     * it is added (like with the spatial grid). Does nothing if the
+     * collidables are indexed by a spatial grid, whose cells only hold a few
+     * collidables each.
+     *
+     * @param vectorized true to test several rectangles per instruction with
+     *                   the Vector API, if the module jdk.incubator.vector is
+     *                   available, false to test them one by one
+     */
+    public void useBoxBatch(boolean vectorized) {
+        if (this.grid != null) {
+            return;
+        }
+        this.boxes = new BoxBatch(vectorized);
+        this.unbatched.clear();
+        this.nextOrder = 0;
+        for (int i = 0; i < this.collidables.size(); i++) {
+            Collidable c = this.collidables.get(i);
+            if (c != null) {
+                addToBatch(c);
+            }
+        }
+    }
+
+    /**
+     * Returns whether the static collidables are kept in a BoxBatch that tests
+     * several rectangles per instruction.
+     *
+     * @return true if the Vector API is used, false otherwise
+     */
+    public boolean usesVectorizedBatch() {
+        return this.boxes != null && this.boxes.isVectorized();
+    }
+
+    // the orders keep the relative order of the slots of the collection, so
+    // ties are broken like without the batch
+    private void addToBatch(Collidable c) {
+        boolean isMoving = this.moving.contains(c);
+        if (c instanceof TileMap || isMoving) {
+            this.unbatched.add(new SpatialGrid.Entry(c, this.nextOrder++, isMoving));
+        } else {
+            this.boxes.add(c, this.nextOrder++, c.collisionLayer());
+        }
+    }
+
+    private void removeFromBatch(Collidable c) {
+        if (this.boxes.remove(c)) {
+            return;
+        }
+        for (int i = 0; i < this.unbatched.size(); i++) {
+            if (this.unbatched.get(i).collidable() == c) {
+                this.unbatched.remove(i);
+                return;
+            }
+        }
     }
 
     /**
      * Adds the given Collidable object to this GameEnvironment's collection.
-     * If the given object is null, does nothing.
+     * The collision rectangle of the object must not change while it is in the
+     * collection, moving objects are added with addMovingCollidable.
+     * An object that fits the lattice of a tile map in the collection is put
+     * in its cell instead.
+     * If the given object is null or already in the collection, does nothing.
      *
      * @param c the Collidable object to add
      */
     public void addCollidable(Collidable c) {
-        if (c == null) {
+        if (c == null || contains(c)) {
+            return;
+        }
+        for (int i = 0; i < this.tileMaps.size(); i++) {
+            if (this.tileMaps.get(i).add(c)) {
+                this.additions++;
+                return;
+            }
+        }
+        if (c instanceof TileMap) {
+            this.tileMaps.add((TileMap) c);
+        }
+        this.collidables.add(c);
+        this.additions++;
+        if (this.grid != null) {
+            this.grid.insert(c);
+        } else if (this.boxes != null) {
+            addToBatch(c);
+        }
+    }
+
+    /**
+     * Adds the given Collidable object, whose collision rectangle may change
+     * over time, to this GameEnvironment's collection.
+     * If the given object is null or already in the collection, does nothing.
+     *
+     * @param c the Collidable object to add
+     */
+    public void addMovingCollidable(Collidable c) {
+        if (c == null || this.collidables.contains(c)) {
             return;
         }
         this.collidables.add(c);
+        this.movingCollidables.add(c);
+        this.moving.add(c);
+        this.additions++;
+        if (this.grid != null) {
+            this.grid.insertMoving(c);
+        } else if (this.boxes != null) {
+            addToBatch(c);
+        }
     }
 
     /**
@@ -51,39 +229,331 @@ public class GameEnvironment {
         if (c == null) {
             return;
         }
-        this.collidables.remove(c);
+        if (!this.collidables.remove(c)) {
+            for (int i = 0; i < this.tileMaps.size(); i++) {
+                if (this.tileMaps.get(i).remove(c)) {
+                    this.removals++;
+                    return;
+                }
+            }
+            return;
+        }
+        if (c instanceof TileMap) {
+            this.tileMaps.remove(c);
+        }
+        if (this.moving.remove(c)) {
+            this.movingCollidables.remove(c);
+        }
+        this.removals++;
+        if (this.grid != null) {
+            this.grid.remove(c);
+        } else if (this.boxes != null) {
+            removeFromBatch(c);
+        }
+    }
+
+    /**
+     * Checks if the given Collidable object is in this GameEnvironment's
+     * collection.
+     *
+     * @param c the Collidable object to look for
+     * @return true if the object is in the collection, false otherwise
+     */
+    public boolean contains(Collidable c) {
+        if (this.collidables.contains(c)) {
+            return true;
+        }
+        for (int i = 0; i < this.tileMaps.size(); i++) {
+            if (this.tileMaps.get(i).contains(c)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compacts the collection after collidables were removed, keeping their
+     * order. Called once a frame, so the removals of the frame are compacted
+     * in one batch.
+     */
+    public void compact() {
+        this.collidables.compact();
+    }
+
+    /**
+     * Returns the number of collidables added to this GameEnvironment so far.
+     * Together with getRemovalCount, it tells whether the collection changed
+     * since a collision query was made.
+     *
+     * @return the number of additions
+     */
+    public long getAdditionCount() {
+        return this.additions;
+    }
+
+    /**
+     * Returns the number of collidables removed from this GameEnvironment so
+     * far.
+     *
+     * @return the number of removals
+     */
+    public long getRemovalCount() {
+        return this.removals;
     }
 
     /**
      * Returns a List of all the Collidable.
      *
-     * @return a List of all the Collidable objects
-     *         in this GameEnvironment's collection
+     * @return an unmodifiable List of all the Collidable objects
+     *         in this GameEnvironment's collection (the bricks of a tile map
+     *         are in the tile map)
      */
     public List<Collidable> getCollidables() {
-        return this.collidables;
+        return this.collidables.toList();
+    }
+
+    /**
+     * Finds the closest collision of the trajectory, together with every
+     * collidable touching the collision point and their hit normals, in a
+     * single pass over the collidables.
+     * When several collidables are hit at the same distance, the one that was
+     * added last is the closest, with or without the spatial grid.
+     *
+     * @param trajectory the Line to check for collisions
+     *                   with Collidable objects
+     * @return the contact manifold of the closest collision, or null if no
+     *         collisions occur
+     */
+    public ContactManifold getClosestContact(Line trajectory) {
+        Point start = trajectory.start();
+        Point end = trajectory.end();
+        ContactManifold manifold = new ContactManifold();
+        if (!findClosestContact(start.getX(), start.getY(), end.getX(), end.getY(), manifold)) {
+            return null;
+        }
+        return manifold;
     }
 
     /**
-     * Get Collidables On Point.
+     * Finds the closest collision of the trajectory between the two given
+     * points, like getClosestContact, and writes it to the given manifold.
+     * Works on raw coordinates and reuses the manifold, so it does not
+     * allocate.
      *
-     * @param collisionPoint the Point to check for intersections
-     * @return a List of all the Collidable objects that intersect
-     *         with the given Point
+     * @param x1       the x-coordinate of the trajectory start
+     * @param y1       the y-coordinate of the trajectory start
+     * @param x2       the x-coordinate of the trajectory end
+     * @param y2       the y-coordinate of the trajectory end
+     * @param manifold the manifold the collision is written to
+     * @return true if a collision occurs, false otherwise
      */
-    public List<Collidable> getCollidablesOnPoint(Point collisionPoint) {
-        List<Collidable> collidablesList = new ArrayList<>();
-        for (Collidable c : collidables) {
-            if (c.getCollisionRectangle().getUpperLine().isPointOnLine(collisionPoint)
-                    || c.getCollisionRectangle().getLowerLine().isPointOnLine(collisionPoint)
-                    || c.getCollisionRectangle().getLeftLine().isPointOnLine(collisionPoint)
-                    || c.getCollisionRectangle().getRightLine().isPointOnLine(collisionPoint)) {
-                if (c.className().equals("Block")) {
-                    collidablesList.add(c);
+    public boolean findClosestContact(double x1, double y1, double x2, double y2, ContactManifold manifold) {
+        return findClosestContact(x1, y1, x2, y2, manifold, CollisionLayer.ALL);
+    }
+
+    /**
+     * Finds the closest collision of the trajectory between the two given
+     * points with the collidables in any of the layers of the given mask, and
+     * writes it to the given manifold. Collidables in other layers are skipped
+     * without being tested.
+     *
+     * @param x1       the x-coordinate of the trajectory start
+     * @param y1       the y-coordinate of the trajectory start
+     * @param x2       the x-coordinate of the trajectory end
+     * @param y2       the y-coordinate of the trajectory end
+     * @param manifold the manifold the collision is written to
+     * @param mask     a bitmask of the CollisionLayer constants to collide with
+     * @return true if a collision occurs, false otherwise
+     */
+    public boolean findClosestContact(double x1, double y1, double x2, double y2, ContactManifold manifold,
+            int mask) {
+        offerCandidates(x1, y1, x2, y2, manifold, mask, false);
+        return manifold.hasCollision();
+    }
+
+    // offers every collidable near the segment in the layers of the mask to
+    // the manifold: the collision of the segment with it, or (when predicting
+    // a time of impact) the point where the segment comes close to it, in
+    // which case the moving collidables are skipped
+    private void offerCandidates(double x1, double y1, double x2, double y2, ContactManifold manifold, int mask,
+            boolean impact) {
+        manifold.reset(x2 - x1, y2 - y1);
+        if (this.boxes != null) {
+            // the batch only holds static collidables
+            double margin = impact ? IMPACT_MARGIN + BATCH_MARGIN : BATCH_MARGIN;
+            int[] found = manifold.found(this.boxes.size());
+            int count = this.boxes.candidates(x1, y1, x2, y2, margin, found);
+            for (int k = 0; k < count; k++) {
+                int i = found[k];
+                int layer = this.boxes.layer(i);
+                if ((layer & mask) != 0) {
+                    offerCandidate(manifold, x1, y1, x2, y2, this.boxes.collidable(i), this.boxes.order(i), layer,
+                            mask, impact);
+                }
+            }
+            for (int i = 0; i < this.unbatched.size(); i++) {
+                SpatialGrid.Entry entry = this.unbatched.get(i);
+                if ((entry.layer() & mask) != 0 && !(impact && entry.isMoving())) {
+                    offerCandidate(manifold, x1, y1, x2, y2, entry.collidable(), entry.order(), entry.layer(),
+                            mask, impact);
+                }
+            }
+        } else if (this.grid == null) {
+            for (int i = 0; i < this.collidables.size(); i++) {
+                Collidable c = this.collidables.get(i);
+                if (c == null) {
+                    continue;
+                }
+                int layer = c.collisionLayer();
+                if ((layer & mask) != 0 && !(impact && this.moving.contains(c))) {
+                    offerCandidate(manifold, x1, y1, x2, y2, c, i, layer, mask, impact);
+                }
+            }
+        } else {
+            ArrayList<SpatialGrid.Entry> candidates = manifold.candidates();
+            this.grid.candidatesOnSegment(x1, y1, x2, y2, candidates);
+            SpatialGrid.Entry walked = null;
+            for (int i = 0; i < candidates.size(); i++) {
+                SpatialGrid.Entry entry = candidates.get(i);
+                if ((entry.layer() & mask) != 0 && !(impact && entry.isMoving()) && entry != walked) {
+                    if (entry.collidable() instanceof TileMap) {
+                        // a tile map is in every cell it covers, but its
+                        // cells are walked once
+                        walked = entry;
+                    }
+                    offerCandidate(manifold, x1, y1, x2, y2, entry.collidable(), entry.order(), entry.layer(),
+                            mask, impact);
                 }
             }
         }
-        return collidablesList;
+    }
+
+    // offers the collision with a candidate, or where the segment comes close
+    // to it. A tile map offers its bricks in the layers of the mask
+    private static void offerCandidate(ContactManifold manifold, double x1, double y1, double x2, double y2,
+            Collidable c, long order, int layer, int mask, boolean impact) {
+        if (c instanceof TileMap) {
+            if (impact) {
+                ((TileMap) c).offerEntries(manifold, x1, y1, x2, y2, order, mask);
+            } else {
+                ((TileMap) c).offerContacts(manifold, x1, y1, x2, y2, order, mask);
+            }
+        } else if (impact) {
+            offerEntry(manifold, x1, y1, x2, y2, c, order, layer);
+        } else {
+            offer(manifold, x1, y1, x2, y2, c, order, layer);
+        }
+    }
+
+    /**
+     * Offers the collision of the trajectory with the given collidable to the
+     * manifold, if there is one. The collidable is not a tile map.
+     *
+     * @param manifold the manifold to offer the collision to
+     * @param x1       the x-coordinate of the trajectory start
+     * @param y1       the y-coordinate of the trajectory start
+     * @param x2       the x-coordinate of the trajectory end
+     * @param y2       the y-coordinate of the trajectory end
+     * @param c        the collidable
+     * @param order    the order in which the collidable was added
+     * @param layer    the collision layers of the collidable
+     */
+    static void offer(ContactManifold manifold, double x1, double y1, double x2, double y2,
+            Collidable c, long order, int layer) {
+        double[] p = manifold.intersection();
+        if (c.getCollisionRectangle().slabIntersection(x1, y1, x2, y2, p) != Rectangle.NO_FACE) {
+            double x = p[1];
+            double y = p[2];
+            manifold.offer(c, order, layer, x, y, Math.sqrt((x1 - x) * (x1 - x) + (y1 - y) * (y1 - y)));
+        }
+    }
+
+    /**
+     * Predicts when a ray first comes close to a static collidable in any of
+     * the layers of the given mask: finds the first point of the segment
+     * between the two given points that is within a small margin of the
+     * collision rectangle of a static collidable. A trajectory that moves along
+     * the segment can't collide with a static collidable before that point, so
+     * a ball doesn't have to query again until it gets there. Moving
+     * collidables are skipped (see isNearMovingCollidable).
+     * The collidable the ray comes close to is the collision object of the
+     * manifold.
+     *
+     * @param x1       the x-coordinate of the segment start
+     * @param y1       the y-coordinate of the segment start
+     * @param x2       the x-coordinate of the segment end
+     * @param y2       the y-coordinate of the segment end
+     * @param manifold the manifold the collidable is written to
+     * @param mask     a bitmask of the CollisionLayer constants to collide with
+     * @return the part of the segment before that point, between 0 and 1, or
+     *         infinity if the segment doesn't come close to any static
+     *         collidable
+     */
+    public double timeOfImpact(double x1, double y1, double x2, double y2, ContactManifold manifold, int mask) {
+        offerCandidates(x1, y1, x2, y2, manifold, mask, true);
+        if (!manifold.hasCollision()) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double length = Math.sqrt((x2 - x1) * (x2 - x1) + (y2 - y1) * (y2 - y1));
+        return length == 0 ? 0 : manifold.distance() / length;
+    }
+
+    /**
+     * Offers the point where the segment enters the margin around the given
+     * collidable to the manifold, if it does. The collidable is not a tile
+     * map.
+     *
+     * @param manifold the manifold to offer the point to
+     * @param x1       the x-coordinate of the segment start
+     * @param y1       the y-coordinate of the segment start
+     * @param x2       the x-coordinate of the segment end
+     * @param y2       the y-coordinate of the segment end
+     * @param c        the collidable
+     * @param order    the order in which the collidable was added
+     * @param layer    the collision layers of the collidable
+     */
+    static void offerEntry(ContactManifold manifold, double x1, double y1, double x2, double y2,
+            Collidable c, long order, int layer) {
+        double t = c.getCollisionRectangle().entryTime(x1, y1, x2, y2, IMPACT_MARGIN);
+        if (t <= 1) {
+            double dx = x2 - x1;
+            double dy = y2 - y1;
+            manifold.offer(c, order, layer, x1 + dx * t, y1 + dy * t, t * Math.sqrt(dx * dx + dy * dy));
+        }
+    }
+
+    /**
+     * Checks if a moving collidable in any of the layers of the given mask is
+     * near the segment between the two given points: if its collision
+     * rectangle overlaps the bounding box of the segment, padded by a small
+     * margin. If none is, a trajectory along the segment can't collide with a
+     * moving collidable.
+     *
+     * @param x1   the x-coordinate of the segment start
+     * @param y1   the y-coordinate of the segment start
+     * @param x2   the x-coordinate of the segment end
+     * @param y2   the y-coordinate of the segment end
+     * @param mask a bitmask of the CollisionLayer constants to collide with
+     * @return true if a moving collidable is near the segment, false otherwise
+     */
+    public boolean isNearMovingCollidable(double x1, double y1, double x2, double y2, int mask) {
+        double minX = Math.min(x1, x2) - IMPACT_MARGIN;
+        double maxX = Math.max(x1, x2) + IMPACT_MARGIN;
+        double minY = Math.min(y1, y2) - IMPACT_MARGIN;
+        double maxY = Math.max(y1, y2) + IMPACT_MARGIN;
+        for (int i = 0; i < this.movingCollidables.size(); i++) {
+            Collidable c = this.movingCollidables.get(i);
+            if ((c.collisionLayer() & mask) == 0) {
+                continue;
+            }
+            Rectangle rect = c.getCollisionRectangle();
+            double left = rect.getUpperLeftX();
+            double top = rect.getUpperLeftY();
+            if (maxX >= left && minX <= left + rect.getWidth() && maxY >= top - rect.getHeight() && minY <= top) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -96,28 +566,10 @@ public class GameEnvironment {
      *         or null if no collisions occur
      */
     public CollisionInfo getClosestCollision(Line trajectory) {
-        List<CollisionInfo> collisionInfoArray = new ArrayList<>();
-        for (Collidable c : collidables) {
-            Point p;
-            Rectangle rectangle = c.getCollisionRectangle();
-            p = trajectory.closestIntersectionToStartOfLine(rectangle);
-            if (p != null) {
-                collisionInfoArray.add(new CollisionInfo(p, c));
-            }
-        }
-        if (collisionInfoArray.isEmpty()) {
+        ContactManifold manifold = getClosestContact(trajectory);
+        if (manifold == null) {
             return null;
-        } else {
-            Point start = trajectory.start();
-            double smallerDistance = start.distance(collisionInfoArray.get(0).collisionPoint());
-            CollisionInfo closestCollision = null;
-            for (CollisionInfo c : collisionInfoArray) {
-                if (smallerDistance >= start.distance(c.collisionPoint())) {
-                    smallerDistance = start.distance(c.collisionPoint());
-                    closestCollision = c;
-                }
-            }
-            return closestCollision;
         }
+        return new CollisionInfo(manifold.collisionPoint(), manifold.collisionObject());
     }
-}
\ No newline at end of file
+}
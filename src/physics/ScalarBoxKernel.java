@@ -0,0 +1,78 @@
+package physics;
+
+/**
+ * The ScalarBoxKernel class tests the rectangles of a BoxBatch one by one.
+ * It is the kernel used when the Vector API is not available, and it tests
+ * the rectangles left over after the last full vector of VectorBoxKernel.
+ *
+ * @author Eitan Maimoni
+ * @version 19.0.2
+ * @since 2023-06-01
+ */
+class ScalarBoxKernel implements BoxKernel {
+    @Override
+    public int candidates(BoxBatch batch, double x1, double y1, double x2, double y2, double margin, int[] found) {
+        return scan(batch, 0, batch.size(), x1, y1, x2, y2, margin, found, 0);
+    }
+
+    @Override
+    public boolean isVectorized() {
+        return false;
+    }
+
+    /**
+     * Tests the rectangles of the batch in the range [from, to), and writes the
+     * indices of the touched ones to the array after the first count indices.
+     *
+     * @param batch  the rectangles to test
+     * @param from   the index of the first rectangle to test
+     * @param to     the index after the last rectangle to test
+     * @param x1     the x-coordinate of the segment start
+     * @param y1     the y-coordinate of the segment start
+     * @param x2     the x-coordinate of the segment end
+     * @param y2     the y-coordinate of the segment end
+     * @param margin how much the rectangles are padded on every side
+     * @param found  the array the indices are written to
+     * @param count  the number of indices already in the array
+     * @return the number of indices in the array
+     */
+    static int scan(BoxBatch batch, int from, int to, double x1, double y1, double x2, double y2, double margin,
+            int[] found, int count) {
+        double[] minX = batch.minX();
+        double[] maxX = batch.maxX();
+        double[] minY = batch.minY();
+        double[] maxY = batch.maxY();
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double invDx = 1 / dx;
+        double invDy = 1 / dy;
+        int n = count;
+        for (int i = from; i < to; i++) {
+            // the part of the segment inside the slab of every axis, clipped
+            // to the segment. An axis the segment doesn't move on is a
+            // containment test
+            double near = 0;
+            double far = 1;
+            if (dx != 0) {
+                double t1 = (minX[i] - margin - x1) * invDx;
+                double t2 = (maxX[i] + margin - x1) * invDx;
+                near = Math.max(near, Math.min(t1, t2));
+                far = Math.min(far, Math.max(t1, t2));
+            } else if (x1 < minX[i] - margin || x1 > maxX[i] + margin) {
+                continue;
+            }
+            if (dy != 0) {
+                double t1 = (minY[i] - margin - y1) * invDy;
+                double t2 = (maxY[i] + margin - y1) * invDy;
+                near = Math.max(near, Math.min(t1, t2));
+                far = Math.min(far, Math.max(t1, t2));
+            } else if (y1 < minY[i] - margin || y1 > maxY[i] + margin) {
+                continue;
+            }
+            if (near <= far) {
+                found[n++] = i;
+            }
+        }
+        return n;
+    }
+}
@@ -0,0 +1,272 @@
+package physics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import geometry.Point;
+import geometry.Rectangle;
+
+/**
+ * The SpatialGrid class is a uniform-grid broadphase index over Collidable
+ * objects.
+ * Every collidable is bucketed into the cells covered by the bounds of its
+ * collision rectangle, so a trajectory only needs to be tested against the
+ * collidables in the cells it actually crosses.
+ * Collidables that move (and so have no fixed bounds) are kept aside, and are
+ * returned by every query.
+ *
+ * @author Eitan Maimoni
+ * @version 19.0.2
+ * @since 2023-06-01
+ */
+public class SpatialGrid {
+    // bounds are padded so objects touching a cell border are found from both sides
+    private static final double EPSILON = 1e-6;
+    private final double cellSize;
+    private final int columns;
+    private final int rows;
+    private final List<List<Entry>> cells;
+    private final List<Entry> movingEntries;
+    private final Map<Collidable, Entry> entries;
+    private long nextOrder;
+
+    /**
+     * Constructs a new empty SpatialGrid covering the area [0, width] x [0, height].
+     * Objects outside of this area are kept in the border cells.
+     *
+     * @param width    the width of the covered area
+     * @param height   the height of the covered area
+     * @param cellSize the width and height of a single cell
+     */
+    public SpatialGrid(double width, double height, double cellSize) {
+        this.cellSize = cellSize;
+        this.columns = Math.max(1, (int) Math.ceil(width / cellSize));
+        this.rows = Math.max(1, (int) Math.ceil(height / cellSize));
+        this.cells = new ArrayList<>(this.columns * this.rows);
+        for (int i = 0; i < this.columns * this.rows; i++) {
+            this.cells.add(new ArrayList<>());
+        }
+        this.movingEntries = new ArrayList<>();
+        this.entries = new HashMap<>();
+        this.nextOrder = 0;
+    }
+
+    /**
+     * Inserts a static collidable into every cell covered by its collision
+     * rectangle.
+     *
+     * @param c the collidable to insert
+     */
+    public void insert(Collidable c) {
+        Rectangle rect = c.getCollisionRectangle();
+        Point upperLeft = rect.getUpperLeftPoint();
+        Entry entry = new Entry(c, this.nextOrder++);
+        entry.minColumn = column(upperLeft.getX() - EPSILON);
+        entry.maxColumn = column(upperLeft.getX() + rect.getWidth() + EPSILON);
+        entry.minRow = row(upperLeft.getY() - rect.getHeight() - EPSILON);
+        entry.maxRow = row(upperLeft.getY() + EPSILON);
+        for (int r = entry.minRow; r <= entry.maxRow; r++) {
+            for (int col = entry.minColumn; col <= entry.maxColumn; col++) {
+                this.cells.get(r * this.columns + col).add(entry);
+            }
+        }
+        this.entries.put(c, entry);
+    }
+
+    /**
+     * Inserts a moving collidable, which is returned by every query.
+     *
+     * @param c the collidable to insert
+     */
+    public void insertMoving(Collidable c) {
+        Entry entry = new Entry(c, this.nextOrder++, true);
+        this.movingEntries.add(entry);
+        this.entries.put(c, entry);
+    }
+
+    /**
+     * Removes the given collidable from the grid.
+     * If the collidable is not in the grid, does nothing.
+     *
+     * @param c the collidable to remove
+     */
+    public void remove(Collidable c) {
+        Entry entry = this.entries.remove(c);
+        if (entry == null) {
+            return;
+        }
+        if (entry.moving) {
+            this.movingEntries.remove(entry);
+            return;
+        }
+        for (int r = entry.minRow; r <= entry.maxRow; r++) {
+            for (int col = entry.minColumn; col <= entry.maxColumn; col++) {
+                this.cells.get(r * this.columns + col).remove(entry);
+            }
+        }
+    }
+
+    /**
+     * Returns the entries that may intersect the segment between the two given
+     * points, by walking (DDA) through the cells the segment crosses.
+     * The same entry may appear more than once.
+     *
+     * @param x1         the x-coordinate of the segment start
+     * @param y1         the y-coordinate of the segment start
+     * @param x2         the x-coordinate of the segment end
+     * @param y2         the y-coordinate of the segment end
+     * @param candidates the list the candidate entries are written to (its
+     *                   previous content is cleared), which is grown by the
+     *                   entries of each cell the walk visits, so it only
+     *                   holds as much as the longest walk needed
+     */
+    void candidatesOnSegment(double x1, double y1, double x2, double y2, ArrayList<Entry> candidates) {
+        candidates.clear();
+        for (int i = 0; i < this.movingEntries.size(); i++) {
+            candidates.add(this.movingEntries.get(i));
+        }
+        int col = (int) Math.floor(x1 / this.cellSize);
+        int row = (int) Math.floor(y1 / this.cellSize);
+        int endCol = (int) Math.floor(x2 / this.cellSize);
+        int endRow = (int) Math.floor(y2 / this.cellSize);
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        int stepX = dx > 0 ? 1 : -1;
+        int stepY = dy > 0 ? 1 : -1;
+        // the segment parameter at which the next vertical / horizontal cell
+        // border is crossed, and the parameter length of a whole cell
+        double tMaxX = Double.POSITIVE_INFINITY;
+        double tMaxY = Double.POSITIVE_INFINITY;
+        double tDeltaX = Double.POSITIVE_INFINITY;
+        double tDeltaY = Double.POSITIVE_INFINITY;
+        if (dx != 0) {
+            tMaxX = ((dx > 0 ? col + 1 : col) * this.cellSize - x1) / dx;
+            tDeltaX = this.cellSize / Math.abs(dx);
+        }
+        if (dy != 0) {
+            tMaxY = ((dy > 0 ? row + 1 : row) * this.cellSize - y1) / dy;
+            tDeltaY = this.cellSize / Math.abs(dy);
+        }
+        int steps = Math.abs(endCol - col) + Math.abs(endRow - row);
+        int last = addCell(candidates, col, row, -1);
+        for (int i = 0; i < steps; i++) {
+            if (tMaxX < tMaxY) {
+                col += stepX;
+                tMaxX += tDeltaX;
+            } else {
+                row += stepY;
+                tMaxY += tDeltaY;
+            }
+            last = addCell(candidates, col, row, last);
+        }
+    }
+
+    // adds the entries of the cell, unless it is the given last cell added.
+    // The walk only moves on, so outside of the grid it reaches the same
+    // border cell in a row, and no cell is added twice
+    private int addCell(ArrayList<Entry> candidates, int col, int row, int last) {
+        int c = Math.max(0, Math.min(this.columns - 1, col));
+        int r = Math.max(0, Math.min(this.rows - 1, row));
+        int index = r * this.columns + c;
+        if (index == last) {
+            return index;
+        }
+        List<Entry> cell = this.cells.get(index);
+        candidates.ensureCapacity(candidates.size() + cell.size());
+        // added one by one, addAll copies the cell to an array
+        for (int i = 0; i < cell.size(); i++) {
+            candidates.add(cell.get(i));
+        }
+        return index;
+    }
+
+    private int column(double x) {
+        return Math.max(0, Math.min(this.columns - 1, (int) Math.floor(x / this.cellSize)));
+    }
+
+    private int row(double y) {
+        return Math.max(0, Math.min(this.rows - 1, (int) Math.floor(y / this.cellSize)));
+    }
+
+    /**
+     * A collidable stored in the grid, with the order in which it was inserted,
+     * its collision layers and the range of cells it occupies.
+     */
+    static class Entry {
+        private final Collidable collidable;
+        private final long order;
+        private final int layer;
+        private final boolean moving;
+        private int minColumn;
+        private int maxColumn;
+        private int minRow;
+        private int maxRow;
+
+        /**
+         * Constructs a new Entry.
+         *
+         * @param collidable the stored collidable
+         * @param order      the order in which it was inserted
+         */
+        Entry(Collidable collidable, long order) {
+            this(collidable, order, false);
+        }
+
+        /**
+         * Constructs a new Entry of a static or a moving collidable.
+         *
+         * @param collidable the stored collidable
+         * @param order      the order in which it was inserted
+         * @param moving     true if the collision rectangle of the collidable
+         *                   may change over time
+         */
+        Entry(Collidable collidable, long order, boolean moving) {
+            this.collidable = collidable;
+            this.order = order;
+            // the layers of a tile map change with its bricks, and its walk
+            // skips the bricks outside of the mask itself
+            this.layer = collidable instanceof TileMap ? CollisionLayer.ALL : collidable.collisionLayer();
+            this.moving = moving;
+        }
+
+        /**
+         * Returns the stored collidable.
+         *
+         * @return the collidable
+         */
+        Collidable collidable() {
+            return this.collidable;
+        }
+
+        /**
+         * Returns the order in which the collidable was inserted.
+         *
+         * @return the insertion order
+         */
+        long order() {
+            return this.order;
+        }
+
+        /**
+         * Returns whether the collidable is moving, and so is returned by
+         * every query.
+         *
+         * @return true if the collidable is moving, false otherwise
+         */
+        boolean isMoving() {
+            return this.moving;
+        }
+
+        /**
+         * Returns the collision layers of the collidable, as they were when it
+         * was inserted (every layer for a tile map).
+         *
+         * @return the collision layers
+         */
+        int layer() {
+            return this.layer;
+        }
+    }
+}
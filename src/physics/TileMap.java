@@ -0,0 +1,462 @@
+package physics;
+
+import java.util.List;
+
+import geometry.Point;
+import geometry.Rectangle;
+import objects.Ball;
+
+/**
+ * The TileMap class represents a wall of bricks of the same size that sit on
+ * a lattice, as a grid of cells that each hold the brick in it, or nothing.
+ * A brick is found from its position in O(1), so adding and removing a brick
+ * only sets or clears its cell, and a collision query walks only through the
+ * cells the trajectory crosses, row by row, so its cost doesn't depend on the
+ * number of bricks.
+ * The tile map is added to a GameEnvironment as a single collidable, before
+ * its bricks, and the bricks that fit its lattice are then kept in its cells
+ * instead of in the environment. A query offers every brick it hits to the
+ * contact manifold like any other collidable, so the hits, the hit listeners
+ * and the reflections of the bricks are the same as when every brick is a
+ * collidable of its own. The bricks of a tile map are all ordered as if they
+ * were added to the environment when the tile map was.
+ * The tile map belongs to the collision layers of all its bricks together,
+ * and a query skips the bricks that are in none of the layers it asks for.
+ *
+ * @author Eitan Maimoni
+ * @version 19.0.2
+ * @since 2023-06-01
+ */
+public class TileMap implements Collidable {
+    // the padding of the cells a trajectory crosses, so bricks it only
+    // touches are found from both sides
+    private static final double EPSILON = 1e-6;
+    // how far (in cells) a brick may be from a lattice point and still fit it
+    private static final double ALIGNMENT_EPSILON = 1e-9;
+    private final double left;
+    private final double top;
+    private final double cellWidth;
+    private final double cellHeight;
+    private final int columns;
+    private final int rows;
+    private final Collidable[] cells;
+    // the collision layers of the brick in every cell, as they were when it
+    // was added
+    private final int[] cellLayers;
+    // the number of bricks in every layer, by the bit of the layer, and the
+    // layers that have bricks
+    private final int[] layerCounts;
+    private int layers;
+    private final Rectangle bounds;
+    private int count;
+
+    /**
+     * Constructs a new empty TileMap.
+     *
+     * @param left       the x-coordinate of the left side of the grid
+     * @param top        the y-coordinate of the top side of the grid
+     * @param cellWidth  the width of a cell (and of a brick)
+     * @param cellHeight the height of a cell (and of a brick)
+     * @param columns    the number of columns
+     * @param rows       the number of rows
+     */
+    public TileMap(double left, double top, double cellWidth, double cellHeight, int columns, int rows) {
+        this.left = left;
+        this.top = top;
+        this.cellWidth = cellWidth;
+        this.cellHeight = cellHeight;
+        this.columns = columns;
+        this.rows = rows;
+        this.cells = new Collidable[columns * rows];
+        this.cellLayers = new int[columns * rows];
+        this.layerCounts = new int[Integer.SIZE];
+        this.layers = CollisionLayer.NONE;
+        this.bounds = new Rectangle(new Point(left, top), cellWidth * columns, cellHeight * rows);
+        this.count = 0;
+    }
+
+    /**
+     * Creates an empty tile map whose lattice fits the given bricks: the
+     * cells have the size of the first brick, and the grid covers every brick
+     * of that size that sits on the lattice starting at the leftmost and the
+     * topmost of them. The bricks are not added to the tile map.
+     *
+     * @param bricks the bricks
+     * @return the tile map, or null if there are no bricks
+     */
+    public static TileMap forBricks(List<? extends Collidable> bricks) {
+        if (bricks.isEmpty()) {
+            return null;
+        }
+        Rectangle first = bricks.get(0).getCollisionRectangle();
+        double width = first.getWidth();
+        double height = first.getHeight();
+        if (!(width > 0) || !(height > 0)) {
+            return null;
+        }
+        double left = Double.POSITIVE_INFINITY;
+        double top = Double.NEGATIVE_INFINITY;
+        for (Collidable brick : bricks) {
+            Rectangle rect = brick.getCollisionRectangle();
+            if (rect.getWidth() == width && rect.getHeight() == height) {
+                left = Math.min(left, rect.getUpperLeftPoint().getX());
+                top = Math.max(top, rect.getUpperLeftPoint().getY());
+            }
+        }
+        int columns = 0;
+        int rows = 0;
+        for (Collidable brick : bricks) {
+            Rectangle rect = brick.getCollisionRectangle();
+            if (rect.getWidth() != width || rect.getHeight() != height) {
+                continue;
+            }
+            int column = latticeIndex((rect.getUpperLeftPoint().getX() - left) / width);
+            int row = latticeIndex((top - rect.getUpperLeftPoint().getY()) / height);
+            if (column >= 0 && row >= 0) {
+                columns = Math.max(columns, column + 1);
+                rows = Math.max(rows, row + 1);
+            }
+        }
+        return new TileMap(left, top, width, height, columns, rows);
+    }
+
+    // returns the index of the lattice point at the given number of cells, or
+    // -1 if it is not close to one
+    private static int latticeIndex(double cells) {
+        double index = Math.rint(cells);
+        if (Math.abs(cells - index) > ALIGNMENT_EPSILON || index > Integer.MAX_VALUE) {
+            return -1;
+        }
+        return (int) index;
+    }
+
+    // returns the cell of the given brick, or -1 if it doesn't fit the lattice
+    private int cellOf(Collidable brick) {
+        Rectangle rect = brick.getCollisionRectangle();
+        if (rect.getWidth() != this.cellWidth || rect.getHeight() != this.cellHeight) {
+            return -1;
+        }
+        int column = latticeIndex((rect.getUpperLeftPoint().getX() - this.left) / this.cellWidth);
+        int row = latticeIndex((this.top - rect.getUpperLeftPoint().getY()) / this.cellHeight);
+        if (column < 0 || row < 0 || column >= this.columns || row >= this.rows) {
+            return -1;
+        }
+        return row * this.columns + column;
+    }
+
+    /**
+     * Puts the given brick in its cell.
+     *
+     * @param brick the brick to add
+     * @return true if the brick was added, false if it doesn't fit the
+     *         lattice or its cell is taken
+     */
+    public boolean add(Collidable brick) {
+        int cell = cellOf(brick);
+        if (cell < 0 || this.cells[cell] != null) {
+            return false;
+        }
+        this.cells[cell] = brick;
+        this.cellLayers[cell] = brick.collisionLayer();
+        countLayers(this.cellLayers[cell], 1);
+        this.count++;
+        return true;
+    }
+
+    /**
+     * Clears the cell of the given brick.
+     *
+     * @param brick the brick to remove
+     * @return true if the brick was removed, false if it is not in the tile
+     *         map
+     */
+    public boolean remove(Collidable brick) {
+        int cell = cellOf(brick);
+        if (cell < 0 || this.cells[cell] != brick) {
+            return false;
+        }
+        this.cells[cell] = null;
+        countLayers(this.cellLayers[cell], -1);
+        this.count--;
+        return true;
+    }
+
+    // adds the given change to the number of bricks in each of the given
+    // layers, and updates the layers that have bricks
+    private void countLayers(int brickLayers, int change) {
+        int bits = brickLayers;
+        while (bits != 0) {
+            int bit = Integer.numberOfTrailingZeros(bits);
+            bits &= bits - 1;
+            this.layerCounts[bit] += change;
+            if (this.layerCounts[bit] == 0) {
+                this.layers &= ~(1 << bit);
+            } else {
+                this.layers |= 1 << bit;
+            }
+        }
+    }
+
+    /**
+     * Checks if the given brick is in the tile map.
+     *
+     * @param brick the brick to look for
+     * @return true if the brick is in its cell, false otherwise
+     */
+    public boolean contains(Collidable brick) {
+        int cell = cellOf(brick);
+        return cell >= 0 && this.cells[cell] == brick;
+    }
+
+    /**
+     * Returns the brick in the given cell.
+     *
+     * @param column the column of the cell
+     * @param row    the row of the cell, from the top
+     * @return the brick, or null if the cell is empty or outside the grid
+     */
+    public Collidable get(int column, int row) {
+        if (column < 0 || row < 0 || column >= this.columns || row >= this.rows) {
+            return null;
+        }
+        return this.cells[row * this.columns + column];
+    }
+
+    /**
+     * Checks if there is a brick in the given cell.
+     *
+     * @param column the column of the cell
+     * @param row    the row of the cell, from the top
+     * @return true if the cell holds a brick, false otherwise
+     */
+    public boolean isOccupied(int column, int row) {
+        return get(column, row) != null;
+    }
+
+    /**
+     * Returns the number of columns of the grid.
+     *
+     * @return the number of columns
+     */
+    public int getColumns() {
+        return this.columns;
+    }
+
+    /**
+     * Returns the number of rows of the grid.
+     *
+     * @return the number of rows
+     */
+    public int getRows() {
+        return this.rows;
+    }
+
+    /**
+     * Returns the number of bricks in the tile map.
+     *
+     * @return the number of bricks
+     */
+    public int count() {
+        return this.count;
+    }
+
+    /**
+     * Offers every brick the segment between the two given points hits to the
+     * manifold, walking through the rows of cells it crosses in the order it
+     * crosses them, and through the cells of every row from the side it
+     * enters. The walk stops at the first row that is farther than the
+     * closest collision found. Bricks in none of the layers of the mask are
+     * skipped.
+     *
+     * @param manifold the manifold to offer the bricks to
+     * @param x1       the x-coordinate of the segment start
+     * @param y1       the y-coordinate of the segment start
+     * @param x2       the x-coordinate of the segment end
+     * @param y2       the y-coordinate of the segment end
+     * @param order    the order in which the tile map was added to the
+     *                 environment
+     * @param mask     a bitmask of the CollisionLayer constants to collide with
+     */
+    void offerContacts(ContactManifold manifold, double x1, double y1, double x2, double y2, long order,
+            int mask) {
+        walk(manifold, x1, y1, x2, y2, order, mask, false);
+    }
+
+    /**
+     * Offers every brick the segment between the two given points comes
+     * close to, at the point it enters the padding of the brick, like
+     * GameEnvironment.timeOfImpact does for the other collidables. Bricks in
+     * none of the layers of the mask are skipped.
+     *
+     * @param manifold the manifold to offer the bricks to
+     * @param x1       the x-coordinate of the segment start
+     * @param y1       the y-coordinate of the segment start
+     * @param x2       the x-coordinate of the segment end
+     * @param y2       the y-coordinate of the segment end
+     * @param order    the order in which the tile map was added to the
+     *                 environment
+     * @param mask     a bitmask of the CollisionLayer constants to collide with
+     */
+    void offerEntries(ContactManifold manifold, double x1, double y1, double x2, double y2, long order,
+            int mask) {
+        walk(manifold, x1, y1, x2, y2, order, mask, true);
+    }
+
+    // walks through the cells the segment crosses, offering the collisions
+    // with the bricks, or where the segment enters their padding
+    private void walk(ContactManifold manifold, double x1, double y1, double x2, double y2, long order,
+            int mask, boolean entries) {
+        if ((this.layers & mask) == 0) {
+            return;
+        }
+        double minY = Math.min(y1, y2) - EPSILON;
+        double maxY = Math.max(y1, y2) + EPSILON;
+        if (maxY < this.top - this.rows * this.cellHeight || minY > this.top
+                || Math.max(x1, x2) + EPSILON < this.left
+                || Math.min(x1, x2) - EPSILON > this.left + this.columns * this.cellWidth) {
+            return;
+        }
+        double dy = y2 - y1;
+        int topRow = Math.max(0, row(maxY));
+        int bottomRow = Math.min(this.rows - 1, row(minY));
+        // going up, the rows are crossed from the bottom
+        int rowStep = dy > 0 ? -1 : 1;
+        int row = dy > 0 ? bottomRow : topRow;
+        int lastRow = dy > 0 ? topRow : bottomRow;
+        while (true) {
+            offerRow(manifold, x1, y1, x2, y2, order, row, mask, entries);
+            if (row == lastRow) {
+                return;
+            }
+            if (manifold.hasCollision()) {
+                // the (padded) border the segment crosses into the next row
+                double borderY = dy > 0 ? this.top - row * this.cellHeight - EPSILON
+                        : this.top - (row + 1) * this.cellHeight + EPSILON;
+                double dx = x2 - x1;
+                double length = Math.sqrt(dx * dx + dy * dy);
+                if ((borderY - y1) / dy * length - EPSILON > manifold.distance()) {
+                    return;
+                }
+            }
+            row += rowStep;
+        }
+    }
+
+    private void offerRow(ContactManifold manifold, double x1, double y1, double x2, double y2, long order,
+            int row, int mask, boolean entries) {
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        // the part of the segment inside the (padded) row
+        double fromX = x1;
+        double toX = x2;
+        if (dy != 0) {
+            double rowTop = this.top - row * this.cellHeight + EPSILON;
+            double rowBottom = rowTop - this.cellHeight - 2 * EPSILON;
+            fromX = x1 + dx * clamp((rowBottom - y1) / dy);
+            toX = x1 + dx * clamp((rowTop - y1) / dy);
+        }
+        int firstColumn = column(Math.min(fromX, toX) - EPSILON);
+        int lastColumn = column(Math.max(fromX, toX) + EPSILON);
+        if (lastColumn < 0 || firstColumn >= this.columns) {
+            return;
+        }
+        firstColumn = Math.max(0, firstColumn);
+        lastColumn = Math.min(this.columns - 1, lastColumn);
+        int base = row * this.columns;
+        if (dx >= 0) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                offerCell(manifold, x1, y1, x2, y2, order, base + column, mask, entries);
+            }
+        } else {
+            for (int column = lastColumn; column >= firstColumn; column--) {
+                offerCell(manifold, x1, y1, x2, y2, order, base + column, mask, entries);
+            }
+        }
+    }
+
+    private void offerCell(ContactManifold manifold, double x1, double y1, double x2, double y2, long order,
+            int cell, int mask, boolean entries) {
+        Collidable brick = this.cells[cell];
+        int layer = this.cellLayers[cell];
+        if (brick == null || (layer & mask) == 0) {
+            return;
+        }
+        if (entries) {
+            GameEnvironment.offerEntry(manifold, x1, y1, x2, y2, brick, order, layer);
+        } else {
+            GameEnvironment.offer(manifold, x1, y1, x2, y2, brick, order, layer);
+        }
+    }
+
+    private static double clamp(double t) {
+        return Math.max(0, Math.min(1, t));
+    }
+
+    private int row(double y) {
+        return (int) Math.floor((this.top - y) / this.cellHeight);
+    }
+
+    private int column(double x) {
+        return (int) Math.floor((x - this.left) / this.cellWidth);
+    }
+
+    // returns the brick whose rectangle contains the given point, or null
+    private Collidable brickAt(double x, double y) {
+        int fromColumn = Math.max(0, column(x - EPSILON));
+        int toColumn = Math.min(this.columns - 1, column(x + EPSILON));
+        int fromRow = Math.max(0, row(y + EPSILON));
+        int toRow = Math.min(this.rows - 1, row(y - EPSILON));
+        for (int row = fromRow; row <= toRow; row++) {
+            for (int column = fromColumn; column <= toColumn; column++) {
+                Collidable brick = this.cells[row * this.columns + column];
+                if (brick != null) {
+                    return brick;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Rectangle getCollisionRectangle() {
+        return this.bounds;
+    }
+
+    /**
+     * Hits the brick at the collision point. A query never returns the tile
+     * map itself but the bricks it hits, so this is only called directly.
+     *
+     * @param hitter          the ball that hit the tile map
+     * @param collisionPoint  the point of the collision
+     * @param currentVelocity the velocity of the ball
+     * @return the velocity the brick sets, or the given velocity if there is
+     *         no brick at the point
+     */
+    @Override
+    public Velocity hit(Ball hitter, Point collisionPoint, Velocity currentVelocity) {
+        Collidable brick = brickAt(collisionPoint.getX(), collisionPoint.getY());
+        if (brick == null) {
+            return currentVelocity;
+        }
+        return brick.hit(hitter, collisionPoint, currentVelocity);
+    }
+
+    @Override
+    public void hit(Ball hitter, double collisionX, double collisionY) {
+        Collidable brick = brickAt(collisionX, collisionY);
+        if (brick != null) {
+            brick.hit(hitter, collisionX, collisionY);
+        }
+    }
+
+    /**
+     * Returns the collision layers of all the bricks in the tile map together.
+     *
+     * @return a bitmask of CollisionLayer constants, NONE if there are no
+     *         bricks
+     */
+    @Override
+    public int collisionLayer() {
+        return this.layers;
+    }
+}
@@ -0,0 +1,66 @@
+package physics;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The VectorBoxKernel class tests several rectangles of a BoxBatch per
+ * instruction, with the Vector API (the incubating module
+ * jdk.incubator.vector), as many as fit in the widest vector of the CPU.
+ * It computes the same values as ScalarBoxKernel, lane by lane, so it finds
+ * the same rectangles.
+ * The class is only loaded by BoxBatch, which falls back to
+ * ScalarBoxKernel when the module is not available (it is only available if
+ * the game is compiled and run with "--add-modules jdk.incubator.vector").
+ *
+ * @author Eitan Maimoni
+ * @version 19.0.2
+ * @since 2023-06-01
+ */
+class VectorBoxKernel implements BoxKernel {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public int candidates(BoxBatch batch, double x1, double y1, double x2, double y2, double margin, int[] found) {
+        double[] minX = batch.minX();
+        double[] maxX = batch.maxX();
+        double[] minY = batch.minY();
+        double[] maxY = batch.maxY();
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double invDx = 1 / dx;
+        double invDy = 1 / dy;
+        int size = batch.size();
+        if (dx == 0 || dy == 0) {
+            // a segment along an axis (a containment test on that axis) is
+            // rare, and is tested one by one
+            return ScalarBoxKernel.scan(batch, 0, size, x1, y1, x2, y2, margin, found, 0);
+        }
+        int bound = SPECIES.loopBound(size);
+        int count = 0;
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            DoubleVector t1 = DoubleVector.fromArray(SPECIES, minX, i).sub(margin).sub(x1).mul(invDx);
+            DoubleVector t2 = DoubleVector.fromArray(SPECIES, maxX, i).add(margin).sub(x1).mul(invDx);
+            DoubleVector t3 = DoubleVector.fromArray(SPECIES, minY, i).sub(margin).sub(y1).mul(invDy);
+            DoubleVector t4 = DoubleVector.fromArray(SPECIES, maxY, i).add(margin).sub(y1).mul(invDy);
+            // the part of the segment inside both slabs, clipped to the segment
+            DoubleVector near = t1.min(t2).max(t3.min(t4)).max(0);
+            DoubleVector far = t1.max(t2).min(t3.max(t4)).min(1);
+            VectorMask<Double> touched = near.compare(VectorOperators.LE, far);
+            if (touched.anyTrue()) {
+                // few vectors touch the segment, and their rectangles are
+                // tested again one by one (reading the lanes of the mask
+                // allocates)
+                count = ScalarBoxKernel.scan(batch, i, i + SPECIES.length(), x1, y1, x2, y2, margin, found, count);
+            }
+        }
+        return ScalarBoxKernel.scan(batch, bound, size, x1, y1, x2, y2, margin, found, count);
+    }
+
+    @Override
+    public boolean isVectorized() {
+        return true;
+    }
+}
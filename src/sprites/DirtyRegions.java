@@ -0,0 +1,267 @@
+package sprites;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+/**
+ * The DirtyRegions class keeps the regions of the screen that changed since
+ * the last frame, and have to be drawn again.
+ * The screen is divided into square tiles, and a region marks every tile it
+ * touches, so marking a region costs the same however many regions overlap.
+ * The regions are given in screen coordinates (y grows downwards).
+ *
+ * @author Eitan Maimoni
+ * @version 19.0.2
+ * @since 2023-06-01
+ */
+public class DirtyRegions {
+    private static final int TILE_SIZE = 16;
+    private static final int INITIAL_RECTANGLES = 8;
+    private final int width;
+    private final int height;
+    private final int columns;
+    private final int rows;
+    private final boolean[] tiles;
+    private int dirtyCount;
+    // the rectangles covering the dirty tiles, and the runs of tiles of the
+    // last two rows of tiles while computing them
+    private Rectangle[] rectangles;
+    private int rectangleCount;
+    private final int[] openRuns;
+    private final int[] nextRuns;
+
+    /**
+     * Constructs a new DirtyRegions for a screen of the given size, in which
+     * the whole screen is dirty.
+     *
+     * @param width  the width of the screen
+     * @param height the height of the screen
+     */
+    public DirtyRegions(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.columns = (width + TILE_SIZE - 1) / TILE_SIZE;
+        this.rows = (height + TILE_SIZE - 1) / TILE_SIZE;
+        this.tiles = new boolean[this.columns * this.rows];
+        this.rectangles = new Rectangle[0];
+        this.rectangleCount = 0;
+        this.openRuns = new int[this.columns];
+        this.nextRuns = new int[this.columns];
+        addAll();
+    }
+
+    /**
+     * Returns the width of the screen.
+     *
+     * @return the width
+     */
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * Returns the height of the screen.
+     *
+     * @return the height
+     */
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Marks the given rectangle as dirty. The parts of the rectangle outside
+     * the screen are ignored.
+     *
+     * @param x the x coordinate of the left side of the rectangle
+     * @param y the y coordinate of the top side of the rectangle
+     * @param w the width of the rectangle
+     * @param h the height of the rectangle
+     */
+    public void add(int x, int y, int w, int h) {
+        if (w <= 0 || h <= 0 || isAll()) {
+            return;
+        }
+        int fromColumn = Math.max(0, x / TILE_SIZE);
+        int toColumn = Math.min(this.columns - 1, (x + w - 1) / TILE_SIZE);
+        int fromRow = Math.max(0, y / TILE_SIZE);
+        int toRow = Math.min(this.rows - 1, (y + h - 1) / TILE_SIZE);
+        for (int row = fromRow; row <= toRow; row++) {
+            for (int column = fromColumn; column <= toColumn; column++) {
+                int tile = row * this.columns + column;
+                if (!this.tiles[tile]) {
+                    this.tiles[tile] = true;
+                    this.dirtyCount++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks the whole screen as dirty.
+     */
+    public void addAll() {
+        Arrays.fill(this.tiles, true);
+        this.dirtyCount = this.tiles.length;
+    }
+
+    /**
+     * Marks the whole screen as clean.
+     */
+    public void clear() {
+        Arrays.fill(this.tiles, false);
+        this.dirtyCount = 0;
+    }
+
+    /**
+     * Checks if nothing is dirty.
+     *
+     * @return true if no region is dirty, false otherwise
+     */
+    public boolean isEmpty() {
+        return this.dirtyCount == 0;
+    }
+
+    /**
+     * Checks if the whole screen is dirty.
+     *
+     * @return true if every region is dirty, false otherwise
+     */
+    public boolean isAll() {
+        return this.dirtyCount == this.tiles.length;
+    }
+
+    /**
+     * Checks if any part of the given rectangle is dirty.
+     *
+     * @param x the x coordinate of the left side of the rectangle
+     * @param y the y coordinate of the top side of the rectangle
+     * @param w the width of the rectangle
+     * @param h the height of the rectangle
+     * @return true if the rectangle has to be drawn again, false otherwise
+     */
+    public boolean intersects(int x, int y, int w, int h) {
+        if (isAll()) {
+            return true;
+        }
+        if (isEmpty() || w <= 0 || h <= 0) {
+            return false;
+        }
+        int fromColumn = Math.max(0, x / TILE_SIZE);
+        int toColumn = Math.min(this.columns - 1, (x + w - 1) / TILE_SIZE);
+        int fromRow = Math.max(0, y / TILE_SIZE);
+        int toRow = Math.min(this.rows - 1, (y + h - 1) / TILE_SIZE);
+        for (int row = fromRow; row <= toRow; row++) {
+            for (int column = fromColumn; column <= toColumn; column++) {
+                if (this.tiles[row * this.columns + column]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Covers the dirty regions with rectangles, which can then be read with
+     * getRectangle. Every run of dirty tiles in a row of tiles is a
+     * rectangle, and runs that repeat in the next rows are merged into it.
+     * If there would be more than the given number of rectangles, the
+     * bounding rectangle of all the regions is used instead.
+     *
+     * @param maxRectangles the maximal number of rectangles
+     * @return the number of rectangles
+     */
+    public int computeRectangles(int maxRectangles) {
+        this.rectangleCount = 0;
+        // the rectangle every run of the previous row of tiles extends
+        int[] open = this.openRuns;
+        int openCount = 0;
+        int[] next = this.nextRuns;
+        for (int row = 0; row < this.rows; row++) {
+            int nextCount = 0;
+            int column = 0;
+            while (column < this.columns) {
+                if (!this.tiles[row * this.columns + column]) {
+                    column++;
+                    continue;
+                }
+                int start = column;
+                while (column < this.columns && this.tiles[row * this.columns + column]) {
+                    column++;
+                }
+                int index = -1;
+                for (int k = 0; k < openCount; k++) {
+                    Rectangle r = this.rectangles[open[k]];
+                    if (r.x == start * TILE_SIZE && r.width == columnsWidth(start, column)) {
+                        index = open[k];
+                        break;
+                    }
+                }
+                if (index >= 0) {
+                    this.rectangles[index].height = Math.min(this.height, (row + 1) * TILE_SIZE)
+                            - this.rectangles[index].y;
+                } else {
+                    if (this.rectangleCount == maxRectangles) {
+                        return computeBounds();
+                    }
+                    index = newRectangle(start * TILE_SIZE, row * TILE_SIZE, columnsWidth(start, column),
+                            Math.min(this.height, (row + 1) * TILE_SIZE) - row * TILE_SIZE);
+                }
+                next[nextCount++] = index;
+            }
+            int[] swap = open;
+            open = next;
+            next = swap;
+            openCount = nextCount;
+        }
+        return this.rectangleCount;
+    }
+
+    /**
+     * Returns one of the rectangles found by computeRectangles.
+     *
+     * @param i the index of the rectangle
+     * @return the rectangle, in screen coordinates
+     */
+    public Rectangle getRectangle(int i) {
+        return this.rectangles[i];
+    }
+
+    private int columnsWidth(int fromColumn, int toColumn) {
+        return Math.min(this.width, toColumn * TILE_SIZE) - fromColumn * TILE_SIZE;
+    }
+
+    private int newRectangle(int x, int y, int w, int h) {
+        if (this.rectangleCount == this.rectangles.length) {
+            this.rectangles = Arrays.copyOf(this.rectangles, Math.max(INITIAL_RECTANGLES, this.rectangleCount * 2));
+            for (int i = this.rectangleCount; i < this.rectangles.length; i++) {
+                this.rectangles[i] = new Rectangle();
+            }
+        }
+        this.rectangles[this.rectangleCount].setBounds(x, y, w, h);
+        return this.rectangleCount++;
+    }
+
+    // covers all the dirty tiles with a single rectangle
+    private int computeBounds() {
+        int minColumn = this.columns;
+        int maxColumn = -1;
+        int minRow = this.rows;
+        int maxRow = -1;
+        for (int row = 0; row < this.rows; row++) {
+            for (int column = 0; column < this.columns; column++) {
+                if (this.tiles[row * this.columns + column]) {
+                    minColumn = Math.min(minColumn, column);
+                    maxColumn = Math.max(maxColumn, column);
+                    minRow = Math.min(minRow, row);
+                    maxRow = Math.max(maxRow, row);
+                }
+            }
+        }
+        this.rectangleCount = 0;
+        if (maxColumn < 0) {
+            return 0;
+        }
+        return newRectangle(minColumn * TILE_SIZE, minRow * TILE_SIZE, columnsWidth(minColumn, maxColumn + 1),
+                Math.min(this.height, (maxRow + 1) * TILE_SIZE) - minRow * TILE_SIZE) + 1;
+    }
+}
@@ -0,0 +1,44 @@
+package sprites;
+
+import java.awt.Rectangle;
+
+/**
+ * The RegionSprite interface represents a sprite that knows which regions of
+ * the screen it draws on, so only the regions that changed since the last
+ * frame have to be drawn again.
+ * A sprite that is not a RegionSprite is assumed to change the whole screen
+ * every frame.
+ *
+ * @author Eitan Maimoni
+ * @version 19.0.2
+ * @since 2023-06-01
+ */
+public interface RegionSprite extends Sprite {
+    /**
+     * Marks the regions that look different when the sprite is drawn with the
+     * given alpha than when it was last drawn: where it was, and where it will
+     * be drawn. Called before the sprite is drawn.
+     *
+     * @param regions the dirty regions to mark
+     * @param alpha   how far between the previous position (0) and the
+     *                current position (1) the sprite will be drawn
+     */
+    void addDirtyRegions(DirtyRegions regions, double alpha);
+
+    /**
+     * Marks the whole region the sprite covers on the screen. Called when the
+     * sprite is added or removed.
+     *
+     * @param regions the dirty regions to mark
+     */
+    void addRegion(DirtyRegions regions);
+
+    /**
+     * Checks if the sprite draws on the given area of the screen. A sprite
+     * that doesn't is not drawn when the area is drawn again.
+     *
+     * @param area the area, in screen coordinates
+     * @return true if the sprite has to be drawn, false otherwise
+     */
+    boolean intersects(Rectangle area);
+}
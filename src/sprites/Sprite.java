@@ -23,4 +23,29 @@ public interface Sprite {
      * Notifies the sprite that a unit of time has passed in the game.
      */
     void timePassed();
+
+    /**
+     * Notifies the sprite that the given amount of time has passed in the
+     * game. Sprites that move override it to move by a part of their speed, by
+     * default the sprite is notified a whole unit of time has passed.
+     *
+     * @param dt the amount of time that passed, in units of time (frames of
+     *           1/60 of a second)
+     */
+    default void timePassed(double dt) {
+        timePassed();
+    }
+
+    /**
+     * Draws the sprite on the given DrawSurface, in between its position
+     * before and after the last time that passed. Sprites that move override
+     * it, by default the sprite is drawn where it is.
+     *
+     * @param d     the DrawSurface on which to draw the sprite
+     * @param alpha how far between the previous position (0) and the
+     *              current position (1) to draw the sprite
+     */
+    default void drawOn(DrawSurface d, double alpha) {
+        drawOn(d);
+    }
 }
\ No newline at end of file
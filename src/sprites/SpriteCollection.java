@@ -1,25 +1,68 @@
 package sprites;
 
+import animations.ImageDrawSurface;
 import biuoop.DrawSurface;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+import utils.DeferredList;
+import utils.FrameProfiler;
 
 /**
  * A collection of sprites that can be drawn on and updated.
+ * Sprites added or removed while the sprites are notified that time passed
+ * (like a block removed when it is hit) are added or removed when all the
+ * sprites were notified, so the collection is never copied.
+ * The collection can also draw in a dirty regions mode, in which it keeps the
+ * last frame in an image, draws again only the regions of the screen that
+ * changed since (a moved ball or paddle, a removed block, a new score), and
+ * then draws the image on the surface.
+ * While its profiler tracks allocations, the bytes every sprite allocates
+ * when it is notified that time passed or drawn are measured and attributed
+ * to the class of the sprite.
  *
  * @author Eitan Maimoni
  * @version 19.0.2
  * @since 2023-06-01
  */
 public class SpriteCollection {
-    private final List<Sprite> sprites;
+    private static final int MAX_DIRTY_RECTANGLES = 4;
+    // measures nothing, for collections that are not profiled
+    private static final FrameProfiler NO_PROFILER = new FrameProfiler(0);
+    private final DeferredList<Sprite> sprites;
+    // the last frame and the regions that changed since, in dirty regions mode
+    private ImageDrawSurface frame;
+    private DirtyRegions dirty;
+    private FrameProfiler profiler;
 
     /**
      * Constructs a new sprite collection.
      */
     public SpriteCollection() {
-        this.sprites = new ArrayList<>();
+        this.sprites = new DeferredList<>();
+        this.profiler = NO_PROFILER;
+    }
+
+    /**
+     * Sets the profiler the allocations of the sprites are measured into.
+     *
+     * @param frameProfiler the profiler, or null to not measure the sprites
+     */
+    public void setProfiler(FrameProfiler frameProfiler) {
+        this.profiler = frameProfiler == null ? NO_PROFILER : frameProfiler;
+    }
+
+    // marks the region of a sprite that was added or removed
+    private void addRegion(Sprite s) {
+        if (this.dirty == null) {
+            return;
+        }
+        if (s instanceof RegionSprite) {
+            ((RegionSprite) s).addRegion(this.dirty);
+        } else {
+            this.dirty.addAll();
+        }
     }
 
     /**
@@ -32,6 +75,7 @@ public class SpriteCollection {
             return;
         }
         this.sprites.add(s);
+        addRegion(s);
     }
 
     /**
@@ -43,17 +87,55 @@ public class SpriteCollection {
         if (s == null) {
             return;
         }
-        this.sprites.remove(s);
+        if (this.sprites.remove(s)) {
+            addRegion(s);
+        }
     }
 
     /**
      * Notifies all sprites that a unit of time has passed.
      */
     public void notifyAllTimePassed() {
-        // Make a copy of the hitListeners before iterating over them.
-        List<Sprite> sprites = new ArrayList<Sprite>(this.sprites);
-        for (Sprite s : sprites) {
-            s.timePassed();
+        notifyAllTimePassed(1.0);
+    }
+
+    /**
+     * Notifies all sprites that the given amount of time has passed.
+     *
+     * @param dt the amount of time that passed, in frames of 1/60 of a second
+     */
+    public void notifyAllTimePassed(double dt) {
+        this.sprites.beginIteration();
+        try {
+            for (int i = 0; i < this.sprites.size(); i++) {
+                Sprite s = this.sprites.get(i);
+                if (s != null) {
+                    long start = this.profiler.startSprite();
+                    s.timePassed(dt);
+                    this.profiler.stopSprite(s, start);
+                }
+            }
+        } finally {
+            this.sprites.endIteration();
+        }
+    }
+
+    /**
+     * Draws all sprites on the given draw surface, in between their previous
+     * and current positions.
+     *
+     * @param d     the draw surface to draw on
+     * @param alpha how far between the previous position (0) and the current
+     *              position (1) to draw the sprites
+     */
+    public void drawAllOn(DrawSurface d, double alpha) {
+        for (int i = 0; i < this.sprites.size(); i++) {
+            Sprite s = this.sprites.get(i);
+            if (s != null) {
+                long start = this.profiler.startSprite();
+                s.drawOn(d, alpha);
+                this.profiler.stopSprite(s, start);
+            }
         }
     }
 
@@ -63,8 +145,88 @@ public class SpriteCollection {
      * @param d the draw surface to draw on
      */
     public void drawAllOn(DrawSurface d) {
-        for (Sprite s : sprites) {
-            s.drawOn(d);
+        for (int i = 0; i < this.sprites.size(); i++) {
+            Sprite s = this.sprites.get(i);
+            if (s != null) {
+                long start = this.profiler.startSprite();
+                s.drawOn(d);
+                this.profiler.stopSprite(s, start);
+            }
+        }
+    }
+
+    /**
+     * Draws the given background and all the sprites on the given surface,
+     * drawing again only the regions that changed since the last call.
+     * The frame is kept in an image between calls, so nothing else may draw
+     * the sprites of the collection on the image, and the whole image is
+     * drawn on the surface at the end. The first call draws everything.
+     *
+     * @param d          the draw surface to draw on
+     * @param alpha      how far between the previous position (0) and the
+     *                   current position (1) to draw the sprites
+     * @param background the background, drawn before the sprites
+     */
+    public void drawDirtyOn(DrawSurface d, double alpha, Sprite background) {
+        if (this.frame == null || this.frame.getWidth() != d.getWidth() || this.frame.getHeight() != d.getHeight()) {
+            if (this.frame != null) {
+                this.frame.dispose();
+            }
+            this.frame = new ImageDrawSurface(
+                    new BufferedImage(d.getWidth(), d.getHeight(), BufferedImage.TYPE_INT_RGB));
+            this.dirty = new DirtyRegions(d.getWidth(), d.getHeight());
+        }
+        markDirty(background, alpha);
+        for (int i = 0; i < this.sprites.size(); i++) {
+            Sprite s = this.sprites.get(i);
+            if (s != null) {
+                markDirty(s, alpha);
+            }
+        }
+        if (this.dirty.isAll()) {
+            this.frame.setClip(null);
+            drawAll(this.frame.getImage().getRaster().getBounds(), alpha, background);
+        } else if (!this.dirty.isEmpty()) {
+            // every rectangle is drawn with a rectangular clip, which draws
+            // exactly the same pixels as drawing with no clip
+            int count = this.dirty.computeRectangles(MAX_DIRTY_RECTANGLES);
+            for (int i = 0; i < count; i++) {
+                Rectangle area = this.dirty.getRectangle(i);
+                this.frame.setClip(area);
+                drawAll(area, alpha, background);
+            }
+        }
+        this.dirty.clear();
+        d.drawImage(0, 0, this.frame.getImage());
+    }
+
+    private void markDirty(Sprite s, double alpha) {
+        if (this.dirty.isAll()) {
+            return;
+        }
+        if (s instanceof RegionSprite) {
+            ((RegionSprite) s).addDirtyRegions(this.dirty, alpha);
+        } else {
+            this.dirty.addAll();
+        }
+    }
+
+    // draws the background and the sprites that draw on the given area
+    private void drawAll(Rectangle area, double alpha, Sprite background) {
+        drawIfIntersects(background, area, alpha);
+        for (int i = 0; i < this.sprites.size(); i++) {
+            Sprite s = this.sprites.get(i);
+            if (s != null) {
+                drawIfIntersects(s, area, alpha);
+            }
+        }
+    }
+
+    private void drawIfIntersects(Sprite s, Rectangle area, double alpha) {
+        if (!(s instanceof RegionSprite) || ((RegionSprite) s).intersects(area)) {
+            long start = this.profiler.startSprite();
+            s.drawOn(this.frame, alpha);
+            this.profiler.stopSprite(s, start);
         }
     }
-}
\ No newline at end of file
+}
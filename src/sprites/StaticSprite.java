@@ -0,0 +1,21 @@
+package sprites;
+
+/**
+ * The StaticSprite interface represents a sprite that looks the same from
+ * frame to frame, until it reports a change.
+ * Such a sprite can be drawn once into an image, and the image drawn instead
+ * of the sprite, as long as the version of the sprite stays the same.
+ *
+ * @author Eitan Maimoni
+ * @version 19.0.2
+ * @since 2023-06-01
+ */
+public interface StaticSprite extends Sprite {
+    /**
+     * Returns the version of the look of the sprite, which changes every time
+     * the sprite starts to look different.
+     *
+     * @return the version of the sprite
+     */
+    long getVersion();
+}
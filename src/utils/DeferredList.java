@@ -0,0 +1,237 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The DeferredList class is an ordered list of distinct objects, that can be
+ * changed while it is iterated over without copying it.
+ * Every object keeps its index in the list (in an IdentityIndexMap, so it is
+ * never boxed), so removing it only clears its slot in O(1), and the cleared slots are compacted (keeping the order of the
+ * other objects) in one batch later. While the list is iterated over (between
+ * beginIteration and endIteration), additions and removals are queued, and
+ * applied in the order they were made when the iteration ends, so the
+ * iteration sees the list as it was when it began.
+ * An iteration goes over the indices from 0 to size, skipping the cleared
+ * slots, for which get returns null.
+ *
+ * @param <T> the type of the objects in the list
+ * @author Eitan Maimoni
+ * @version 19.0.2
+ * @since 2023-06-01
+ */
+public class DeferredList<T> {
+    private static final int INITIAL_CAPACITY = 8;
+    private Object[] items;
+    private int size;
+    private int clearedCount;
+    private final IdentityIndexMap indices;
+    // the changes made while iterating, in order
+    private Object[] pending;
+    private boolean[] pendingAdd;
+    private int pendingCount;
+    private int iterations;
+
+    /**
+     * Constructs a new empty DeferredList.
+     */
+    public DeferredList() {
+        this.items = new Object[INITIAL_CAPACITY];
+        this.size = 0;
+        this.clearedCount = 0;
+        this.indices = new IdentityIndexMap();
+        this.pending = new Object[INITIAL_CAPACITY];
+        this.pendingAdd = new boolean[INITIAL_CAPACITY];
+        this.pendingCount = 0;
+        this.iterations = 0;
+    }
+
+    /**
+     * Adds the given object to the end of the list. If the list is iterated
+     * over, the object is added when the iteration ends.
+     * An object that is already in the list is not added again.
+     *
+     * @param item the object to add
+     */
+    public void add(T item) {
+        if (this.iterations > 0) {
+            queue(item, true);
+            return;
+        }
+        if (this.indices.containsKey(item)) {
+            return;
+        }
+        if (this.size == this.items.length) {
+            compact();
+            if (this.size == this.items.length) {
+                this.items = Arrays.copyOf(this.items, this.size * 2);
+            }
+        }
+        this.indices.put(item, this.size);
+        this.items[this.size++] = item;
+    }
+
+    /**
+     * Removes the given object from the list. If the list is iterated over,
+     * the object is removed when the iteration ends.
+     *
+     * @param item the object to remove
+     * @return true if the object is (or will be) removed, false if it is not
+     *         in the list
+     */
+    public boolean remove(T item) {
+        if (this.iterations > 0) {
+            boolean present = willContain(item);
+            queue(item, false);
+            return present;
+        }
+        int index = this.indices.remove(item);
+        if (index == IdentityIndexMap.MISSING) {
+            return false;
+        }
+        this.items[index] = null;
+        this.clearedCount++;
+        // the cleared slots are compacted at the latest when they are half
+        // the list, so they cost O(1) per removal
+        if (2 * this.clearedCount > this.size) {
+            compact();
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the given object is in the list.
+     *
+     * @param item the object to look for
+     * @return true if the object is in the list, false otherwise
+     */
+    public boolean contains(T item) {
+        return this.indices.containsKey(item);
+    }
+
+    /**
+     * Returns the number of slots in the list, including the cleared slots.
+     *
+     * @return the number of slots to iterate over
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the number of objects in the list.
+     *
+     * @return the number of objects
+     */
+    public int count() {
+        return this.size - this.clearedCount;
+    }
+
+    /**
+     * Returns the object in the given slot.
+     *
+     * @param index the index of the slot
+     * @return the object, or null if the slot was cleared
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        return (T) this.items[index];
+    }
+
+    /**
+     * Returns a new list of the objects in the list, in order.
+     *
+     * @return an unmodifiable list of the objects
+     */
+    public List<T> toList() {
+        List<T> list = new ArrayList<>(count());
+        for (int i = 0; i < this.size; i++) {
+            T item = get(i);
+            if (item != null) {
+                list.add(item);
+            }
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Starts iterating over the list. Until the iteration ends, additions and
+     * removals are queued. Iterations may be nested.
+     */
+    public void beginIteration() {
+        this.iterations++;
+    }
+
+    /**
+     * Ends iterating over the list. When the outermost iteration ends, the
+     * queued additions and removals are applied, and the cleared slots are
+     * compacted.
+     */
+    @SuppressWarnings("unchecked")
+    public void endIteration() {
+        this.iterations--;
+        if (this.iterations > 0) {
+            return;
+        }
+        for (int i = 0; i < this.pendingCount; i++) {
+            T item = (T) this.pending[i];
+            this.pending[i] = null;
+            if (this.pendingAdd[i]) {
+                add(item);
+            } else {
+                remove(item);
+            }
+        }
+        this.pendingCount = 0;
+        compact();
+    }
+
+    /**
+     * Compacts the cleared slots of the list, keeping the order of the
+     * objects, unless the list is iterated over.
+     */
+    public void compact() {
+        if (this.clearedCount == 0 || this.iterations > 0) {
+            return;
+        }
+        int j = 0;
+        for (int i = 0; i < this.size; i++) {
+            Object item = this.items[i];
+            if (item == null) {
+                continue;
+            }
+            if (i != j) {
+                this.items[j] = item;
+                this.indices.put(item, j);
+            }
+            j++;
+        }
+        Arrays.fill(this.items, j, this.size, null);
+        this.size = j;
+        this.clearedCount = 0;
+    }
+
+    // checks if the given object will be in the list once the changes queued
+    // so far are applied
+    private boolean willContain(T item) {
+        boolean present = this.indices.containsKey(item);
+        for (int i = 0; i < this.pendingCount; i++) {
+            if (this.pending[i] == item) {
+                present = this.pendingAdd[i];
+            }
+        }
+        return present;
+    }
+
+    private void queue(T item, boolean add) {
+        if (this.pendingCount == this.pending.length) {
+            this.pending = Arrays.copyOf(this.pending, this.pendingCount * 2);
+            this.pendingAdd = Arrays.copyOf(this.pendingAdd, this.pendingCount * 2);
+        }
+        this.pending[this.pendingCount] = item;
+        this.pendingAdd[this.pendingCount] = add;
+        this.pendingCount++;
+    }
+}
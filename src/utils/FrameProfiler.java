@@ -0,0 +1,673 @@
+package utils;
+
+import com.sun.management.ThreadMXBean;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The FrameProfiler class measures how long every phase of a frame takes,
+ * in nanoseconds, and keeps the times of every frame of the current level.
+ * A phase is measured by taking a start time, and adding the time since it to
+ * the phase when the phase ends. A phase may be measured several times in a
+ * frame (like the collision queries of every ball), and the times are added
+ * up. The physics phase includes the collision queries and the hits.
+ * Besides the times, the profiler counts events of every frame (like the
+ * collisions the balls resolved), which are kept and written like the times.
+ * When the profiler is disabled, start returns without reading the clock and
+ * stop returns at once, so the measuring costs a single check.
+ * The profiler can also track allocations (see setAllocationTracking): it then
+ * reads how many bytes the thread allocated around every frame and every
+ * phase, and around every sprite the sprites of the frame are attributed to
+ * (by class). The bytes of a frame are counted as the ALLOCATED_BYTES counter,
+ * and a level whose steady state (the frames after a warm-up) allocates more
+ * than a budget of bytes per frame is reported (see getBudgetViolations).
+ * Only the thread that runs the frames is measured, the balls found in
+ * parallel on the threads of a pool are not.
+ *
+ * @author Eitan Maimoni
+ * @version 19.0.2
+ * @since 2023-06-01
+ */
+public class FrameProfiler {
+    /**
+     * Drawing the background.
+     */
+    public static final int BACKGROUND = 0;
+    /**
+     * Drawing the sprites.
+     */
+    public static final int SPRITES = 1;
+    /**
+     * Notifying the sprites that time passed (moving the objects).
+     */
+    public static final int PHYSICS = 2;
+    /**
+     * Finding the collisions of the balls (part of PHYSICS).
+     */
+    public static final int COLLISION = 3;
+    /**
+     * Hitting the collidables and notifying the hit listeners (part of PHYSICS).
+     */
+    public static final int HITS = 4;
+    /**
+     * Showing the frame on the screen.
+     */
+    public static final int SHOW = 5;
+    /**
+     * The collisions the balls resolved, a ball that resolves several
+     * collisions in a step goes on after each of them (a counter).
+     */
+    public static final int COLLISIONS = 0;
+    /**
+     * The ball steps that used up their collision budget, and so lost the rest
+     * of their step (a counter).
+     */
+    public static final int EXHAUSTED_STEPS = 1;
+    /**
+     * The bytes the thread allocated in the frame, while tracking allocations
+     * (a counter).
+     */
+    public static final int ALLOCATED_BYTES = 2;
+    private static final String[] PHASE_NAMES = {"background", "sprites", "physics", "collision", "hits", "show"};
+    private static final String[] COUNTER_NAMES = {"collisions", "exhausted", "allocated"};
+    private static final int INITIAL_CAPACITY = 1024;
+    // the frames of a level that warm up (like the code the JIT compiles
+    // while the level starts) are not checked against the budget
+    private static final int WARMUP_FRAMES = 120;
+    private static final int MAX_DEPTH = 8;
+    private static final double NANOS_PER_MILLISECOND = 1e6;
+    private final int window;
+    private boolean enabled;
+    private Path dumpDirectory;
+    private final long[] current;
+    private final long[] currentCounts;
+    // the times of every frame of the level, by phase
+    private long[][] frames;
+    // the counts of every frame of the level, by counter
+    private long[][] counts;
+    private int frameCount;
+    private final long[] sorted;
+    // null while allocations are not tracked
+    private ThreadMXBean threads;
+    private final long[] currentBytes;
+    // the bytes of every frame of the level, by phase
+    private long[][] bytes;
+    // the bytes allocated when the started phases started, the last one on top
+    private long[] starts;
+    private int depth;
+    private long frameStartBytes;
+    // the bytes the sprites allocated in the level, by class
+    private final Map<Class<?>, long[]> sources;
+    private long budget;
+    private final List<String> violations;
+
+    /**
+     * Constructs a new disabled FrameProfiler, whose percentiles are computed
+     * over the given number of last frames.
+     *
+     * @param window the number of frames the percentiles are computed over
+     */
+    public FrameProfiler(int window) {
+        this.window = window;
+        this.enabled = false;
+        this.current = new long[PHASE_NAMES.length];
+        this.frames = new long[PHASE_NAMES.length][INITIAL_CAPACITY];
+        this.currentCounts = new long[COUNTER_NAMES.length];
+        this.counts = new long[COUNTER_NAMES.length][INITIAL_CAPACITY];
+        this.frameCount = 0;
+        this.sorted = new long[window];
+        this.currentBytes = new long[PHASE_NAMES.length];
+        this.bytes = new long[PHASE_NAMES.length][INITIAL_CAPACITY];
+        this.starts = new long[MAX_DEPTH];
+        this.depth = 0;
+        this.sources = new HashMap<>();
+        this.budget = 0;
+        this.violations = new ArrayList<>();
+    }
+
+    /**
+     * Enables or disables the profiler.
+     *
+     * @param on true to measure the frames, false to stop measuring
+     */
+    public void setEnabled(boolean on) {
+        this.enabled = on;
+    }
+
+    /**
+     * Checks if the profiler is enabled.
+     *
+     * @return true if the frames are measured, false otherwise
+     */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Starts or stops tracking the bytes allocated in every frame, phase and
+     * sprite, while the profiler is enabled. Allocations can only be tracked
+     * on a JVM that measures the bytes every thread allocates (like HotSpot).
+     *
+     * @param on true to track allocations, false to stop tracking them
+     * @return true if allocations are tracked, false otherwise
+     */
+    public boolean setAllocationTracking(boolean on) {
+        this.threads = null;
+        this.depth = 0;
+        if (on) {
+            java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof ThreadMXBean && ((ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+                this.threads = (ThreadMXBean) bean;
+                this.threads.setThreadAllocatedMemoryEnabled(true);
+                this.frameStartBytes = allocatedBytes();
+            }
+        }
+        return this.threads != null;
+    }
+
+    /**
+     * Checks if the bytes allocated in every frame are measured.
+     *
+     * @return true if the profiler is enabled and tracks allocations, false
+     *         otherwise
+     */
+    public boolean isTrackingAllocations() {
+        return this.enabled && this.threads != null;
+    }
+
+    /**
+     * Sets the bytes the frames of a level may allocate on average, after the
+     * level warmed up. A level that allocates more is reported when it ends.
+     *
+     * @param bytesPerFrame the budget in bytes per frame, 0 for no budget
+     */
+    public void setAllocationBudget(long bytesPerFrame) {
+        this.budget = bytesPerFrame;
+    }
+
+    /**
+     * Returns the bytes the frames of a level may allocate on average.
+     *
+     * @return the budget in bytes per frame, 0 if there is no budget
+     */
+    public long getAllocationBudget() {
+        return this.budget;
+    }
+
+    /**
+     * Returns the levels that allocated more than the budget, one line per
+     * level, with the bytes per frame of the level and the phases and sprites
+     * that allocated the most.
+     *
+     * @return an unmodifiable list of the violations, empty if there were none
+     */
+    public List<String> getBudgetViolations() {
+        return Collections.unmodifiableList(this.violations);
+    }
+
+    private long allocatedBytes() {
+        return this.threads.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Sets the directory the times of every level are written to when the
+     * level ends, as a CSV and a JSON file.
+     *
+     * @param directory the directory, or null to not write the times
+     */
+    public void setDumpDirectory(Path directory) {
+        this.dumpDirectory = directory;
+    }
+
+    /**
+     * Starts measuring a phase.
+     *
+     * @return the start time, to pass to stop
+     */
+    public long start() {
+        if (!this.enabled) {
+            return 0;
+        }
+        if (this.threads != null) {
+            if (this.depth == this.starts.length) {
+                this.starts = Arrays.copyOf(this.starts, this.depth * 2);
+            }
+            this.starts[this.depth++] = allocatedBytes();
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Stops measuring a phase, and adds the time since the given start time
+     * to the phase in the current frame.
+     *
+     * @param phase     the measured phase (one of the phase constants)
+     * @param startTime the time returned by start
+     */
+    public void stop(int phase, long startTime) {
+        if (!this.enabled) {
+            return;
+        }
+        this.current[phase] += System.nanoTime() - startTime;
+        // the phases are stopped in the reverse order they were started
+        if (this.threads != null && this.depth > 0) {
+            this.depth--;
+            this.currentBytes[phase] += allocatedBytes() - this.starts[this.depth];
+        }
+    }
+
+    /**
+     * Starts measuring the bytes a sprite allocates.
+     *
+     * @return the bytes allocated so far, to pass to stopSprite
+     */
+    public long startSprite() {
+        if (!isTrackingAllocations()) {
+            return 0;
+        }
+        return allocatedBytes();
+    }
+
+    /**
+     * Stops measuring the bytes a sprite allocates, and adds the bytes
+     * allocated since the given start to the class of the sprite.
+     *
+     * @param sprite     the measured sprite
+     * @param startBytes the bytes returned by startSprite
+     */
+    public void stopSprite(Object sprite, long startBytes) {
+        if (!isTrackingAllocations()) {
+            return;
+        }
+        long allocated = allocatedBytes() - startBytes;
+        if (allocated == 0) {
+            return;
+        }
+        long[] total = this.sources.get(sprite.getClass());
+        if (total == null) {
+            total = new long[1];
+            this.sources.put(sprite.getClass(), total);
+        }
+        total[0] += allocated;
+    }
+
+    /**
+     * Adds the given amount to a counter in the current frame.
+     *
+     * @param counter the counter (one of the counter constants)
+     * @param amount  the amount to add
+     */
+    public void count(int counter, long amount) {
+        if (!this.enabled) {
+            return;
+        }
+        this.currentCounts[counter] += amount;
+    }
+
+    /**
+     * Ends the current frame, keeping its times and counts.
+     */
+    public void endFrame() {
+        if (!this.enabled) {
+            return;
+        }
+        if (this.threads != null) {
+            this.currentCounts[ALLOCATED_BYTES] = allocatedBytes() - this.frameStartBytes;
+        }
+        if (this.frameCount == this.frames[0].length) {
+            for (int p = 0; p < PHASE_NAMES.length; p++) {
+                this.frames[p] = Arrays.copyOf(this.frames[p], this.frameCount * 2);
+                this.bytes[p] = Arrays.copyOf(this.bytes[p], this.frameCount * 2);
+            }
+            for (int c = 0; c < COUNTER_NAMES.length; c++) {
+                this.counts[c] = Arrays.copyOf(this.counts[c], this.frameCount * 2);
+            }
+        }
+        for (int p = 0; p < PHASE_NAMES.length; p++) {
+            this.frames[p][this.frameCount] = this.current[p];
+            this.current[p] = 0;
+            this.bytes[p][this.frameCount] = this.currentBytes[p];
+            this.currentBytes[p] = 0;
+        }
+        for (int c = 0; c < COUNTER_NAMES.length; c++) {
+            this.counts[c][this.frameCount] = this.currentCounts[c];
+            this.currentCounts[c] = 0;
+        }
+        this.frameCount++;
+        // what the profiler allocated is not counted in the next frame
+        if (this.threads != null) {
+            this.frameStartBytes = allocatedBytes();
+        }
+    }
+
+    /**
+     * Returns the number of frames kept since the level started.
+     *
+     * @return the number of frames
+     */
+    public int getFrameCount() {
+        return this.frameCount;
+    }
+
+    /**
+     * Returns the number of phases.
+     *
+     * @return the number of phases
+     */
+    public static int getPhaseCount() {
+        return PHASE_NAMES.length;
+    }
+
+    /**
+     * Returns the name of the given phase.
+     *
+     * @param phase the phase
+     * @return the name of the phase
+     */
+    public static String getPhaseName(int phase) {
+        return PHASE_NAMES[phase];
+    }
+
+    /**
+     * Returns the time of the given phase in the given frame.
+     *
+     * @param phase the phase
+     * @param frame the index of the frame
+     * @return the time in nanoseconds
+     */
+    public long getTime(int phase, int frame) {
+        return this.frames[phase][frame];
+    }
+
+    /**
+     * Returns the bytes the given phase allocated in the given frame, while
+     * tracking allocations.
+     *
+     * @param phase the phase
+     * @param frame the index of the frame
+     * @return the allocated bytes
+     */
+    public long getAllocatedBytes(int phase, int frame) {
+        return this.bytes[phase][frame];
+    }
+
+    /**
+     * Returns the bytes allocated on average in the frames of the level after
+     * it warmed up, while tracking allocations.
+     *
+     * @return the bytes per frame, or -1 if the level didn't warm up yet
+     */
+    public long steadyAllocation() {
+        if (this.frameCount <= WARMUP_FRAMES) {
+            return -1;
+        }
+        long total = 0;
+        for (int f = WARMUP_FRAMES; f < this.frameCount; f++) {
+            total += this.counts[ALLOCATED_BYTES][f];
+        }
+        return total / (this.frameCount - WARMUP_FRAMES);
+    }
+
+    /**
+     * Returns the number of counters.
+     *
+     * @return the number of counters
+     */
+    public static int getCounterCount() {
+        return COUNTER_NAMES.length;
+    }
+
+    /**
+     * Returns the name of the given counter.
+     *
+     * @param counter the counter
+     * @return the name of the counter
+     */
+    public static String getCounterName(int counter) {
+        return COUNTER_NAMES[counter];
+    }
+
+    /**
+     * Returns the count of the given counter in the given frame.
+     *
+     * @param counter the counter
+     * @param frame   the index of the frame
+     * @return the count
+     */
+    public long getCount(int counter, int frame) {
+        return this.counts[counter][frame];
+    }
+
+    /**
+     * Returns the given percentile of the times of the phase, over the last
+     * frames of the window.
+     *
+     * @param phase      the phase
+     * @param percentile the percentile, between 0 and 100
+     * @return the time in nanoseconds, or 0 if no frame was kept
+     */
+    public long percentile(int phase, double percentile) {
+        return percentile(this.frames[phase], percentile);
+    }
+
+    /**
+     * Returns the given percentile of the counts of the counter, over the last
+     * frames of the window.
+     *
+     * @param counter    the counter
+     * @param percentile the percentile, between 0 and 100
+     * @return the count, or 0 if no frame was kept
+     */
+    public long countPercentile(int counter, double percentile) {
+        return percentile(this.counts[counter], percentile);
+    }
+
+    private long percentile(long[] values, double percentile) {
+        int count = Math.min(this.window, this.frameCount);
+        if (count == 0) {
+            return 0;
+        }
+        System.arraycopy(values, this.frameCount - count, this.sorted, 0, count);
+        Arrays.sort(this.sorted, 0, count);
+        int index = (int) Math.ceil(percentile / 100 * count) - 1;
+        return this.sorted[Math.max(0, Math.min(count - 1, index))];
+    }
+
+    /**
+     * Ends the level: writes the times of its frames to the dump directory
+     * (if one is set), as "name.csv" and "name.json", and clears them.
+     *
+     * @param name the name of the files
+     * @throws IOException if the files can't be written
+     */
+    public void endLevel(String name) throws IOException {
+        if (isTrackingAllocations() && this.budget > 0 && steadyAllocation() > this.budget) {
+            this.violations.add(name + ": " + steadyAllocation() + " bytes per frame, over the budget of "
+                    + this.budget + " (" + describeAllocations() + ")");
+        }
+        if (this.enabled && this.dumpDirectory != null && this.frameCount > 0) {
+            String fileName = name.replaceAll("[^A-Za-z0-9_-]", "_");
+            Files.createDirectories(this.dumpDirectory);
+            try (Writer out = Files.newBufferedWriter(this.dumpDirectory.resolve(fileName + ".csv"),
+                    StandardCharsets.UTF_8)) {
+                writeCsv(out);
+            }
+            try (Writer out = Files.newBufferedWriter(this.dumpDirectory.resolve(fileName + ".json"),
+                    StandardCharsets.UTF_8)) {
+                writeJson(out);
+            }
+        }
+        reset();
+    }
+
+    /**
+     * Clears the times and counts of every frame kept.
+     */
+    public void reset() {
+        this.frameCount = 0;
+        Arrays.fill(this.current, 0);
+        Arrays.fill(this.currentCounts, 0);
+        Arrays.fill(this.currentBytes, 0);
+        this.sources.clear();
+        if (this.threads != null) {
+            this.frameStartBytes = allocatedBytes();
+        }
+    }
+
+    private void writeAllocationsJson(Writer out) throws IOException {
+        out.write(",\n  \"allocations\": {\n    \"steadyBytesPerFrame\": " + steadyAllocation()
+                + ",\n    \"budget\": " + this.budget + ",\n    \"phases\": {");
+        for (int p = 0; p < PHASE_NAMES.length; p++) {
+            out.write(p == 0 ? "\n" : ",\n");
+            out.write("      \"" + PHASE_NAMES[p] + "\": [");
+            for (int f = 0; f < this.frameCount; f++) {
+                if (f > 0) {
+                    out.write(",");
+                }
+                out.write(Long.toString(this.bytes[p][f]));
+            }
+            out.write("]");
+        }
+        out.write("\n    },\n    \"spriteBytesPerFrame\": {");
+        boolean first = true;
+        for (Map.Entry<Class<?>, long[]> entry : this.sources.entrySet()) {
+            out.write(first ? "\n" : ",\n");
+            first = false;
+            out.write("      \"" + entry.getKey().getName() + "\": "
+                    + entry.getValue()[0] / Math.max(1, this.frameCount));
+        }
+        out.write("\n    }\n  }");
+    }
+
+    // the phases and the sprite classes that allocated in the frames kept,
+    // the most first, in bytes per frame
+    private String describeAllocations() {
+        List<String> names = new ArrayList<>();
+        List<Long> perFrame = new ArrayList<>();
+        for (int p = 0; p < PHASE_NAMES.length; p++) {
+            long total = 0;
+            for (int f = 0; f < this.frameCount; f++) {
+                total += this.bytes[p][f];
+            }
+            names.add(PHASE_NAMES[p]);
+            perFrame.add(total / Math.max(1, this.frameCount));
+        }
+        for (Map.Entry<Class<?>, long[]> entry : this.sources.entrySet()) {
+            names.add(entry.getKey().getSimpleName());
+            perFrame.add(entry.getValue()[0] / Math.max(1, this.frameCount));
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < names.size(); i++) {
+            order.add(i);
+        }
+        order.sort((a, b) -> Long.compare(perFrame.get(b), perFrame.get(a)));
+        StringBuilder description = new StringBuilder();
+        for (int i : order) {
+            if (perFrame.get(i) == 0) {
+                break;
+            }
+            if (description.length() > 0) {
+                description.append(", ");
+            }
+            description.append(names.get(i)).append(' ').append(perFrame.get(i));
+        }
+        return description.toString();
+    }
+
+    /**
+     * Writes the times of every frame kept, in nanoseconds, and its counts
+     * as CSV: a header line with the phase and counter names, and a line for
+     * every frame.
+     *
+     * @param out the writer to write to
+     * @throws IOException if writing fails
+     */
+    public void writeCsv(Writer out) throws IOException {
+        out.write("frame");
+        for (String phase : PHASE_NAMES) {
+            out.write("," + phase);
+        }
+        for (String counter : COUNTER_NAMES) {
+            out.write("," + counter);
+        }
+        if (this.threads != null) {
+            for (String phase : PHASE_NAMES) {
+                out.write("," + phase + "Bytes");
+            }
+        }
+        out.write("\n");
+        for (int f = 0; f < this.frameCount; f++) {
+            out.write(Integer.toString(f));
+            for (int p = 0; p < PHASE_NAMES.length; p++) {
+                out.write("," + this.frames[p][f]);
+            }
+            for (int c = 0; c < COUNTER_NAMES.length; c++) {
+                out.write("," + this.counts[c][f]);
+            }
+            if (this.threads != null) {
+                for (int p = 0; p < PHASE_NAMES.length; p++) {
+                    out.write("," + this.bytes[p][f]);
+                }
+            }
+            out.write("\n");
+        }
+    }
+
+    /**
+     * Writes the times of every frame kept as JSON: the p50 and p99 of every
+     * phase over the window in milliseconds, and the time of every frame of
+     * every phase in nanoseconds; and the counts the same way, with the
+     * p50 and p99 of every counter and its count in every frame. While
+     * tracking allocations, the steady bytes per frame and the budget are
+     * written too, with the bytes of every phase in every frame and the bytes
+     * per frame of every class of sprites.
+     *
+     * @param out the writer to write to
+     * @throws IOException if writing fails
+     */
+    public void writeJson(Writer out) throws IOException {
+        out.write("{\n  \"frames\": " + this.frameCount + ",\n  \"phases\": {");
+        for (int p = 0; p < PHASE_NAMES.length; p++) {
+            out.write(p == 0 ? "\n" : ",\n");
+            out.write("    \"" + PHASE_NAMES[p] + "\": {\"p50Ms\": "
+                    + percentile(p, 50) / NANOS_PER_MILLISECOND + ", \"p99Ms\": "
+                    + percentile(p, 99) / NANOS_PER_MILLISECOND + ", \"nanos\": [");
+            for (int f = 0; f < this.frameCount; f++) {
+                if (f > 0) {
+                    out.write(",");
+                }
+                out.write(Long.toString(this.frames[p][f]));
+            }
+            out.write("]}");
+        }
+        out.write("\n  },\n  \"counters\": {");
+        for (int c = 0; c < COUNTER_NAMES.length; c++) {
+            out.write(c == 0 ? "\n" : ",\n");
+            out.write("    \"" + COUNTER_NAMES[c] + "\": {\"p50\": " + countPercentile(c, 50) + ", \"p99\": "
+                    + countPercentile(c, 99) + ", \"counts\": [");
+            for (int f = 0; f < this.frameCount; f++) {
+                if (f > 0) {
+                    out.write(",");
+                }
+                out.write(Long.toString(this.counts[c][f]));
+            }
+            out.write("]}");
+        }
+        out.write("\n  }");
+        if (this.threads != null) {
+            writeAllocationsJson(out);
+        }
+        out.write("\n}\n");
+    }
+}
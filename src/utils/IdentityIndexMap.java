@@ -0,0 +1,129 @@
+package utils;
+
+/**
+ * The IdentityIndexMap class maps objects (compared by identity) to
+ * non-negative int indices, in an open-addressed hash table of the objects
+ * and a parallel array of the indices.
+ * Unlike an IdentityHashMap of Integers, putting, getting and removing an
+ * index never boxes it, so they don't allocate (unless the table grows).
+ * Removed entries are not left as tombstones, the entries after them are
+ * shifted back instead, so the table never fills up with them.
+ *
+ * @author Eitan Maimoni
+ * @version 19.0.2
+ * @since 2023-06-01
+ */
+final class IdentityIndexMap {
+    /**
+     * The index returned for an object that is not in the map.
+     */
+    static final int MISSING = -1;
+    private static final int INITIAL_CAPACITY = 16;
+    private Object[] keys;
+    private int[] values;
+    private int count;
+
+    /**
+     * Constructs a new empty IdentityIndexMap.
+     */
+    IdentityIndexMap() {
+        this.keys = new Object[INITIAL_CAPACITY];
+        this.values = new int[INITIAL_CAPACITY];
+        this.count = 0;
+    }
+
+    /**
+     * Checks if the given object is in the map.
+     *
+     * @param key the object
+     * @return true if the object is in the map, false otherwise
+     */
+    boolean containsKey(Object key) {
+        return this.keys[find(key)] != null;
+    }
+
+    /**
+     * Sets the index of the given object, adding it if it is not in the map.
+     *
+     * @param key   the object
+     * @param value the index, at least 0
+     */
+    void put(Object key, int value) {
+        int slot = find(key);
+        if (this.keys[slot] == null) {
+            // the table is kept at most half full, so the probes stay short
+            if (2 * (this.count + 1) > this.keys.length) {
+                grow();
+                slot = find(key);
+            }
+            this.keys[slot] = key;
+            this.count++;
+        }
+        this.values[slot] = value;
+    }
+
+    /**
+     * Removes the given object from the map.
+     *
+     * @param key the object
+     * @return the index the object had, or MISSING if it was not in the map
+     */
+    int remove(Object key) {
+        int slot = find(key);
+        if (this.keys[slot] == null) {
+            return MISSING;
+        }
+        int value = this.values[slot];
+        int mask = this.keys.length - 1;
+        // shifts back every entry after the removed one that can't be found
+        // from its home slot once the removed slot is empty
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            Object moved = this.keys[next];
+            if (moved == null) {
+                break;
+            }
+            int home = hash(moved) & mask;
+            boolean reachable = slot <= next ? (slot < home && home <= next) : (slot < home || home <= next);
+            if (!reachable) {
+                this.keys[slot] = moved;
+                this.values[slot] = this.values[next];
+                slot = next;
+            }
+        }
+        this.keys[slot] = null;
+        this.count--;
+        return value;
+    }
+
+    // returns the slot of the given object, or the empty slot it would be put in
+    private int find(Object key) {
+        int mask = this.keys.length - 1;
+        int slot = hash(key) & mask;
+        while (this.keys[slot] != null && this.keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        Object[] oldKeys = this.keys;
+        int[] oldValues = this.values;
+        this.keys = new Object[oldKeys.length * 2];
+        this.values = new int[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = find(oldKeys[i]);
+                this.keys[slot] = oldKeys[i];
+                this.values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static int hash(Object key) {
+        // spreads the identity hash codes, which may differ in the high bits only
+        int h = System.identityHashCode(key) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}